@@ -0,0 +1,95 @@
+package org.qyn.qynnovel.components;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+
+/**
+ * Cache nội dung chương trong bộ nhớ, giới hạn theo tổng dung lượng (byte)
+ * thay vì số lượng entry. Caffeine dùng chính sách W-TinyLFU nên các chương
+ * đọc nhiều được giữ lại, chương chỉ đọc một lần không đẩy chúng ra khỏi cache.
+ */
+@Component
+public class ChapterContentCache {
+
+    // Ước lượng chi phí heap của một entry: header String + key + node của cache
+    private static final int ENTRY_OVERHEAD_BYTES = 96;
+
+    private final Cache<ChapterKey, String> cache;
+
+    public ChapterContentCache(@Value("${app.storage.content-cache.max-bytes:268435456}") long maxBytes) {
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(maxBytes)
+                .weigher((ChapterKey key, String content) -> weigh(content))
+                .recordStats()
+                .build();
+    }
+
+    public interface ContentLoader {
+        String load() throws IOException;
+    }
+
+    /**
+     * Lấy nội dung từ cache, nếu chưa có thì đọc bằng loader (chỉ một luồng đọc file cho mỗi key)
+     */
+    public String get(Long storyId, Long chapterId, ContentLoader loader) throws IOException {
+        try {
+            return cache.get(new ChapterKey(storyId, chapterId), key -> {
+                try {
+                    return loader.load();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Kiểm tra đã có trong cache chưa (không tính vào thống kê hit/miss)
+     */
+    public boolean contains(Long storyId, Long chapterId) {
+        return cache.asMap().containsKey(new ChapterKey(storyId, chapterId));
+    }
+
+    public void invalidate(Long storyId, Long chapterId) {
+        cache.invalidate(new ChapterKey(storyId, chapterId));
+    }
+
+    /**
+     * Thống kê hit/miss/eviction của cache
+     */
+    public Map<String, Object> stats() {
+        CacheStats stats = cache.stats();
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("entries", cache.estimatedSize());
+        result.put("weightedBytes", cache.policy().eviction()
+                .map(eviction -> eviction.weightedSize().orElse(0L))
+                .orElse(0L));
+        result.put("hitCount", stats.hitCount());
+        result.put("missCount", stats.missCount());
+        result.put("hitRate", stats.hitRate());
+        result.put("evictionCount", stats.evictionCount());
+        result.put("evictionBytes", stats.evictionWeight());
+        result.put("loadFailureCount", stats.loadFailureCount());
+        return result;
+    }
+
+    private static int weigh(String content) {
+        // Nội dung tiếng Việt không nằm trong Latin-1 nên String lưu 2 byte mỗi ký tự
+        long bytes = ENTRY_OVERHEAD_BYTES + 2L * content.length();
+        return (int) Math.min(Integer.MAX_VALUE, bytes);
+    }
+
+    private record ChapterKey(Long storyId, Long chapterId) {
+    }
+}
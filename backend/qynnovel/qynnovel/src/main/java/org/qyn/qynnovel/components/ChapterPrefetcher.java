@@ -0,0 +1,112 @@
+package org.qyn.qynnovel.components;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.qyn.qynnovel.models.Chapter;
+import org.qyn.qynnovel.repositories.ChapterRepository;
+import org.qyn.qynnovel.services.ChapterStorageService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Nạp trước nội dung chương kế tiếp vào cache khi người đọc mở một chương,
+ * để lần bấm "chương sau" không phải chờ đọc file.
+ *
+ * Chạy trên pool riêng với hàng đợi giới hạn; khi quá tải thì bỏ qua yêu cầu
+ * vì prefetch chỉ là tối ưu, không được làm chậm request đọc truyện.
+ */
+@Component
+public class ChapterPrefetcher {
+
+    private static final Logger log = LoggerFactory.getLogger(ChapterPrefetcher.class);
+
+    @Autowired
+    private ChapterRepository chapterRepository;
+
+    @Autowired
+    private ChapterStorageService storageService;
+
+    @Autowired
+    private ChapterContentCache contentCache;
+
+    private final boolean enabled;
+    private final ThreadPoolExecutor executor;
+
+    public ChapterPrefetcher(
+            @Value("${app.chapters.prefetch-next.enabled:true}") boolean enabled,
+            @Value("${app.chapters.prefetch-next.threads:2}") int threads,
+            @Value("${app.chapters.prefetch-next.queue-capacity:256}") int queueCapacity) {
+        this.enabled = enabled;
+        AtomicInteger counter = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "chapter-prefetch-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.DiscardPolicy());
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Nạp trước chương sau chương có số thứ tự {@code chapterNumber} của truyện
+     */
+    public void prefetchNext(Long storyId, Integer chapterNumber) {
+        submit(() -> chapterRepository
+                .findFirstByStoryIdAndChapterNumberGreaterThanOrderByChapterNumberAscIdAsc(storyId, chapterNumber)
+                .ifPresent(this::load));
+    }
+
+    /**
+     * Nạp trước một chương đã biết id (ví dụ chương "sau" trong kết quả điều hướng)
+     */
+    public void prefetch(Long storyId, Long chapterId) {
+        if (contentCache.contains(storyId, chapterId)) {
+            return;
+        }
+        submit(() -> chapterRepository.findById(chapterId).ifPresent(this::load));
+    }
+
+    private void submit(Runnable task) {
+        if (!enabled) {
+            return;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    task.run();
+                } catch (RuntimeException e) {
+                    log.debug("Prefetch chương thất bại", e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // Executor đã tắt
+        }
+    }
+
+    private void load(Chapter chapter) {
+        if (chapter.getStoragePath() == null || contentCache.contains(chapter.getStoryId(), chapter.getId())) {
+            return;
+        }
+        try {
+            storageService.getChapterContent(chapter.getStoryId(), chapter.getId());
+        } catch (Exception e) {
+            log.debug("Không thể prefetch nội dung chương {}", chapter.getId(), e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
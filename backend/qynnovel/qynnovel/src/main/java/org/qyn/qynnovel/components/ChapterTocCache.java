@@ -0,0 +1,49 @@
+package org.qyn.qynnovel.components;
+
+import java.util.List;
+import java.util.function.Function;
+
+import org.qyn.qynnovel.dto.ChapterTocItem;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+/**
+ * Cache mục lục (danh sách chương dạng rút gọn) theo từng truyện
+ */
+@Component
+public class ChapterTocCache {
+
+    private final Cache<Long, List<ChapterTocItem>> cache;
+
+    public ChapterTocCache(@Value("${app.chapters.toc-cache.max-stories:2000}") long maxStories) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxStories)
+                .build();
+    }
+
+    public List<ChapterTocItem> get(Long storyId, Function<Long, List<ChapterTocItem>> loader) {
+        return cache.get(storyId, id -> List.copyOf(loader.apply(id)));
+    }
+
+    /**
+     * Xóa mục lục khỏi cache sau khi transaction hiện tại commit, để request khác
+     * không kịp nạp lại dữ liệu cũ trước khi thay đổi được ghi xuống DB
+     */
+    public void invalidateAfterCommit(Long storyId) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    cache.invalidate(storyId);
+                }
+            });
+        } else {
+            cache.invalidate(storyId);
+        }
+    }
+}
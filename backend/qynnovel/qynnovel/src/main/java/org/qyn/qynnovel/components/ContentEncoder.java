@@ -0,0 +1,136 @@
+package org.qyn.qynnovel.components;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.aayushatharva.brotli4j.Brotli4jLoader;
+import com.aayushatharva.brotli4j.encoder.Encoder;
+
+/**
+ * Nén trước nội dung chương (brotli, gzip) lúc lưu để mỗi request chỉ việc
+ * chọn file đã nén phù hợp với Accept-Encoding thay vì nén lại từ đầu.
+ */
+@Component
+public class ContentEncoder {
+
+    private static final Logger log = LoggerFactory.getLogger(ContentEncoder.class);
+
+    // Nén một lần lúc ghi nên dùng mức nén cao nhất
+    private static final int BROTLI_QUALITY = 11;
+
+    public enum Encoding {
+        BROTLI("br", ".br"),
+        GZIP("gzip", ".gz");
+
+        private final String token;
+        private final String fileSuffix;
+
+        Encoding(String token, String fileSuffix) {
+            this.token = token;
+            this.fileSuffix = fileSuffix;
+        }
+
+        public String getToken() {
+            return token;
+        }
+
+        public String getFileSuffix() {
+            return fileSuffix;
+        }
+    }
+
+    private final List<Encoding> enabledEncodings;
+
+    public ContentEncoder(@Value("${app.storage.precompress.enabled:true}") boolean enabled) {
+        List<Encoding> encodings = new ArrayList<>();
+        if (enabled) {
+            if (Brotli4jLoader.isAvailable()) {
+                encodings.add(Encoding.BROTLI);
+            } else {
+                log.warn("Không nạp được thư viện brotli, chỉ lưu bản nén gzip",
+                        Brotli4jLoader.getUnavailabilityCause());
+            }
+            encodings.add(Encoding.GZIP);
+        }
+        this.enabledEncodings = Collections.unmodifiableList(encodings);
+    }
+
+    /**
+     * Các kiểu nén được lưu kèm file gốc, theo thứ tự ưu tiên khi phục vụ
+     */
+    public List<Encoding> getEnabledEncodings() {
+        return enabledEncodings;
+    }
+
+    public byte[] encode(Encoding encoding, byte[] data) throws IOException {
+        switch (encoding) {
+            case BROTLI:
+                return Encoder.compress(data, new Encoder.Parameters()
+                        .setQuality(BROTLI_QUALITY)
+                        .setMode(Encoder.Mode.TEXT));
+            case GZIP:
+                ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, data.length / 3));
+                try (GZIPOutputStream gzip = new GZIPOutputStream(out) {
+                    {
+                        def.setLevel(Deflater.BEST_COMPRESSION);
+                    }
+                }) {
+                    gzip.write(data);
+                }
+                return out.toByteArray();
+            default:
+                throw new IllegalArgumentException("Kiểu nén không hỗ trợ: " + encoding);
+        }
+    }
+
+    /**
+     * Các kiểu nén client chấp nhận (theo header Accept-Encoding), theo thứ tự ưu tiên của server
+     */
+    public List<Encoding> acceptedEncodings(String acceptEncoding) {
+        if (acceptEncoding == null || acceptEncoding.isBlank() || enabledEncodings.isEmpty()) {
+            return List.of();
+        }
+
+        List<String> accepted = new ArrayList<>();
+        for (String part : acceptEncoding.split(",")) {
+            String[] params = part.trim().toLowerCase(Locale.ROOT).split(";");
+            if (params[0].isEmpty() || isZeroQuality(params)) {
+                continue;
+            }
+            accepted.add(params[0].trim());
+        }
+
+        List<Encoding> result = new ArrayList<>();
+        for (Encoding encoding : enabledEncodings) {
+            if (accepted.contains(encoding.getToken()) || accepted.contains("*")) {
+                result.add(encoding);
+            }
+        }
+        return result;
+    }
+
+    private static boolean isZeroQuality(String[] params) {
+        for (int i = 1; i < params.length; i++) {
+            String param = params[i].trim();
+            if (param.startsWith("q=")) {
+                try {
+                    return Double.parseDouble(param.substring(2)) <= 0;
+                } catch (NumberFormatException e) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+}
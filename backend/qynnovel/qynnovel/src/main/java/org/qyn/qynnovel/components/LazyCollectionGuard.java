@@ -0,0 +1,90 @@
+package org.qyn.qynnovel.components;
+
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.InitializeCollectionEvent;
+import org.hibernate.event.spi.InitializeCollectionEventListener;
+import org.qyn.qynnovel.models.Story;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * Phát hiện collection của Story bị nạp lười khi đang xử lý một request GET.
+ *
+ * Trang đọc phải lấy dữ liệu bằng truy vấn fetch join / projection (StoryDetail,
+ * StorySummary...); nạp lười chapters, comments, ratings... trên đường đọc là N+1.
+ * Mặc định chỉ ghi cảnh báo; khi app.jpa.lazy-load-guard.strict=true (bật trong test)
+ * thì ném lỗi để test thất bại.
+ */
+@Component
+public class LazyCollectionGuard implements InitializeCollectionEventListener, HandlerInterceptor {
+
+    private static final Logger log = LoggerFactory.getLogger(LazyCollectionGuard.class);
+
+    // Role của collection có dạng "<tên lớp entity>.<tên thuộc tính>"
+    private static final String GUARDED_ROLE_PREFIX = Story.class.getName() + ".";
+
+    // Request GET đang được xử lý trên thread hiện tại (null nếu không có)
+    private static final ThreadLocal<String> READ_REQUEST = new ThreadLocal<>();
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Value("${app.jpa.lazy-load-guard.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.jpa.lazy-load-guard.strict:false}")
+    private boolean strict;
+
+    @PostConstruct
+    public void register() {
+        if (!enabled) {
+            return;
+        }
+        entityManagerFactory.unwrap(SessionFactoryImplementor.class)
+                .getServiceRegistry()
+                .getService(EventListenerRegistry.class)
+                .prependListeners(EventType.INIT_COLLECTION, this);
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        if (enabled && "GET".equals(request.getMethod())) {
+            READ_REQUEST.set(request.getRequestURI());
+        }
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler,
+            Exception ex) {
+        READ_REQUEST.remove();
+    }
+
+    @Override
+    public void onInitializeCollection(InitializeCollectionEvent event) {
+        String path = READ_REQUEST.get();
+        String role = event.getCollection().getRole();
+        if (path == null || role == null || !role.startsWith(GUARDED_ROLE_PREFIX)) {
+            return;
+        }
+
+        String collection = role.substring(Story.class.getPackageName().length() + 1);
+        if (strict) {
+            throw new IllegalStateException(
+                    "Collection " + collection + " bị nạp lười khi xử lý GET " + path
+                            + " (dùng fetch join hoặc projection)");
+        }
+        log.warn("Collection {} bị nạp lười khi xử lý GET {} (dùng fetch join hoặc projection)", collection, path);
+    }
+}
@@ -0,0 +1,143 @@
+package org.qyn.qynnovel.components;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Kiểm tra lúc khởi động: mỗi dạng truy vấn nóng của các repository phải có một
+ * index mà các cột đầu trùng với cột lọc/sắp xếp của truy vấn. Dạng nào thiếu
+ * thì ghi cảnh báo (schema chưa chạy migration, hoặc thêm truy vấn mà quên index).
+ *
+ * Khi thêm truy vấn mới vào repository, thêm dạng truy vấn tương ứng vào SHAPES.
+ */
+@Component
+public class QueryIndexAdvisor {
+
+    private static final Logger log = LoggerFactory.getLogger(QueryIndexAdvisor.class);
+
+    /**
+     * Một dạng truy vấn: bảng và các cột (theo thứ tự) cần là tiền tố của một index
+     */
+    record QueryShape(String query, String table, List<String> leadingColumns) {
+    }
+
+    private static final List<QueryShape> SHAPES = List.of(
+            // ChapterRepository
+            new QueryShape("ChapterRepository.findFirstByStoryIdAndChapterNumber*", "chapters",
+                    List.of("story_id", "chapter_number")),
+            new QueryShape("ChapterRepository.findNavigation", "chapters",
+                    List.of("story_id", "chapter_number")),
+            new QueryShape("ChapterRepository.findTocByStoryId / findTocPageAfter", "chapters",
+                    List.of("story_id", "chapter_number")),
+            new QueryShape("ChapterRepository.findChapterListVersion", "chapters",
+                    List.of("story_id")),
+
+            // StoryRepository
+            // Tìm kiếm theo từ khóa chạy trên index Lucene (StorySearchIndex); findByTitleContainingIgnoreCase
+            // còn dùng LIKE '%...%' nên không index B-tree nào hỗ trợ
+            new QueryShape("StoryRepository.findBySlug", "stories", List.of("slug")),
+            new QueryShape("StoryRepository.findByStatus / countByStatus", "stories", List.of("status")),
+            new QueryShape("StoryRepository.findCompletedStories / findOngoingStories", "stories",
+                    List.of("status", "updated_at")),
+            new QueryShape("StoryRepository.findByAuthor / findOtherStoriesByAuthor", "stories", List.of("author")),
+            new QueryShape("StoryRepository.findByUserId / countByUserId", "stories", List.of("user_id")),
+            new QueryShape("StoryRepository.findByOrderByTotalViewsDesc", "stories", List.of("total_views")),
+            new QueryShape("StoryRepository.findByOrderByTotalLikesDesc", "stories", List.of("total_likes")),
+            new QueryShape("StoryRepository.findByOrderByCreatedAtDesc / findByCreatedAtBetween", "stories",
+                    List.of("created_at")),
+            new QueryShape("StoryRepository.findRecentlyUpdated", "stories", List.of("updated_at")),
+            new QueryShape("StoryRepository.findRecommendedStories", "stories",
+                    List.of("total_views", "total_likes", "updated_at")),
+            new QueryShape("StoryRepository.findByCategoryId / findByCategoryIds / countByCategoryId",
+                    "story_categories", List.of("category_id")),
+            new QueryShape("StoryRepository.findNewestInCategories", "story_categories",
+                    List.of("category_id", "story_id")),
+            new QueryShape("StoryRepository.findUpdatedInCategories", "stories", List.of("updated_at")),
+            new QueryShape("StoryRepository.findMostViewedIdsInCategories", "stories", List.of("total_views")),
+            new QueryShape("StoryRepository.findByCategorySlug", "categories", List.of("slug")),
+            // getTotalWordCount / getChapterCount đọc cột thống kê theo khóa chính
+            new QueryShape("StoryRepository.getLatestChapters", "chapters", List.of("story_id", "chapter_number")),
+            new QueryShape("StoryRepository.findByMinChapters", "stories", List.of("chapter_count")),
+            new QueryShape("StoryRepository.findByMinRating / findTopRatedByAverage", "stories",
+                    List.of("average_rating")),
+            new QueryShape("StoryRepository.findTopRated", "stories", List.of("bayesian_rating", "rating_count")),
+            new QueryShape("StoryStatsService.reconcile", "ratings", List.of("story_id")),
+
+            // ReadingHistoryRepository
+            new QueryShape("ReadingHistoryRepository.findRecentReadingHistory",
+                    "reading_history", List.of("user_id", "read_at")),
+            new QueryShape("ReadingPositionService.loadShelf", "reading_positions", List.of("user_id")),
+            new QueryShape("StoryStatsService.getDailyReads", "story_daily_reads", List.of("story_id", "read_date")));
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Value("${app.db.index-check.enabled:true}")
+    private boolean enabled;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void checkIndexes() {
+        if (!enabled) {
+            return;
+        }
+
+        try {
+            Map<String, List<List<String>>> indexes = loadIndexes();
+            int missing = 0;
+            for (QueryShape shape : SHAPES) {
+                if (!isSupported(shape, indexes)) {
+                    missing++;
+                    log.warn("Truy vấn {} không có index hỗ trợ: cần index trên {}({})",
+                            shape.query(), shape.table(), String.join(", ", shape.leadingColumns()));
+                }
+            }
+            if (missing == 0) {
+                log.info("Kiểm tra index: {} dạng truy vấn đều có index hỗ trợ", SHAPES.size());
+            } else {
+                log.warn("Kiểm tra index: {}/{} dạng truy vấn thiếu index", missing, SHAPES.size());
+            }
+        } catch (RuntimeException e) {
+            log.warn("Không thể kiểm tra index của schema", e);
+        }
+    }
+
+    /**
+     * Bảng -> danh sách index, mỗi index là danh sách cột theo thứ tự
+     */
+    private Map<String, List<List<String>>> loadIndexes() {
+        Map<String, Map<String, List<String>>> byTable = new HashMap<>();
+        jdbcTemplate.query(
+                "SELECT TABLE_NAME, INDEX_NAME, COLUMN_NAME FROM information_schema.STATISTICS "
+                        + "WHERE TABLE_SCHEMA = DATABASE() ORDER BY TABLE_NAME, INDEX_NAME, SEQ_IN_INDEX",
+                rs -> {
+                    byTable.computeIfAbsent(rs.getString(1).toLowerCase(), t -> new HashMap<>())
+                            .computeIfAbsent(rs.getString(2), i -> new ArrayList<>())
+                            .add(rs.getString(3).toLowerCase());
+                });
+
+        Map<String, List<List<String>>> result = new HashMap<>();
+        byTable.forEach((table, tableIndexes) -> result.put(table, new ArrayList<>(tableIndexes.values())));
+        return result;
+    }
+
+    private static boolean isSupported(QueryShape shape, Map<String, List<List<String>>> indexes) {
+        for (List<String> columns : indexes.getOrDefault(shape.table(), List.of())) {
+            if (columns.size() >= shape.leadingColumns().size()
+                    && columns.subList(0, shape.leadingColumns().size()).equals(shape.leadingColumns())) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,69 @@
+package org.qyn.qynnovel.components;
+
+import org.qyn.qynnovel.events.ChapterDeletedEvent;
+import org.qyn.qynnovel.events.StoryChangedEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+/**
+ * Xóa lịch sử đọc của chương/truyện đã bị xóa.
+ *
+ * reading_history chia partition nên không có khóa ngoại (V6__partition_reading_history.sql):
+ * dòng của chương/truyện bị xóa không tự mất theo cascade của DB. Sau khi transaction xóa
+ * commit, các dòng được xóa bằng JDBC theo từng lô app.reading-history.cleanup-batch-size
+ * dòng (mỗi lô một transaction ngắn, đi theo index story_id), không nạp entity nào.
+ * Nếu bị gián đoạn, phần còn lại nằm đến khi partition chứa nó hết hạn; thống kê theo
+ * ngày đã bỏ qua truyện không còn tồn tại.
+ */
+@Component
+public class ReadingHistoryCleaner {
+
+    private static final Logger log = LoggerFactory.getLogger(ReadingHistoryCleaner.class);
+
+    private static final String DELETE_STORY_HISTORY = "DELETE FROM reading_history WHERE story_id = ? LIMIT ?";
+    private static final String DELETE_CHAPTER_HISTORY = "DELETE FROM reading_history WHERE story_id = ? AND chapter_id = ? LIMIT ?";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Value("${app.reading-history.cleanup-batch-size:5000}")
+    private int batchSize;
+
+    @Async
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onStoryChanged(StoryChangedEvent event) {
+        if (event.deleted()) {
+            deleteInBatches("truyện " + event.storyId(), DELETE_STORY_HISTORY, event.storyId());
+        }
+    }
+
+    @Async
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onChapterDeleted(ChapterDeletedEvent event) {
+        deleteInBatches("chương " + event.chapterId(), DELETE_CHAPTER_HISTORY, event.storyId(), event.chapterId());
+    }
+
+    private void deleteInBatches(String target, String sql, Object... keys) {
+        Object[] args = new Object[keys.length + 1];
+        System.arraycopy(keys, 0, args, 0, keys.length);
+        args[keys.length] = batchSize;
+
+        long total = 0;
+        try {
+            int deleted;
+            do {
+                deleted = jdbcTemplate.update(sql, args);
+                total += deleted;
+            } while (deleted >= batchSize);
+            log.debug("Đã xóa {} dòng lịch sử đọc của {}", total, target);
+        } catch (RuntimeException e) {
+            log.error("Không thể xóa lịch sử đọc của {} (đã xóa {} dòng)", target, total, e);
+        }
+    }
+}
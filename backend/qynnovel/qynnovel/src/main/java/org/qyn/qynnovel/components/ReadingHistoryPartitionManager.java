@@ -0,0 +1,195 @@
+package org.qyn.qynnovel.components;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Quản lý partition theo tháng của reading_history (xem V6__partition_reading_history.sql).
+ *
+ * Mỗi lần chạy (lúc khởi động và hằng ngày theo app.reading-history.maintenance-cron):
+ * <ol>
+ * <li>tách partition pmax thành các partition pYYYYMM cho tháng hiện tại và
+ * app.reading-history.partitions-ahead tháng tới, để pmax luôn rỗng và việc tách rẻ;</li>
+ * <li>tổng hợp các ngày (UTC) đã trọn vẹn chưa được tổng hợp vào story_daily_reads
+ * (số lượt đọc, số người đọc theo truyện theo ngày), ghi đè nên chạy lại không sai;</li>
+ * <li>nếu bước 2 thành công, DROP các partition có toàn bộ dữ liệu cũ hơn
+ * app.reading-history.retention-months tháng.</li>
+ * </ol>
+ * Mốc partition là epoch giây của ngày đầu tháng theo UTC nên không phụ thuộc time zone
+ * của phiên MySQL.
+ */
+@Component
+public class ReadingHistoryPartitionManager {
+
+    private static final Logger log = LoggerFactory.getLogger(ReadingHistoryPartitionManager.class);
+
+    private static final DateTimeFormatter PARTITION_NAME = DateTimeFormatter.ofPattern("'p'yyyyMM");
+    private static final String MAX_PARTITION = "pmax";
+
+    private static final String FIND_PARTITIONS = "SELECT PARTITION_NAME, PARTITION_DESCRIPTION FROM information_schema.PARTITIONS "
+            + "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'reading_history' ORDER BY PARTITION_ORDINAL_POSITION";
+
+    // Ngày UTC tính từ epoch giây nên không phụ thuộc time zone của phiên;
+    // bỏ qua lịch sử của truyện đã bị xóa (bảng partition không có khóa ngoại)
+    private static final String ROLLUP_DAYS = "INSERT INTO story_daily_reads (story_id, read_date, read_count, reader_count) "
+            + "SELECT rh.story_id, DATE('1970-01-01') + INTERVAL FLOOR(UNIX_TIMESTAMP(rh.read_at) / 86400) DAY AS read_date, "
+            + "COUNT(*), COUNT(DISTINCT rh.user_id) "
+            + "FROM reading_history rh JOIN stories s ON s.id = rh.story_id "
+            + "WHERE rh.read_at >= FROM_UNIXTIME(?) AND rh.read_at < FROM_UNIXTIME(?) "
+            + "GROUP BY rh.story_id, read_date "
+            + "ON DUPLICATE KEY UPDATE read_count = VALUES(read_count), reader_count = VALUES(reader_count)";
+
+    /**
+     * Một partition: tên và mốc trên (epoch giây, không tính; null với pmax)
+     */
+    record Partition(String name, Long upperBound) {
+    }
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Value("${app.reading-history.partitions.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.reading-history.partitions-ahead:2}")
+    private int monthsAhead;
+
+    @Value("${app.reading-history.retention-months:6}")
+    private int retentionMonths;
+
+    @Async
+    @EventListener(ApplicationReadyEvent.class)
+    public void maintainOnStartup() {
+        maintain();
+    }
+
+    @Scheduled(cron = "${app.reading-history.maintenance-cron:0 30 3 * * *}", zone = "UTC")
+    public synchronized void maintain() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            List<Partition> partitions = loadPartitions();
+            if (partitions.isEmpty()) {
+                log.warn("reading_history chưa được chia partition, bỏ qua việc quản lý partition");
+                return;
+            }
+            YearMonth currentMonth = YearMonth.now(ZoneOffset.UTC);
+            createPartitions(partitions, currentMonth);
+            if (rollup(LocalDate.now(ZoneOffset.UTC))) {
+                dropExpired(partitions, currentMonth.minusMonths(retentionMonths));
+            }
+        } catch (RuntimeException e) {
+            log.error("Không thể bảo trì partition của reading_history", e);
+        }
+    }
+
+    List<Partition> loadPartitions() {
+        List<Partition> partitions = jdbcTemplate.query(FIND_PARTITIONS, (rs, rowNum) -> {
+            String description = rs.getString("PARTITION_DESCRIPTION");
+            return new Partition(rs.getString("PARTITION_NAME"),
+                    description == null || "MAXVALUE".equalsIgnoreCase(description) ? null : Long.valueOf(description));
+        });
+        // Bảng không partition vẫn có một dòng với PARTITION_NAME null
+        return partitions.stream().anyMatch(p -> MAX_PARTITION.equals(p.name())) ? partitions : List.of();
+    }
+
+    private void createPartitions(List<Partition> partitions, YearMonth currentMonth) {
+        long highest = partitions.stream()
+                .filter(p -> p.upperBound() != null)
+                .mapToLong(Partition::upperBound)
+                .max()
+                .orElse(Long.MIN_VALUE);
+
+        List<String> definitions = new ArrayList<>();
+        for (int i = 0; i <= monthsAhead; i++) {
+            YearMonth month = currentMonth.plusMonths(i);
+            long upperBound = startOf(month.plusMonths(1));
+            if (upperBound > highest) {
+                definitions.add("PARTITION " + month.format(PARTITION_NAME) + " VALUES LESS THAN (" + upperBound + ")");
+            }
+        }
+        if (definitions.isEmpty()) {
+            return;
+        }
+
+        definitions.add("PARTITION " + MAX_PARTITION + " VALUES LESS THAN MAXVALUE");
+        jdbcTemplate.execute("ALTER TABLE reading_history REORGANIZE PARTITION " + MAX_PARTITION + " INTO ("
+                + String.join(", ", definitions) + ")");
+        log.info("Đã tạo {} partition mới cho reading_history", definitions.size() - 1);
+    }
+
+    /**
+     * Tổng hợp các ngày trọn vẹn (trước {@code today}) chưa có trong story_daily_reads;
+     * mỗi lần đọc tối đa một tháng lịch sử để giới hạn kích thước truy vấn
+     */
+    private boolean rollup(LocalDate today) {
+        try {
+            LocalDate from = firstDayToRollUp();
+            if (from == null) {
+                return true; // chưa có lịch sử đọc
+            }
+            int rows = 0;
+            while (from.isBefore(today)) {
+                LocalDate to = from.plusMonths(1).withDayOfMonth(1);
+                if (to.isAfter(today)) {
+                    to = today;
+                }
+                rows += jdbcTemplate.update(ROLLUP_DAYS, startOf(from), startOf(to));
+                from = to;
+            }
+            log.debug("Đã tổng hợp lượt đọc theo ngày ({} dòng thay đổi)", rows);
+            return true;
+        } catch (RuntimeException e) {
+            log.error("Không thể tổng hợp lượt đọc theo ngày, hoãn xóa partition hết hạn", e);
+            return false;
+        }
+    }
+
+    private LocalDate firstDayToRollUp() {
+        LocalDate lastRolled = jdbcTemplate.queryForObject("SELECT MAX(read_date) FROM story_daily_reads",
+                LocalDate.class);
+        if (lastRolled != null) {
+            return lastRolled.plusDays(1);
+        }
+        Long oldest = jdbcTemplate.queryForObject("SELECT MIN(UNIX_TIMESTAMP(read_at)) FROM reading_history",
+                Long.class);
+        return oldest == null ? null : LocalDate.ofEpochDay(Math.floorDiv(oldest, 86400));
+    }
+
+    private void dropExpired(List<Partition> partitions, YearMonth oldestKept) {
+        long cutoff = startOf(oldestKept);
+        List<String> expired = partitions.stream()
+                .filter(p -> p.upperBound() != null && p.upperBound() <= cutoff)
+                .map(Partition::name)
+                .toList();
+        if (expired.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.execute("ALTER TABLE reading_history DROP PARTITION " + String.join(", ", expired));
+        log.info("Đã xóa {} partition lịch sử đọc hết hạn: {}", expired.size(), expired);
+    }
+
+    private static long startOf(YearMonth month) {
+        return startOf(month.atDay(1));
+    }
+
+    private static long startOf(LocalDate day) {
+        return day.atStartOfDay(ZoneOffset.UTC).toEpochSecond();
+    }
+}
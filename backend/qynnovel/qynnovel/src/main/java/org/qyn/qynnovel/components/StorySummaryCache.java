@@ -0,0 +1,52 @@
+package org.qyn.qynnovel.components;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.qyn.qynnovel.dto.StorySummary;
+import org.qyn.qynnovel.models.Story;
+import org.qyn.qynnovel.repositories.StoryRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+/**
+ * Cache thông tin rút gọn của truyện theo id, dùng để hiển thị các danh sách
+ * xếp hạng. Truyện thiếu trong cache được nạp một lần cho cả lô (findAllById).
+ */
+@Component
+public class StorySummaryCache {
+
+    @Autowired
+    private StoryRepository storyRepository;
+
+    private final Cache<Long, StorySummary> cache;
+
+    public StorySummaryCache(@Value("${app.rankings.summary-cache.max-entries:20000}") long maxEntries) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxEntries)
+                .build();
+    }
+
+    /**
+     * Thông tin của các truyện (truyện đã bị xóa không có trong kết quả)
+     */
+    public Map<Long, StorySummary> getAll(Collection<Long> storyIds) {
+        return cache.getAll(storyIds, this::load);
+    }
+
+    public void invalidate(Long storyId) {
+        cache.invalidate(storyId);
+    }
+
+    private Map<Long, StorySummary> load(Set<? extends Long> storyIds) {
+        return storyRepository.findAllById(storyIds.stream().map(Long::valueOf).collect(Collectors.toList()))
+                .stream()
+                .collect(Collectors.toMap(Story::getId, StorySummary::from, (a, b) -> a));
+    }
+}
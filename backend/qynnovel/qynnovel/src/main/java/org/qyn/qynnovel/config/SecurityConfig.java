@@ -2,6 +2,7 @@ package org.qyn.qynnovel.config;
 
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpMethod;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.core.userdetails.User;
@@ -17,7 +18,12 @@ public class SecurityConfig {
     public SecurityFilterChain securityFilterChain(HttpSecurity http) throws Exception {
         http
                 .authorizeHttpRequests(auth -> auth
+                        // Dữ liệu riêng của user: phải đăng nhập, user lấy từ security context
+                        .requestMatchers(HttpMethod.POST, "/api/chapters/*/read").authenticated()
+                        .requestMatchers(HttpMethod.GET, "/api/stories/*/continue", "/api/stories/library").authenticated()
+                        .requestMatchers("/api/stories/*/rating").authenticated()
                         .requestMatchers("/api/chapters/**", "/error").permitAll() // Allow /error
+                        .requestMatchers(HttpMethod.GET, "/api/stories/**", "/api/rankings/**").permitAll()
                         .anyRequest().authenticated())
                 .httpBasic() // Enable Basic Authentication
                 .and()
@@ -0,0 +1,21 @@
+package org.qyn.qynnovel.config;
+
+import org.qyn.qynnovel.components.LazyCollectionGuard;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+@Configuration
+public class WebConfig implements WebMvcConfigurer {
+
+    private final LazyCollectionGuard lazyCollectionGuard;
+
+    public WebConfig(LazyCollectionGuard lazyCollectionGuard) {
+        this.lazyCollectionGuard = lazyCollectionGuard;
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(lazyCollectionGuard).addPathPatterns("/api/**");
+    }
+}
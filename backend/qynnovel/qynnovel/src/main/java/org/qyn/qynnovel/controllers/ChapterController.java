@@ -1,14 +1,33 @@
 package org.qyn.qynnovel.controllers;
 
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 
+import org.qyn.qynnovel.dto.ChapterListVersion;
+import org.qyn.qynnovel.dto.ChapterNavigation;
+import org.qyn.qynnovel.dto.ChapterSearchHit;
+import org.qyn.qynnovel.dto.ChapterTocItem;
+import org.qyn.qynnovel.dto.KeysetPage;
 import org.qyn.qynnovel.models.Chapter;
 import org.qyn.qynnovel.services.ChapterService;
+import org.qyn.qynnovel.services.UserService;
+import org.qyn.qynnovel.storage.ContentStat;
+import org.qyn.qynnovel.storage.StoredContent;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.Resource;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.CrossOrigin;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -20,6 +39,7 @@ import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
 
 @RestController
 @RequestMapping("/api/chapters")
@@ -28,9 +48,14 @@ public class ChapterController {
     @Autowired
     private ChapterService chapterService;
     private static final org.slf4j.Logger log = org.slf4j.LoggerFactory.getLogger(ChapterController.class);
+    private static final int MAX_PAGE_SIZE = 200;
+    private static final int MAX_SEARCH_PAGE_SIZE = 50;
 
-    public ChapterController(ChapterService chapterService) {
+    private final UserService userService;
+
+    public ChapterController(ChapterService chapterService, UserService userService) {
         this.chapterService = chapterService;
+        this.userService = userService;
     }
 
     /**
@@ -52,12 +77,92 @@ public class ChapterController {
     }
 
     /**
-     * Lấy chương với nội dung đầy đủ
+     * Lấy chương với nội dung đầy đủ.
+     * If-None-Match / If-Modified-Since được kiểm tra chỉ bằng metadata, chưa đọc file nội dung.
+     * Body không có lượt xem (đổi liên tục theo mỗi lần ghi lượt xem) để validator chỉ đổi
+     * khi chương đổi; lượt xem lấy qua /{id}/views.
      */
     @GetMapping("/{id}/content")
-    public ResponseEntity<Chapter> getChapterWithContent(@PathVariable Long id) {
-        Chapter chapter = chapterService.getChapterWithContent(id);
-        return ResponseEntity.ok(chapter);
+    public ResponseEntity<Chapter> getChapterWithContent(@PathVariable Long id, WebRequest request) {
+        Chapter chapter = chapterService.findChapterMetadata(id).orElse(null);
+        if (chapter == null) {
+            return ResponseEntity.notFound().build();
+        }
+        String etag = chapterEtag(chapter);
+        long lastModified = toEpochMillis(chapter.getUpdatedAt());
+        if (request.checkNotModified(etag, lastModified)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+        }
+
+        chapterService.loadContentAndRecordView(chapter);
+        chapter.setViews(null);
+        return ResponseEntity.ok()
+                .eTag(etag)
+                .lastModified(lastModified)
+                .cacheControl(CacheControl.noCache())
+                .body(chapter);
+    }
+
+    /**
+     * Lượt xem của chương (đã ghi xuống DB), tách khỏi /content để không làm đổi ETag của nội dung
+     */
+    @GetMapping("/{id}/views")
+    public ResponseEntity<Map<String, Object>> getChapterViews(@PathVariable Long id) {
+        Chapter chapter = chapterService.findChapterMetadata(id).orElse(null);
+        if (chapter == null) {
+            return ResponseEntity.notFound().build();
+        }
+        long views = chapter.getViews() == null ? 0 : chapter.getViews();
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.noStore())
+                .body(Map.of("chapterId", id, "views", views));
+    }
+
+    /**
+     * Stream nội dung thô của chương (text/plain) thẳng từ nơi lưu trữ (file hoặc segment),
+     * không giải mã thành String nên chương dài cũng không chiếm heap.
+     * Trả bản nén sẵn (br/gzip) theo Accept-Encoding nếu có.
+     * If-None-Match / If-Modified-Since được kiểm tra trước bằng metadata của nơi lưu trữ:
+     * 304 không mở nội dung và không tính lượt xem. Range do Spring cắt từ nội dung đã mở;
+     * lượt xem chỉ tính cho 200 hoặc 206 có đoạn bắt đầu từ byte 0.
+     */
+    @GetMapping("/{id}/raw")
+    public ResponseEntity<Resource> getChapterRawContent(
+            @PathVariable Long id,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding,
+            @RequestHeader(value = HttpHeaders.RANGE, required = false) String range,
+            WebRequest request) {
+        Chapter chapter = chapterService.findChapterMetadata(id).orElse(null);
+        if (chapter == null || chapter.getStoragePath() == null) {
+            return ResponseEntity.notFound().build();
+        }
+
+        ContentStat stat = chapterService.statChapterContent(chapter, acceptEncoding);
+        String etag = rawEtag(chapter.getId(), stat.contentEncoding(), stat.length(), stat.lastModified());
+        if (request.checkNotModified(etag, stat.lastModified())) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                    .eTag(etag)
+                    .varyBy(HttpHeaders.ACCEPT_ENCODING)
+                    .build();
+        }
+
+        // Header lấy theo bản đã mở: nội dung có thể vừa được ghi lại sau khi stat
+        StoredContent stored = chapterService.openChapterContent(chapter, acceptEncoding);
+        if (countsAsView(range, stored.length())) {
+            chapterService.recordView(chapter);
+        }
+
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .contentType(new MediaType(MediaType.TEXT_PLAIN, StandardCharsets.UTF_8))
+                .contentLength(stored.length())
+                .eTag(rawEtag(chapter.getId(), stored.contentEncoding(), stored.length(), stored.lastModified()))
+                .lastModified(stored.lastModified())
+                .cacheControl(CacheControl.noCache())
+                .varyBy(HttpHeaders.ACCEPT_ENCODING);
+        if (stored.contentEncoding() != null) {
+            response.header(HttpHeaders.CONTENT_ENCODING, stored.contentEncoding());
+        }
+        return response.body(stored.body());
     }
 
     /**
@@ -92,12 +197,23 @@ public class ChapterController {
     }
 
     /**
-     * Lấy danh sách chương của truyện
+     * Lấy mục lục chương của truyện (chỉ các trường cần hiển thị)
      */
     @GetMapping("/story/{storyId}")
-    public ResponseEntity<List<Chapter>> getChaptersByStory(@PathVariable Long storyId) {
-        List<Chapter> chapters = chapterService.getChaptersByStoryId(storyId);
-        return ResponseEntity.ok(chapters);
+    public ResponseEntity<List<ChapterTocItem>> getChaptersByStory(@PathVariable Long storyId, WebRequest request) {
+        ChapterListVersion version = chapterService.getChapterListVersion(storyId);
+        long lastModified = toEpochMillis(version.lastUpdated());
+        String etag = "\"cl-" + storyId + "-" + version.chapterCount() + "-" + Long.toHexString(lastModified) + "\"";
+        if (request.checkNotModified(etag, lastModified)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+        }
+
+        List<ChapterTocItem> chapters = chapterService.getChapterToc(storyId);
+        return ResponseEntity.ok()
+                .eTag(etag)
+                .lastModified(lastModified)
+                .cacheControl(CacheControl.noCache())
+                .body(chapters);
     }
 
     /**
@@ -125,27 +241,109 @@ public class ChapterController {
     }
 
     /**
-     * Lưu lịch sử đọc
+     * Lấy chương trước, hiện tại và sau (chỉ metadata) trong một lần gọi
+     */
+    @GetMapping("/{id}/navigation")
+    public ResponseEntity<ChapterNavigation> getChapterNavigation(@PathVariable Long id) {
+        return ResponseEntity.ok(chapterService.getNavigation(id));
+    }
+
+    /**
+     * Lưu lịch sử đọc của user đang đăng nhập (user lấy từ security context)
      */
     @PostMapping("/{id}/read")
     public ResponseEntity<Void> markAsRead(
             @PathVariable Long id,
-            @RequestHeader("X-User-ID") Long userId) {
+            Authentication authentication) {
+        Optional<Long> userId = userService.currentUserId(authentication);
+        if (userId.isEmpty()) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
 
-        chapterService.saveReadingHistory(userId, id);
-        return ResponseEntity.ok().build();
+        return switch (chapterService.saveReadingHistory(userId.get(), id)) {
+            case ACCEPTED -> ResponseEntity.accepted().build();
+            case UNKNOWN_CHAPTER -> ResponseEntity.notFound().build();
+            // Hàng đợi lịch sử đọc đầy: báo client thử lại sau
+            case QUEUE_FULL -> ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, "1")
+                    .build();
+        };
     }
 
     /**
-     * Lấy danh sách chương của truyện (phân trang)
+     * Thống kê cache nội dung chương (hit/miss/eviction)
+     */
+    @GetMapping("/cache/stats")
+    public ResponseEntity<Map<String, Object>> getContentCacheStats() {
+        return ResponseEntity.ok(chapterService.getContentCacheStats());
+    }
+
+    /**
+     * Lấy danh sách chương của truyện (phân trang keyset).
+     * Trang đầu không cần cursor, các trang sau gửi lại nextCursor của trang trước.
      */
     @GetMapping("/story/{storyId}/list")
-    public ResponseEntity<Page<Chapter>> getChaptersByStory(
+    public ResponseEntity<KeysetPage<ChapterTocItem>> getChaptersByStory(
             @PathVariable Long storyId,
-            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(required = false) String cursor,
             @RequestParam(defaultValue = "50") int size) {
 
-        Page<Chapter> chapters = (Page<Chapter>) chapterService.getChaptersByStoryId(storyId);
-        return ResponseEntity.ok(chapters);
+        int pageSize = Math.max(1, Math.min(size, MAX_PAGE_SIZE));
+        try {
+            return ResponseEntity.ok(chapterService.getChapterTocPage(storyId, cursor, pageSize));
+        } catch (IllegalArgumentException e) {
+            log.warn("Invalid chapter list cursor for story {}: {}", storyId, cursor);
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    /**
+     * Tìm trong nội dung chương, có thể giới hạn trong một truyện
+     */
+    @GetMapping("/search")
+    public ResponseEntity<Page<ChapterSearchHit>> searchChapterContent(
+            @RequestParam("q") String keyword,
+            @RequestParam(required = false) Long storyId,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "20") int size) {
+
+        PageRequest pageable = PageRequest.of(Math.max(page, 0), Math.max(1, Math.min(size, MAX_SEARCH_PAGE_SIZE)));
+        return ResponseEntity.ok(chapterService.searchChapterContent(keyword, storyId, pageable));
+    }
+
+    /**
+     * ETag mạnh của /content: nội dung và metadata hiển thị chỉ đổi cùng updatedAt
+     * (cập nhật nội dung luôn đặt lại updatedAt)
+     */
+    private static String chapterEtag(Chapter chapter) {
+        return "\"ch-" + chapter.getId() + "-" + Long.toHexString(toEpochMillis(chapter.getUpdatedAt())) + "\"";
+    }
+
+    /**
+     * ETag mạnh của /raw: các byte gửi đi xác định bởi chương, kiểu nén, độ dài và thời điểm ghi
+     */
+    private static String rawEtag(Long chapterId, String contentEncoding, long length, long lastModified) {
+        String encodingTag = contentEncoding == null ? "" : "-" + contentEncoding;
+        return "\"" + chapterId + "-" + Long.toHexString(lastModified)
+                + "-" + Long.toHexString(length) + encodingTag + "\"";
+    }
+
+    /**
+     * Request không có Range, hoặc có một đoạn bắt đầu từ byte 0 (các đoạn sau của cùng lần
+     * đọc không tính lại); Range sai cú pháp thì Spring trả 416 nên cũng không tính
+     */
+    private static boolean countsAsView(String range, long length) {
+        if (range == null) {
+            return true;
+        }
+        try {
+            return HttpRange.parseRanges(range).stream().anyMatch(r -> r.getRangeStart(length) == 0);
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    private static long toEpochMillis(LocalDateTime time) {
+        return time == null ? 0 : time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
     }
 }
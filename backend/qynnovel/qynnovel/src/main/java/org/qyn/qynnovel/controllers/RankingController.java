@@ -0,0 +1,90 @@
+package org.qyn.qynnovel.controllers;
+
+import org.qyn.qynnovel.dto.RankingEntry;
+import org.qyn.qynnovel.dto.TrendingEntry;
+import org.qyn.qynnovel.ranking.RankingBoard;
+import org.qyn.qynnovel.services.RankingService;
+import org.qyn.qynnovel.services.TrendingService;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.CrossOrigin;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequestMapping("/api/rankings")
+@CrossOrigin(origins = "http://localhost:3000")
+public class RankingController {
+    private static final int MAX_PAGE_SIZE = 100;
+
+    private final RankingService rankingService;
+    private final TrendingService trendingService;
+
+    public RankingController(RankingService rankingService, TrendingService trendingService) {
+        this.rankingService = rankingService;
+        this.trendingService = trendingService;
+    }
+
+    /**
+     * Truyện thịnh hành (lượt đọc/thích gần đây, giảm dần theo thời gian)
+     */
+    @GetMapping("/trending")
+    public ResponseEntity<Page<TrendingEntry>> getTrending(
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "20") int size) {
+
+        PageRequest pageable = pageRequest(page, size);
+        return ResponseEntity.ok(new PageImpl<>(
+                trendingService.getPage(pageable.getPageNumber(), pageable.getPageSize()),
+                pageable,
+                trendingService.getSize()));
+    }
+
+    /**
+     * Trang của một bảng xếp hạng: views, likes, daily, weekly, recommended, updated
+     */
+    @GetMapping("/{board}")
+    public ResponseEntity<Page<RankingEntry>> getRanking(
+            @PathVariable String board,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "20") int size) {
+
+        RankingBoard rankingBoard;
+        try {
+            rankingBoard = RankingBoard.fromKey(board);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.notFound().build();
+        }
+
+        PageRequest pageable = pageRequest(page, size);
+        return ResponseEntity.ok(new PageImpl<>(
+                rankingService.getPage(rankingBoard, pageable.getPageNumber(), pageable.getPageSize()),
+                pageable,
+                rankingService.getSize(rankingBoard)));
+    }
+
+    /**
+     * Trang của bảng xếp hạng lượt xem trong một thể loại
+     */
+    @GetMapping("/category/{categoryId}")
+    public ResponseEntity<Page<RankingEntry>> getCategoryRanking(
+            @PathVariable Long categoryId,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "20") int size) {
+
+        PageRequest pageable = pageRequest(page, size);
+        return ResponseEntity.ok(new PageImpl<>(
+                rankingService.getCategoryPage(categoryId, pageable.getPageNumber(), pageable.getPageSize()),
+                pageable,
+                rankingService.getCategorySize(categoryId)));
+    }
+
+    private static PageRequest pageRequest(int page, int size) {
+        return PageRequest.of(Math.max(page, 0), Math.max(1, Math.min(size, MAX_PAGE_SIZE)));
+    }
+}
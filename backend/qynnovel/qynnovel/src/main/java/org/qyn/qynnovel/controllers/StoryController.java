@@ -0,0 +1,252 @@
+package org.qyn.qynnovel.controllers;
+
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.qyn.qynnovel.dto.KeysetPage;
+import org.qyn.qynnovel.dto.LibraryEntry;
+import org.qyn.qynnovel.dto.RatingStats;
+import org.qyn.qynnovel.dto.ReadingPosition;
+import org.qyn.qynnovel.dto.StoryDailyReads;
+import org.qyn.qynnovel.dto.StoryDetail;
+import org.qyn.qynnovel.dto.StoryListItem;
+import org.qyn.qynnovel.dto.StoryListSort;
+import org.qyn.qynnovel.dto.StorySuggestion;
+import org.qyn.qynnovel.dto.StorySummary;
+import org.qyn.qynnovel.models.Rating;
+import org.qyn.qynnovel.models.StoryStatus;
+import org.qyn.qynnovel.search.StoryFilterIndex.Filter;
+import org.qyn.qynnovel.services.RatingService;
+import org.qyn.qynnovel.services.ReadingPositionService;
+import org.qyn.qynnovel.services.StoryService;
+import org.qyn.qynnovel.services.StoryStatsService;
+import org.qyn.qynnovel.services.UserService;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
+import org.springframework.web.bind.annotation.CrossOrigin;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequestMapping("/api/stories")
+@CrossOrigin(origins = "http://localhost:3000")
+public class StoryController {
+    private static final int MAX_PAGE_SIZE = 100;
+    private static final int MAX_SUGGESTIONS = 20;
+    private static final int MAX_LIBRARY_SIZE = 500;
+    private static final int MAX_DAILY_READS_DAYS = 366;
+
+    private final StoryService storyService;
+    private final RatingService ratingService;
+    private final ReadingPositionService positionService;
+    private final StoryStatsService statsService;
+    private final UserService userService;
+
+    public StoryController(StoryService storyService, RatingService ratingService,
+            ReadingPositionService positionService, StoryStatsService statsService, UserService userService) {
+        this.storyService = storyService;
+        this.ratingService = ratingService;
+        this.positionService = positionService;
+        this.statsService = statsService;
+        this.userService = userService;
+    }
+
+    /**
+     * Chi tiết truyện theo id (thông tin, người đăng, thể loại, số liệu, chương mới nhất)
+     */
+    @GetMapping("/{id:\\d+}")
+    public ResponseEntity<StoryDetail> getStory(@PathVariable Long id) {
+        return ResponseEntity.of(storyService.getStoryDetail(id));
+    }
+
+    /**
+     * Chi tiết truyện theo slug
+     */
+    @GetMapping("/slug/{slug}")
+    public ResponseEntity<StoryDetail> getStoryBySlug(@PathVariable String slug) {
+        return ResponseEntity.of(storyService.getStoryDetailBySlug(slug));
+    }
+
+    /**
+     * Truyện thuộc một hoặc nhiều thể loại (không trùng lặp), kèm thể loại của từng truyện.
+     * sort: newest (mặc định), updated, views; trang sau lấy bằng cursor của trang trước.
+     */
+    @GetMapping("/by-category")
+    public ResponseEntity<KeysetPage<StoryListItem>> getStoriesByCategories(
+            @RequestParam("categoryIds") List<Long> categoryIds,
+            @RequestParam(defaultValue = "newest") String sort,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size) {
+
+        if (categoryIds.isEmpty()) {
+            return ResponseEntity.badRequest().build();
+        }
+        try {
+            return ResponseEntity.ok(storyService.getStoriesByCategories(categoryIds.stream().distinct().toList(),
+                    StoryListSort.fromKey(sort), cursor, Math.max(1, Math.min(size, MAX_PAGE_SIZE))));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    /**
+     * Lọc truyện theo thể loại và trạng thái: any = thuộc một trong các thể loại, all = thuộc
+     * tất cả, exclude = không thuộc thể loại nào, status = một trong các trạng thái.
+     * Kết quả mới nhất trước; trang sau lấy bằng cursor của trang trước.
+     */
+    @GetMapping("/filter")
+    public ResponseEntity<KeysetPage<StorySummary>> filterStories(
+            @RequestParam(required = false) Set<Long> any,
+            @RequestParam(required = false) Set<Long> all,
+            @RequestParam(required = false) Set<Long> exclude,
+            @RequestParam(required = false) Set<String> status,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size) {
+
+        try {
+            Set<StoryStatus> statuses = status == null ? Set.of()
+                    : status.stream().map(value -> StoryStatus.valueOf(value.toUpperCase())).collect(Collectors.toSet());
+            Filter filter = new Filter(orEmpty(any), orEmpty(all), orEmpty(exclude), statuses);
+            return ResponseEntity.ok(storyService.filterStories(filter, cursor, Math.max(1, Math.min(size, MAX_PAGE_SIZE))));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    /**
+     * Tìm kiếm truyện theo tiêu đề, tác giả, mô tả, thể loại (xếp hạng theo độ liên quan)
+     */
+    @GetMapping("/search")
+    public ResponseEntity<Page<StorySummary>> searchStories(
+            @RequestParam("q") String keyword,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "20") int size) {
+
+        PageRequest pageable = PageRequest.of(Math.max(page, 0), Math.max(1, Math.min(size, MAX_PAGE_SIZE)));
+        return ResponseEntity.ok(storyService.advancedSearch(keyword, pageable));
+    }
+
+    /**
+     * Gợi ý truyện theo tiền tố đang gõ (tiêu đề, tác giả), nhiều lượt xem trước
+     */
+    @GetMapping("/suggest")
+    public ResponseEntity<List<StorySuggestion>> suggestStories(
+            @RequestParam("q") String prefix,
+            @RequestParam(defaultValue = "10") int limit) {
+
+        return ResponseEntity.ok(storyService.suggest(prefix, Math.max(1, Math.min(limit, MAX_SUGGESTIONS))));
+    }
+
+    /**
+     * Truyện đánh giá cao. sort=bayesian (mặc định): điểm Bayes; sort=average: điểm trung bình,
+     * chỉ tính truyện có tối thiểu minVotes lượt đánh giá
+     */
+    @GetMapping("/top-rated")
+    public ResponseEntity<List<StorySummary>> getTopRated(
+            @RequestParam(defaultValue = "bayesian") String sort,
+            @RequestParam(defaultValue = "10") int minVotes,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "20") int size) {
+
+        PageRequest pageable = PageRequest.of(Math.max(page, 0), Math.max(1, Math.min(size, MAX_PAGE_SIZE)));
+        return ResponseEntity.ok(storyService.getTopRated(!"average".equalsIgnoreCase(sort), minVotes, pageable));
+    }
+
+    /**
+     * Thống kê đánh giá của truyện (số lượt, điểm trung bình, điểm Bayes, phân bố 1-5 sao)
+     */
+    @GetMapping("/{id}/rating-stats")
+    public ResponseEntity<RatingStats> getRatingStats(@PathVariable Long id) {
+        return ResponseEntity.ok(ratingService.getRatingStats(id));
+    }
+
+    /**
+     * Lượt đọc theo ngày (UTC) của truyện trong {@code days} ngày gần nhất, không tính hôm nay
+     */
+    @GetMapping("/{id}/daily-reads")
+    public ResponseEntity<List<StoryDailyReads>> getDailyReads(
+            @PathVariable Long id,
+            @RequestParam(defaultValue = "30") int days) {
+        LocalDate from = LocalDate.now(ZoneOffset.UTC).minusDays(Math.max(1, Math.min(days, MAX_DAILY_READS_DAYS)));
+        return ResponseEntity.ok(statsService.getDailyReads(id, from));
+    }
+
+    /**
+     * User đang đăng nhập đánh giá truyện (1-5 sao); đánh giá lại thì ghi đè đánh giá cũ
+     */
+    @PutMapping("/{id}/rating")
+    public ResponseEntity<Map<String, Object>> rateStory(
+            @PathVariable Long id,
+            Authentication authentication,
+            @RequestBody Map<String, Integer> request) {
+        Optional<Long> userId = userService.currentUserId(authentication);
+        if (userId.isEmpty()) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+
+        Rating rating = ratingService.rate(userId.get(), id, request.get("rating"));
+        return ResponseEntity.ok(Map.of("storyId", id, "rating", rating.getRating()));
+    }
+
+    /**
+     * Xóa đánh giá của user đang đăng nhập cho truyện
+     */
+    @DeleteMapping("/{id}/rating")
+    public ResponseEntity<Void> removeRating(
+            @PathVariable Long id,
+            Authentication authentication) {
+        Optional<Long> userId = userService.currentUserId(authentication);
+        if (userId.isEmpty()) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+
+        ratingService.removeRating(userId.get(), id);
+        return ResponseEntity.noContent().build();
+    }
+
+    /**
+     * Chương user đang đăng nhập đọc gần nhất trong truyện ("đọc tiếp")
+     */
+    @GetMapping("/{id}/continue")
+    public ResponseEntity<ReadingPosition> continueReading(
+            @PathVariable Long id,
+            Authentication authentication) {
+        Optional<Long> userId = userService.currentUserId(authentication);
+        if (userId.isEmpty()) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        return ResponseEntity.of(positionService.getPosition(userId.get(), id));
+    }
+
+    /**
+     * Tủ truyện của user đang đăng nhập: các truyện đã đọc kèm vị trí đọc cuối, truyện đọc gần nhất trước
+     */
+    @GetMapping("/library")
+    public ResponseEntity<List<LibraryEntry>> getLibrary(
+            Authentication authentication,
+            @RequestParam(defaultValue = "50") int limit) {
+        Optional<Long> userId = userService.currentUserId(authentication);
+        if (userId.isEmpty()) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        return ResponseEntity.ok(positionService.getLibrary(userId.get(), Math.max(1, Math.min(limit, MAX_LIBRARY_SIZE))));
+    }
+
+    private static Set<Long> orEmpty(Set<Long> values) {
+        return values == null ? Set.of() : values;
+    }
+}
@@ -0,0 +1,16 @@
+package org.qyn.qynnovel.dto;
+
+import org.qyn.qynnovel.models.Category;
+
+/**
+ * Thể loại rút gọn (không kèm danh sách truyện của thể loại)
+ */
+public record CategorySummary(
+        Long id,
+        String name,
+        String slug) {
+
+    public static CategorySummary from(Category category) {
+        return new CategorySummary(category.getId(), category.getName(), category.getSlug());
+    }
+}
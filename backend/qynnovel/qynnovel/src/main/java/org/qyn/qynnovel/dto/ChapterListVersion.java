@@ -0,0 +1,9 @@
+package org.qyn.qynnovel.dto;
+
+import java.time.LocalDateTime;
+
+/**
+ * Phiên bản danh sách chương của một truyện: thay đổi khi thêm, xóa hoặc sửa chương
+ */
+public record ChapterListVersion(Long storyId, long chapterCount, LocalDateTime lastUpdated) {
+}
@@ -0,0 +1,11 @@
+package org.qyn.qynnovel.dto;
+
+/**
+ * Chương hiện tại cùng chương trước/sau (null nếu là chương đầu/cuối)
+ */
+public record ChapterNavigation(
+        Long storyId,
+        ChapterTocItem previous,
+        ChapterTocItem current,
+        ChapterTocItem next) {
+}
@@ -0,0 +1,15 @@
+package org.qyn.qynnovel.dto;
+
+/**
+ * Một chương khớp khi tìm trong nội dung: vị trí chương, điểm liên quan và đoạn trích
+ * (từ khóa bọc trong &lt;mark&gt;)
+ */
+public record ChapterSearchHit(
+        Long storyId,
+        Long chapterId,
+        Integer chapterNumber,
+        String title,
+        String slug,
+        float score,
+        String snippet) {
+}
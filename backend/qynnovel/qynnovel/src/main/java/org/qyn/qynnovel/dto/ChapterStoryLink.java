@@ -0,0 +1,7 @@
+package org.qyn.qynnovel.dto;
+
+/**
+ * Id chương và id truyện chứa chương đó
+ */
+public record ChapterStoryLink(Long chapterId, Long storyId) {
+}
@@ -0,0 +1,13 @@
+package org.qyn.qynnovel.dto;
+
+/**
+ * Một dòng trong mục lục truyện: chỉ các cột cần để hiển thị danh sách chương
+ */
+public record ChapterTocItem(
+        Long id,
+        Integer chapterNumber,
+        String title,
+        String slug,
+        Integer wordCount,
+        Boolean isLocked) {
+}
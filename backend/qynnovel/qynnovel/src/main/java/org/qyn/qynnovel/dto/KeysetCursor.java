@@ -0,0 +1,60 @@
+package org.qyn.qynnovel.dto;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Mã hóa/giải mã cursor của phân trang keyset. Cursor là chuỗi base64url của
+ * các giá trị khóa của bản ghi cuối trang trước, client chỉ việc gửi lại.
+ */
+public final class KeysetCursor {
+
+    private static final String VERSION = "v1";
+
+    private KeysetCursor() {
+    }
+
+    public static String encode(long... values) {
+        StringBuilder raw = new StringBuilder(VERSION);
+        for (long value : values) {
+            raw.append(':').append(value);
+        }
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(raw.toString().getBytes(StandardCharsets.US_ASCII));
+    }
+
+    /**
+     * Giải mã cursor thành đúng {@code parts} giá trị
+     *
+     * @throws IllegalArgumentException nếu cursor không hợp lệ
+     */
+    public static long[] decode(String cursor, int parts) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.US_ASCII);
+            String[] tokens = raw.split(":");
+            if (tokens.length != parts + 1 || !VERSION.equals(tokens[0])) {
+                throw new IllegalArgumentException("Cursor không hợp lệ: " + cursor);
+            }
+            long[] values = new long[parts];
+            for (int i = 0; i < parts; i++) {
+                values[i] = Long.parseLong(tokens[i + 1]);
+            }
+            return values;
+        } catch (IllegalArgumentException e) {
+            // NumberFormatException và lỗi base64 đều là IllegalArgumentException
+            throw new IllegalArgumentException("Cursor không hợp lệ: " + cursor, e);
+        }
+    }
+
+    /**
+     * Giá trị khóa kiểu int (ví dụ số chương) trong cursor đã giải mã
+     *
+     * @throws IllegalArgumentException nếu giá trị nằm ngoài phạm vi int (cursor bị sửa tay)
+     */
+    public static int toInt(long value) {
+        if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Cursor không hợp lệ: giá trị " + value + " ngoài phạm vi");
+        }
+        return (int) value;
+    }
+}
@@ -0,0 +1,14 @@
+package org.qyn.qynnovel.dto;
+
+import java.util.List;
+
+/**
+ * Một trang kết quả phân trang theo keyset: không có tổng số bản ghi,
+ * chỉ có cursor (mờ) để lấy trang tiếp theo
+ */
+public record KeysetPage<T>(List<T> items, String nextCursor, boolean hasNext) {
+
+    public static <T> KeysetPage<T> of(List<T> items, String nextCursor) {
+        return new KeysetPage<>(items, nextCursor, nextCursor != null);
+    }
+}
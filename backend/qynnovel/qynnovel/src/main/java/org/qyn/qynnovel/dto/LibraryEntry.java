@@ -0,0 +1,9 @@
+package org.qyn.qynnovel.dto;
+
+/**
+ * Một truyện trong tủ truyện của user: vị trí đọc cuối và thông tin rút gọn của truyện
+ */
+public record LibraryEntry(
+        ReadingPosition position,
+        StorySummary story) {
+}
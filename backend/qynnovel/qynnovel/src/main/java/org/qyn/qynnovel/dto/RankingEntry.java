@@ -0,0 +1,10 @@
+package org.qyn.qynnovel.dto;
+
+/**
+ * Một dòng của bảng xếp hạng: thứ hạng (bắt đầu từ 1), điểm theo bảng và thông tin truyện
+ */
+public record RankingEntry(
+        int rank,
+        long score,
+        StorySummary story) {
+}
@@ -0,0 +1,19 @@
+package org.qyn.qynnovel.dto;
+
+import java.util.List;
+
+/**
+ * Thống kê đánh giá của một truyện: số lượt, điểm trung bình, điểm Bayes
+ * và số lượt theo từng mức 1-5 sao (histogram.get(0) là 1 sao)
+ */
+public record RatingStats(
+        Long storyId,
+        long ratingCount,
+        double averageRating,
+        double bayesianRating,
+        List<Integer> histogram) {
+
+    public static RatingStats empty(Long storyId) {
+        return new RatingStats(storyId, 0, 0, 0, List.of(0, 0, 0, 0, 0));
+    }
+}
@@ -0,0 +1,13 @@
+package org.qyn.qynnovel.dto;
+
+import java.time.LocalDateTime;
+
+/**
+ * Vị trí đọc cuối cùng của user trong một truyện: chương đọc gần nhất và thời điểm đọc
+ */
+public record ReadingPosition(
+        Long userId,
+        Long storyId,
+        Long chapterId,
+        LocalDateTime readAt) {
+}
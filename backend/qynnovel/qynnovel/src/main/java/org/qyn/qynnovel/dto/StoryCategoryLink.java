@@ -0,0 +1,7 @@
+package org.qyn.qynnovel.dto;
+
+/**
+ * Một dòng của bảng story_categories
+ */
+public record StoryCategoryLink(Long storyId, Long categoryId) {
+}
@@ -0,0 +1,12 @@
+package org.qyn.qynnovel.dto;
+
+import java.time.LocalDateTime;
+
+/**
+ * Id truyện kèm các cột dùng làm khóa keyset khi duyệt danh sách theo thể loại
+ */
+public record StoryCursorRow(
+        Long id,
+        LocalDateTime updatedAt,
+        Long totalViews) {
+}
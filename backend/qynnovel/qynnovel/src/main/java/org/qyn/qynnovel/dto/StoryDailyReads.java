@@ -0,0 +1,12 @@
+package org.qyn.qynnovel.dto;
+
+import java.time.LocalDate;
+
+/**
+ * Lượt đọc của truyện trong một ngày (UTC): số lượt đọc và số người đọc khác nhau
+ */
+public record StoryDailyReads(
+        LocalDate date,
+        int readCount,
+        int readerCount) {
+}
@@ -0,0 +1,61 @@
+package org.qyn.qynnovel.dto;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import org.qyn.qynnovel.models.Story;
+
+/**
+ * Dữ liệu trang chi tiết truyện. Dựng từ một truy vấn fetch join (truyện, người đăng,
+ * thể loại) và một truy vấn các chương mới nhất; các số đếm lấy từ cột thống kê,
+ * không chạm tới collection nào khác của entity Story.
+ */
+public record StoryDetail(
+        Long id,
+        String title,
+        String slug,
+        String author,
+        String description,
+        String coverImage,
+        String status,
+        Long totalViews,
+        Long totalLikes,
+        Integer chapterCount,
+        Long totalWordCount,
+        Integer latestChapterNumber,
+        Integer ratingCount,
+        Double averageRating,
+        Double bayesianRating,
+        LocalDateTime createdAt,
+        LocalDateTime updatedAt,
+        UserSummary uploader,
+        List<CategorySummary> categories,
+        List<ChapterTocItem> latestChapters) {
+
+    /**
+     * {@code story} phải được nạp kèm user và categories (StoryRepository.findDetailById / findDetailBySlug)
+     */
+    public static StoryDetail from(Story story, List<ChapterTocItem> latestChapters) {
+        return new StoryDetail(
+                story.getId(),
+                story.getTitle(),
+                story.getSlug(),
+                story.getAuthor(),
+                story.getDescription(),
+                story.getCoverImage(),
+                story.getStatus() == null ? null : story.getStatus().name(),
+                story.getTotalViews(),
+                story.getTotalLikes(),
+                story.getChapterCount(),
+                story.getTotalWordCount(),
+                story.getLatestChapterNumber(),
+                story.getRatingCount(),
+                story.getAverageRating(),
+                story.getBayesianRating(),
+                story.getCreatedAt(),
+                story.getUpdatedAt(),
+                story.getUser() == null ? null : UserSummary.from(story.getUser()),
+                story.getCategories().stream().map(CategorySummary::from).toList(),
+                latestChapters);
+    }
+}
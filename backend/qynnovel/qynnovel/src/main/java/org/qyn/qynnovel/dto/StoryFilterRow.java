@@ -0,0 +1,11 @@
+package org.qyn.qynnovel.dto;
+
+import org.qyn.qynnovel.models.StoryStatus;
+
+/**
+ * Id và trạng thái của truyện, dùng khi nạp index lọc (StoryFilterIndex)
+ */
+public record StoryFilterRow(
+        Long id,
+        StoryStatus status) {
+}
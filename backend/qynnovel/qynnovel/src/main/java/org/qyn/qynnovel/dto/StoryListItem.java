@@ -0,0 +1,22 @@
+package org.qyn.qynnovel.dto;
+
+import java.util.List;
+
+import org.qyn.qynnovel.models.Story;
+
+/**
+ * Một truyện trong danh sách theo thể loại: thông tin rút gọn kèm thể loại
+ */
+public record StoryListItem(
+        StorySummary story,
+        List<CategorySummary> categories) {
+
+    /**
+     * {@code story} phải được nạp kèm categories (StoryRepository.findAllWithCategoriesByIdIn)
+     */
+    public static StoryListItem from(Story story) {
+        return new StoryListItem(
+                StorySummary.from(story),
+                story.getCategories().stream().map(CategorySummary::from).toList());
+    }
+}
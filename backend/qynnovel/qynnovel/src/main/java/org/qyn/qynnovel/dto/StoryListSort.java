@@ -0,0 +1,29 @@
+package org.qyn.qynnovel.dto;
+
+/**
+ * Thứ tự của danh sách truyện theo thể loại (đều giảm dần, phân trang keyset)
+ */
+public enum StoryListSort {
+    NEWEST("newest"),
+    UPDATED("updated"),
+    VIEWS("views");
+
+    private final String key;
+
+    StoryListSort(String key) {
+        this.key = key;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public static StoryListSort fromKey(String key) {
+        for (StoryListSort sort : values()) {
+            if (sort.key.equalsIgnoreCase(key)) {
+                return sort;
+            }
+        }
+        throw new IllegalArgumentException("Không có kiểu sắp xếp: " + key);
+    }
+}
@@ -0,0 +1,13 @@
+package org.qyn.qynnovel.dto;
+
+import java.time.LocalDateTime;
+
+/**
+ * Các cột của truyện dùng để dựng bảng xếp hạng
+ */
+public record StoryRankingRow(
+        Long id,
+        Long totalViews,
+        Long totalLikes,
+        LocalDateTime updatedAt) {
+}
@@ -0,0 +1,23 @@
+package org.qyn.qynnovel.dto;
+
+import org.qyn.qynnovel.models.Story;
+
+/**
+ * Một gợi ý khi gõ ô tìm kiếm: đủ để hiển thị và dẫn tới trang truyện
+ */
+public record StorySuggestion(
+        Long id,
+        String title,
+        String slug,
+        String author,
+        Long totalViews) {
+
+    public static StorySuggestion from(Story story) {
+        return new StorySuggestion(
+                story.getId(),
+                story.getTitle(),
+                story.getSlug(),
+                story.getAuthor(),
+                story.getTotalViews());
+    }
+}
@@ -0,0 +1,42 @@
+package org.qyn.qynnovel.dto;
+
+import java.time.LocalDateTime;
+
+import org.qyn.qynnovel.models.Story;
+
+/**
+ * Thông tin rút gọn của truyện cho các trang danh sách/tìm kiếm,
+ * không chứa collection nào của entity Story
+ */
+public record StorySummary(
+        Long id,
+        String title,
+        String slug,
+        String author,
+        String coverImage,
+        String status,
+        Long totalViews,
+        Long totalLikes,
+        Integer chapterCount,
+        Integer latestChapterNumber,
+        Integer ratingCount,
+        Double averageRating,
+        LocalDateTime updatedAt) {
+
+    public static StorySummary from(Story story) {
+        return new StorySummary(
+                story.getId(),
+                story.getTitle(),
+                story.getSlug(),
+                story.getAuthor(),
+                story.getCoverImage(),
+                story.getStatus() == null ? null : story.getStatus().name(),
+                story.getTotalViews(),
+                story.getTotalLikes(),
+                story.getChapterCount(),
+                story.getLatestChapterNumber(),
+                story.getRatingCount(),
+                story.getAverageRating(),
+                story.getUpdatedAt());
+    }
+}
@@ -0,0 +1,10 @@
+package org.qyn.qynnovel.dto;
+
+/**
+ * Một dòng của danh sách thịnh hành: thứ hạng (bắt đầu từ 1), điểm đã giảm theo thời gian
+ */
+public record TrendingEntry(
+        int rank,
+        double score,
+        StorySummary story) {
+}
@@ -0,0 +1,17 @@
+package org.qyn.qynnovel.dto;
+
+import org.qyn.qynnovel.models.User;
+
+/**
+ * Thông tin công khai của người dùng (không có email, mật khẩu hay collection nào)
+ */
+public record UserSummary(
+        Long id,
+        String username,
+        String displayName,
+        String avatar) {
+
+    public static UserSummary from(User user) {
+        return new UserSummary(user.getId(), user.getUsername(), user.getDisplayName(), user.getAvatar());
+    }
+}
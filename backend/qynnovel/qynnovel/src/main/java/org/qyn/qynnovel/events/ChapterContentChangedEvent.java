@@ -0,0 +1,7 @@
+package org.qyn.qynnovel.events;
+
+/**
+ * Phát ra sau khi file nội dung của một chương được ghi hoặc xóa khỏi storage
+ */
+public record ChapterContentChangedEvent(Long storyId, Long chapterId, boolean deleted) {
+}
@@ -0,0 +1,7 @@
+package org.qyn.qynnovel.events;
+
+/**
+ * Phát ra khi metadata của một chương bị xóa (trong transaction xóa chương)
+ */
+public record ChapterDeletedEvent(Long storyId, Long chapterId) {
+}
@@ -0,0 +1,21 @@
+package org.qyn.qynnovel.events;
+
+/**
+ * Một lượt tương tác với truyện (đọc chương, thích/bỏ thích), phát ra ngay khi
+ * được ghi nhận để các bảng xếp hạng trong bộ nhớ cập nhật mà không cần đọc DB
+ */
+public record StoryActivityEvent(Long storyId, Type type, long delta) {
+
+    public enum Type {
+        VIEW,
+        LIKE
+    }
+
+    public static StoryActivityEvent view(Long storyId) {
+        return new StoryActivityEvent(storyId, Type.VIEW, 1);
+    }
+
+    public static StoryActivityEvent like(Long storyId, long delta) {
+        return new StoryActivityEvent(storyId, Type.LIKE, delta);
+    }
+}
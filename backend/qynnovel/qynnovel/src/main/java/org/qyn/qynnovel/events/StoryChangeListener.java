@@ -0,0 +1,37 @@
+package org.qyn.qynnovel.events;
+
+import org.qyn.qynnovel.models.Story;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+
+/**
+ * JPA entity listener của Story. Hibernate tạo listener qua Spring nên có thể
+ * inject ApplicationEventPublisher; các listener nhận sự kiện nên dùng
+ * {@code @TransactionalEventListener} để chỉ xử lý sau khi transaction commit.
+ */
+public class StoryChangeListener {
+
+    @Autowired
+    private ApplicationEventPublisher publisher;
+
+    @PostPersist
+    @PostUpdate
+    public void afterSave(Story story) {
+        publish(new StoryChangedEvent(story.getId(), false));
+    }
+
+    @PostRemove
+    public void afterRemove(Story story) {
+        publish(new StoryChangedEvent(story.getId(), true));
+    }
+
+    private void publish(StoryChangedEvent event) {
+        if (publisher != null) {
+            publisher.publishEvent(event);
+        }
+    }
+}
@@ -0,0 +1,8 @@
+package org.qyn.qynnovel.events;
+
+/**
+ * Phát ra khi một truyện được thêm, sửa hoặc xóa (qua JPA), để các index
+ * trong bộ nhớ/trên đĩa cập nhật theo
+ */
+public record StoryChangedEvent(Long storyId, boolean deleted) {
+}
@@ -5,6 +5,9 @@ import java.time.LocalDateTime;
 import org.hibernate.annotations.CreationTimestamp;
 import org.hibernate.annotations.UpdateTimestamp;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
+
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import jakarta.persistence.FetchType;
@@ -38,6 +41,8 @@ public class Chapter {
     @Column(name = "word_count", columnDefinition = "INT DEFAULT 0")
     private Integer wordCount = 0;
 
+    // null khi không trả lượt xem (body của /content), khi đó không có trong JSON
+    @JsonInclude(JsonInclude.Include.NON_NULL)
     @Column(columnDefinition = "BIGINT DEFAULT 0")
     private Long views = 0L;
 
@@ -55,6 +60,8 @@ public class Chapter {
     @Column(name = "updated_at")
     private LocalDateTime updatedAt;
 
+    // Không serialize quan hệ lazy: entity trả về cho client đã detach khỏi session
+    @JsonIgnore
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "story_id", insertable = false, updatable = false)
     private Story story;
@@ -31,7 +31,7 @@ public class ReadingHistory {
     private Long storyId;
 
     @CreationTimestamp
-    @Column(name = "read_at", updatable = false)
+    @Column(name = "read_at", nullable = false, updatable = false)
     private LocalDateTime readAt;
 
     @ManyToOne(fetch = FetchType.LAZY)
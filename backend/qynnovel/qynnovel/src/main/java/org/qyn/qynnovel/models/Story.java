@@ -3,12 +3,18 @@ package org.qyn.qynnovel.models;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 
+import org.hibernate.annotations.BatchSize;
 import org.hibernate.annotations.CreationTimestamp;
 import org.hibernate.annotations.UpdateTimestamp;
+import org.qyn.qynnovel.events.StoryChangeListener;
+import org.qyn.qynnovel.events.StoryChangedEvent;
+import org.springframework.data.domain.AfterDomainEventPublication;
+import org.springframework.data.domain.DomainEvents;
 
 import jakarta.persistence.CascadeType;
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
+import jakarta.persistence.EntityListeners;
 import jakarta.persistence.EnumType;
 import jakarta.persistence.Enumerated;
 import jakarta.persistence.FetchType;
@@ -21,10 +27,13 @@ import jakarta.persistence.ManyToMany;
 import jakarta.persistence.ManyToOne;
 import jakarta.persistence.OneToMany;
 import jakarta.persistence.Table;
+import jakarta.persistence.Transient;
+import java.util.Collection;
 import java.util.List;
 
 @Entity
 @Table(name = "stories")
+@EntityListeners(StoryChangeListener.class)
 public class Story {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -55,6 +64,25 @@ public class Story {
     @Column(name = "total_likes", columnDefinition = "BIGINT DEFAULT 0")
     private Long totalLikes = 0L;
 
+    // Thống kê do StoryStatsService cập nhật bằng SQL; JPA chỉ đọc
+    @Column(name = "chapter_count", insertable = false, updatable = false)
+    private Integer chapterCount = 0;
+
+    @Column(name = "total_word_count", insertable = false, updatable = false)
+    private Long totalWordCount = 0L;
+
+    @Column(name = "latest_chapter_number", insertable = false, updatable = false)
+    private Integer latestChapterNumber;
+
+    @Column(name = "rating_count", insertable = false, updatable = false)
+    private Integer ratingCount = 0;
+
+    @Column(name = "average_rating", insertable = false, updatable = false)
+    private Double averageRating = 0.0;
+
+    @Column(name = "bayesian_rating", insertable = false, updatable = false)
+    private Double bayesianRating = 0.0;
+
     @Column(name = "user_id", nullable = false)
     private Long userId;
 
@@ -73,10 +101,16 @@ public class Story {
     @OneToMany(mappedBy = "story", cascade = CascadeType.ALL, orphanRemoval = true)
     private List<Chapter> chapters = new ArrayList<>();
 
+    // Danh sách truyện (Page<Story>) đọc thể loại: nạp theo lô thay vì từng truyện một
     @ManyToMany
+    @BatchSize(size = 100)
     @JoinTable(name = "story_categories", joinColumns = @JoinColumn(name = "story_id"), inverseJoinColumns = @JoinColumn(name = "category_id"))
     private List<Category> categories = new ArrayList<>();
 
+    // Thể loại đã đổi từ lần lưu trước (xem domainEvents())
+    @Transient
+    private boolean categoriesChanged;
+
     @OneToMany(mappedBy = "story", cascade = CascadeType.ALL, orphanRemoval = true)
     private List<Comment> comments = new ArrayList<>();
 
@@ -92,8 +126,8 @@ public class Story {
     @OneToMany(mappedBy = "story", cascade = CascadeType.ALL, orphanRemoval = true)
     private List<Like> likes = new ArrayList<>();
 
-    @OneToMany(mappedBy = "story", cascade = CascadeType.ALL, orphanRemoval = true)
-    private List<ReadingHistory> readingHistories = new ArrayList<>();
+    // Lịch sử đọc không map ở đây: cascade JPA phải nạp mọi dòng reading_history của truyện
+    // để xóa; ReadingHistoryCleaner xóa chúng bằng JDBC sau khi truyện bị xóa
 
     // Constructors
     public Story() {
@@ -178,6 +212,30 @@ public class Story {
         this.totalLikes = totalLikes;
     }
 
+    public Integer getChapterCount() {
+        return chapterCount;
+    }
+
+    public Long getTotalWordCount() {
+        return totalWordCount;
+    }
+
+    public Integer getLatestChapterNumber() {
+        return latestChapterNumber;
+    }
+
+    public Integer getRatingCount() {
+        return ratingCount;
+    }
+
+    public Double getAverageRating() {
+        return averageRating;
+    }
+
+    public Double getBayesianRating() {
+        return bayesianRating;
+    }
+
     public Long getUserId() {
         return userId;
     }
@@ -224,6 +282,7 @@ public class Story {
 
     public void setCategories(List<Category> categories) {
         this.categories = categories;
+        this.categoriesChanged = true;
     }
 
     public List<Comment> getComments() {
@@ -266,23 +325,30 @@ public class Story {
         this.likes = likes;
     }
 
-    public List<ReadingHistory> getReadingHistories() {
-        return readingHistories;
-    }
-
-    public void setReadingHistories(List<ReadingHistory> readingHistories) {
-        this.readingHistories = readingHistories;
-    }
-
     // Helper methods
     public void addCategory(Category category) {
         categories.add(category);
         category.getStories().add(this);
+        categoriesChanged = true;
     }
 
     public void removeCategory(Category category) {
         categories.remove(category);
         category.getStories().remove(this);
+        categoriesChanged = true;
+    }
+
+    // Chỉ đổi collection thì Hibernate không update dòng stories và không gọi @PostUpdate:
+    // StoryRepository.save() phát StoryChangedEvent từ đây để các index cập nhật,
+    // không đổi updatedAt (truyện không nhảy lên danh sách "mới cập nhật")
+    @DomainEvents
+    Collection<StoryChangedEvent> domainEvents() {
+        return categoriesChanged && id != null ? List.of(new StoryChangedEvent(id, false)) : List.of();
+    }
+
+    @AfterDomainEventPublication
+    void clearDomainEvents() {
+        categoriesChanged = false;
     }
 
     public void addChapter(Chapter chapter) {
@@ -294,8 +360,4 @@ public class Story {
         chapters.remove(chapter);
         chapter.setStory(null);
     }
-}
-
-enum StoryStatus {
-    ONGOING, COMPLETED, HIATUS
 }
\ No newline at end of file
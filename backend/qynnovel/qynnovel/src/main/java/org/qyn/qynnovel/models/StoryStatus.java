@@ -0,0 +1,5 @@
+package org.qyn.qynnovel.models;
+
+public enum StoryStatus {
+    ONGOING, COMPLETED, HIATUS
+}
@@ -0,0 +1,164 @@
+package org.qyn.qynnovel.ranking;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Bảng xếp hạng top-N trong bộ nhớ.
+ *
+ * Giữ điểm của mọi truyện được theo dõi cùng một tập sắp xếp chỉ gồm N truyện cao
+ * điểm nhất; mỗi lần cập nhật điểm chỉ tốn O(log N). Khi một truyện trong top bị
+ * giảm điểm hoặc bị xóa, truyện ngoài top có thể vượt lên mà tập top không biết,
+ * nên bảng được đánh dấu cần dựng lại và dựng lại ở lần publish kế tiếp.
+ *
+ * Truy vấn đọc trên bản snapshot bất biến (cập nhật khi publish), không cần khóa.
+ */
+public class Leaderboard {
+
+    /**
+     * Một dòng trong bảng: điểm chính, điểm phụ để phân định khi bằng điểm
+     */
+    public record Entry(long storyId, long score, long tiebreak) {
+    }
+
+    private static final Comparator<Entry> ORDER = Comparator
+            .comparingLong(Entry::score).reversed()
+            .thenComparing(Comparator.comparingLong(Entry::tiebreak).reversed())
+            .thenComparingLong(Entry::storyId);
+
+    private final int capacity;
+    private final Map<Long, Entry> entries = new HashMap<>();
+    private final TreeSet<Entry> top = new TreeSet<>(ORDER);
+
+    private boolean dirty;
+    private boolean needsRebuild;
+    private volatile List<Entry> snapshot = List.of();
+
+    public Leaderboard(int capacity) {
+        this.capacity = capacity;
+    }
+
+    /**
+     * Gán điểm tuyệt đối cho truyện
+     */
+    public synchronized void set(long storyId, long score, long tiebreak) {
+        Entry updated = new Entry(storyId, score, tiebreak);
+        Entry previous = entries.put(storyId, updated);
+        if (previous != null) {
+            if (previous.equals(updated)) {
+                return;
+            }
+            if (top.remove(previous) && ORDER.compare(updated, previous) > 0) {
+                needsRebuild = true;
+            }
+        }
+        offer(updated);
+        dirty = true;
+    }
+
+    public void set(long storyId, long score) {
+        set(storyId, score, 0);
+    }
+
+    /**
+     * Cộng thêm {@code delta} vào điểm hiện tại (truyện chưa có thì bắt đầu từ 0)
+     */
+    public synchronized void add(long storyId, long delta) {
+        Entry previous = entries.get(storyId);
+        if (previous == null) {
+            set(storyId, delta, 0);
+        } else {
+            set(storyId, previous.score() + delta, previous.tiebreak());
+        }
+    }
+
+    public synchronized long scoreOf(long storyId) {
+        Entry entry = entries.get(storyId);
+        return entry == null ? 0 : entry.score();
+    }
+
+    public synchronized boolean contains(long storyId) {
+        return entries.containsKey(storyId);
+    }
+
+    public synchronized void remove(long storyId) {
+        Entry previous = entries.remove(storyId);
+        if (previous != null && top.remove(previous)) {
+            needsRebuild = true;
+            dirty = true;
+        }
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        top.clear();
+        needsRebuild = false;
+        dirty = true;
+    }
+
+    /**
+     * Cập nhật snapshot nếu có thay đổi; trả về true nếu snapshot mới khác snapshot cũ
+     */
+    public synchronized boolean publish() {
+        if (!dirty) {
+            return false;
+        }
+        if (needsRebuild) {
+            top.clear();
+            for (Entry entry : entries.values()) {
+                offer(entry);
+            }
+            needsRebuild = false;
+        }
+        snapshot = List.copyOf(top);
+        dirty = false;
+        return true;
+    }
+
+    /**
+     * Trang {@code page} (bắt đầu từ 0) của bản snapshot gần nhất
+     */
+    public List<Entry> page(int page, int size) {
+        List<Entry> current = snapshot;
+        int from = page * size;
+        if (page < 0 || size <= 0 || from >= current.size()) {
+            return List.of();
+        }
+        return current.subList(from, Math.min(from + size, current.size()));
+    }
+
+    public List<Entry> snapshot() {
+        return snapshot;
+    }
+
+    /**
+     * Số truyện trong snapshot (tối đa bằng capacity)
+     */
+    public int size() {
+        return snapshot.size();
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Id của mọi truyện đang được theo dõi điểm
+     */
+    public synchronized List<Long> trackedIds() {
+        return new ArrayList<>(entries.keySet());
+    }
+
+    private void offer(Entry entry) {
+        if (top.size() < capacity) {
+            top.add(entry);
+        } else if (ORDER.compare(entry, top.last()) < 0) {
+            top.add(entry);
+            top.pollLast();
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package org.qyn.qynnovel.ranking;
+
+/**
+ * Các bảng xếp hạng toàn trang (bảng theo thể loại được tạo riêng cho từng thể loại)
+ */
+public enum RankingBoard {
+    VIEWS("views"),
+    LIKES("likes"),
+    DAILY("daily"),
+    WEEKLY("weekly"),
+    RECOMMENDED("recommended"),
+    UPDATED("updated");
+
+    private final String key;
+
+    RankingBoard(String key) {
+        this.key = key;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public static RankingBoard fromKey(String key) {
+        for (RankingBoard board : values()) {
+            if (board.key.equalsIgnoreCase(key)) {
+                return board;
+            }
+        }
+        throw new IllegalArgumentException("Không có bảng xếp hạng: " + key);
+    }
+}
@@ -0,0 +1,24 @@
+package org.qyn.qynnovel.repositories;
+
+/**
+ * Một dòng kết quả của truy vấn điều hướng chương.
+ * position: -1 = chương trước, 0 = chương hiện tại, 1 = chương sau
+ */
+public interface ChapterNavigationRow {
+
+    Integer getPosition();
+
+    Long getId();
+
+    Long getStoryId();
+
+    Integer getChapterNumber();
+
+    String getTitle();
+
+    String getSlug();
+
+    Integer getWordCount();
+
+    Integer getLockedFlag();
+}
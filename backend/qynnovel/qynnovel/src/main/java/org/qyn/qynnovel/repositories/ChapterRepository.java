@@ -1,10 +1,13 @@
 package org.qyn.qynnovel.repositories;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
+import org.qyn.qynnovel.dto.ChapterListVersion;
+import org.qyn.qynnovel.dto.ChapterStoryLink;
+import org.qyn.qynnovel.dto.ChapterTocItem;
 import org.qyn.qynnovel.models.Chapter;
-import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
@@ -14,18 +17,62 @@ public interface ChapterRepository extends JpaRepository<Chapter, Long> {
 
     // ... các phương thức hiện có
 
-    @Query("SELECT c FROM Chapter c WHERE c.story.id = :storyId AND c.chapterNumber > :currentChapterNumber ORDER BY c.chapterNumber ASC")
-    Optional<Chapter> findNextChapter(@Param("storyId") Long storyId,
-            @Param("currentChapterNumber") Integer currentChapterNumber);
+    // Derived query dạng findFirst nên chỉ lấy 1 dòng (LIMIT 1) theo index (story_id, chapter_number)
+    Optional<Chapter> findFirstByStoryIdAndChapterNumberGreaterThanOrderByChapterNumberAscIdAsc(Long storyId,
+            Integer currentChapterNumber);
 
-    @Query("SELECT c FROM Chapter c WHERE c.story.id = :storyId AND c.chapterNumber < :currentChapterNumber ORDER BY c.chapterNumber DESC")
-    Optional<Chapter> findPreviousChapter(@Param("storyId") Long storyId,
-            @Param("currentChapterNumber") Integer currentChapterNumber);
+    Optional<Chapter> findFirstByStoryIdAndChapterNumberLessThanOrderByChapterNumberDescIdDesc(Long storyId,
+            Integer currentChapterNumber);
+
+    /**
+     * Chương hiện tại, chương trước và chương sau trong một lần gọi DB.
+     * Mỗi nhánh UNION là một lookup LIMIT 1 trên index (story_id, chapter_number).
+     */
+    @Query(value = "SELECT nav.position AS position, nav.id AS id, nav.story_id AS storyId, "
+            + "nav.chapter_number AS chapterNumber, nav.title AS title, nav.slug AS slug, "
+            + "nav.word_count AS wordCount, nav.locked_flag AS lockedFlag FROM ("
+            + "(SELECT 0 AS position, c.id, c.story_id, c.chapter_number, c.title, c.slug, c.word_count, "
+            + "c.is_locked + 0 AS locked_flag FROM chapters c WHERE c.id = :id) "
+            + "UNION ALL "
+            + "(SELECT -1, p.id, p.story_id, p.chapter_number, p.title, p.slug, p.word_count, p.is_locked + 0 "
+            + "FROM chapters cur JOIN chapters p ON p.story_id = cur.story_id AND p.chapter_number < cur.chapter_number "
+            + "WHERE cur.id = :id ORDER BY p.chapter_number DESC, p.id DESC LIMIT 1) "
+            + "UNION ALL "
+            + "(SELECT 1, n.id, n.story_id, n.chapter_number, n.title, n.slug, n.word_count, n.is_locked + 0 "
+            + "FROM chapters cur JOIN chapters n ON n.story_id = cur.story_id AND n.chapter_number > cur.chapter_number "
+            + "WHERE cur.id = :id ORDER BY n.chapter_number ASC, n.id ASC LIMIT 1)"
+            + ") nav", nativeQuery = true)
+    List<ChapterNavigationRow> findNavigation(@Param("id") Long chapterId);
 
     Optional<Chapter> findFirstByStoryIdOrderByChapterNumberAsc(Long storyId);
 
     List<Chapter> findByStoryIdOrderByChapterNumberAsc(Long storyId);
 
-    @Query("SELECT c FROM Chapter c WHERE c.story.id = :storyId ORDER BY c.chapterNumber ASC")
-    Page<Chapter> findByStoryIdOrderByChapterNumberAsc(@Param("storyId") Long storyId, Pageable pageable);
+    // Phân trang keyset theo (chapter_number, id): điều kiện >= trên chapter_number để MySQL
+    // dùng range scan trên index (story_id, chapter_number), không OFFSET và không COUNT(*)
+    @Query("SELECT new org.qyn.qynnovel.dto.ChapterTocItem(c.id, c.chapterNumber, c.title, c.slug, c.wordCount, c.isLocked) "
+            + "FROM Chapter c WHERE c.storyId = :storyId AND c.chapterNumber >= :afterNumber "
+            + "AND (c.chapterNumber > :afterNumber OR c.id > :afterId) "
+            + "ORDER BY c.chapterNumber ASC, c.id ASC")
+    List<ChapterTocItem> findTocPageAfter(@Param("storyId") Long storyId,
+            @Param("afterNumber") Integer afterNumber,
+            @Param("afterId") Long afterId,
+            Pageable limit);
+
+    @Query("SELECT new org.qyn.qynnovel.dto.ChapterTocItem(c.id, c.chapterNumber, c.title, c.slug, c.wordCount, c.isLocked) "
+            + "FROM Chapter c WHERE c.storyId = :storyId ORDER BY c.chapterNumber ASC")
+    List<ChapterTocItem> findTocByStoryId(@Param("storyId") Long storyId);
+
+    // Truyện chứa từng chương, cho một lô chương (ghi lịch sử đọc theo lô)
+    @Query("SELECT new org.qyn.qynnovel.dto.ChapterStoryLink(c.id, c.storyId) FROM Chapter c WHERE c.id IN :ids")
+    List<ChapterStoryLink> findStoryLinks(@Param("ids") Collection<Long> ids);
+
+    // Các chương mới nhất của truyện (trang chi tiết truyện), duyệt ngược index (story_id, chapter_number)
+    @Query("SELECT new org.qyn.qynnovel.dto.ChapterTocItem(c.id, c.chapterNumber, c.title, c.slug, c.wordCount, c.isLocked) "
+            + "FROM Chapter c WHERE c.storyId = :storyId ORDER BY c.chapterNumber DESC")
+    List<ChapterTocItem> findLatestToc(@Param("storyId") Long storyId, Pageable limit);
+
+    @Query("SELECT new org.qyn.qynnovel.dto.ChapterListVersion(c.storyId, COUNT(c), MAX(c.updatedAt)) "
+            + "FROM Chapter c WHERE c.storyId = :storyId GROUP BY c.storyId")
+    Optional<ChapterListVersion> findChapterListVersion(@Param("storyId") Long storyId);
 }
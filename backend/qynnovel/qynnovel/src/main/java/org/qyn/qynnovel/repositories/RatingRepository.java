@@ -0,0 +1,22 @@
+package org.qyn.qynnovel.repositories;
+
+import java.util.Optional;
+
+import org.qyn.qynnovel.models.Rating;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import jakarta.persistence.LockModeType;
+
+public interface RatingRepository extends JpaRepository<Rating, Long> {
+
+    // Đánh giá của user cho một truyện (UNIQUE user_id, story_id)
+    Optional<Rating> findByUserIdAndStoryId(Long userId, Long storyId);
+
+    // Như trên nhưng khóa dòng, để điểm cũ dùng khi cộng dồn thống kê không bị ghi đè đồng thời
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT r FROM Rating r WHERE r.userId = :userId AND r.storyId = :storyId")
+    Optional<Rating> findForUpdate(@Param("userId") Long userId, @Param("storyId") Long storyId);
+}
@@ -1,8 +1,5 @@
 package org.qyn.qynnovel.repositories;
 
-import java.util.List;
-import java.util.Optional;
-
 import org.qyn.qynnovel.models.ReadingHistory;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
@@ -12,9 +9,7 @@ import org.springframework.data.repository.query.Param;
 
 public interface ReadingHistoryRepository extends JpaRepository<ReadingHistory, Long> {
 
-    List<ReadingHistory> findByUserIdOrderByReadAtDesc(Long userId);
-
-    Optional<ReadingHistory> findTopByUserIdAndStoryIdOrderByReadAtDesc(Long userId, Long storyId);
+    // Lần đọc cuối của user trong một truyện / tủ truyện: dùng ReadingPositionService (reading_positions)
 
     @Query("SELECT rh FROM ReadingHistory rh WHERE rh.userId = :userId ORDER BY rh.readAt DESC")
     Page<ReadingHistory> findRecentReadingHistory(@Param("userId") Long userId, Pageable pageable);
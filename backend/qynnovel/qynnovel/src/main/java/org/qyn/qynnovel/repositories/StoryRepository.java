@@ -1,9 +1,15 @@
 package org.qyn.qynnovel.repositories;
 
 import java.sql.Date;
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 
+import org.qyn.qynnovel.dto.StoryCategoryLink;
+import org.qyn.qynnovel.dto.StoryCursorRow;
+import org.qyn.qynnovel.dto.StoryFilterRow;
+import org.qyn.qynnovel.dto.StoryRankingRow;
+import org.qyn.qynnovel.dto.StorySuggestion;
 import org.qyn.qynnovel.models.Chapter;
 import org.qyn.qynnovel.models.Story;
 import org.springframework.data.domain.Page;
@@ -22,6 +28,43 @@ public interface StoryRepository extends JpaRepository<Story, Long> {
         // Tìm truyện theo slug
         Optional<Story> findBySlug(String slug);
 
+        // Lấy truyện kèm thể loại trong một truy vấn (dùng khi dựng index)
+        @Query("SELECT DISTINCT s FROM Story s LEFT JOIN FETCH s.categories WHERE s.id = :id")
+        Optional<Story> findWithCategoriesById(@Param("id") Long id);
+
+        @Query("SELECT DISTINCT s FROM Story s LEFT JOIN FETCH s.categories WHERE s.id IN :ids")
+        List<Story> findAllWithCategoriesByIdIn(@Param("ids") List<Long> ids);
+
+        // Trang chi tiết truyện: truyện, người đăng và thể loại trong một truy vấn
+        @Query("SELECT DISTINCT s FROM Story s LEFT JOIN FETCH s.user LEFT JOIN FETCH s.categories WHERE s.id = :id")
+        Optional<Story> findDetailById(@Param("id") Long id);
+
+        @Query("SELECT DISTINCT s FROM Story s LEFT JOIN FETCH s.user LEFT JOIN FETCH s.categories WHERE s.slug = :slug")
+        Optional<Story> findDetailBySlug(@Param("slug") String slug);
+
+        // Duyệt id truyện theo lô (keyset trên khóa chính)
+        @Query("SELECT s.id FROM Story s WHERE s.id > :afterId ORDER BY s.id ASC")
+        List<Long> findIdsAfter(@Param("afterId") Long afterId, Pageable limit);
+
+        // Dữ liệu gợi ý tìm kiếm theo lô, không nạp entity
+        @Query("SELECT new org.qyn.qynnovel.dto.StorySuggestion(s.id, s.title, s.slug, s.author, s.totalViews) "
+                        + "FROM Story s WHERE s.id > :afterId ORDER BY s.id ASC")
+        List<StorySuggestion> findSuggestionsAfter(@Param("afterId") Long afterId, Pageable limit);
+
+        // Dữ liệu dựng bảng xếp hạng theo lô, không nạp entity
+        @Query("SELECT new org.qyn.qynnovel.dto.StoryRankingRow(s.id, s.totalViews, s.totalLikes, s.updatedAt) "
+                        + "FROM Story s WHERE s.id > :afterId ORDER BY s.id ASC")
+        List<StoryRankingRow> findRankingRowsAfter(@Param("afterId") Long afterId, Pageable limit);
+
+        // Dữ liệu dựng index lọc theo lô, không nạp entity
+        @Query("SELECT new org.qyn.qynnovel.dto.StoryFilterRow(s.id, s.status) "
+                        + "FROM Story s WHERE s.id > :afterId ORDER BY s.id ASC")
+        List<StoryFilterRow> findFilterRowsAfter(@Param("afterId") Long afterId, Pageable limit);
+
+        @Query("SELECT new org.qyn.qynnovel.dto.StoryCategoryLink(s.id, c.id) "
+                        + "FROM Story s JOIN s.categories c WHERE s.id IN :storyIds")
+        List<StoryCategoryLink> findCategoryLinks(@Param("storyIds") List<Long> storyIds);
+
         // Tìm truyện theo trạng thái
         List<Story> findByStatus(String status);
 
@@ -71,14 +114,41 @@ public interface StoryRepository extends JpaRepository<Story, Long> {
         @Query("SELECT s FROM Story s JOIN s.categories c WHERE c.slug = :categorySlug")
         Page<Story> findByCategorySlug(@Param("categorySlug") String categorySlug, Pageable pageable);
 
-        // Tìm truyện theo nhiều thể loại
-        @Query("SELECT s FROM Story s JOIN s.categories c WHERE c.id IN :categoryIds")
+        // Tìm truyện theo nhiều thể loại (semi-join: truyện thuộc nhiều thể loại chỉ xuất hiện một lần)
+        @Query("SELECT s FROM Story s WHERE s.id IN "
+                        + "(SELECT cs.id FROM Story cs JOIN cs.categories c WHERE c.id IN :categoryIds)")
         List<Story> findByCategoryIds(@Param("categoryIds") List<Long> categoryIds);
 
         // Tìm truyện theo nhiều thể loại với phân trang
-        @Query("SELECT s FROM Story s JOIN s.categories c WHERE c.id IN :categoryIds")
+        @Query("SELECT s FROM Story s WHERE s.id IN "
+                        + "(SELECT cs.id FROM Story cs JOIN cs.categories c WHERE c.id IN :categoryIds)")
         Page<Story> findByCategoryIds(@Param("categoryIds") List<Long> categoryIds, Pageable pageable);
 
+        // Danh sách theo thể loại, phân trang keyset. Chỉ lấy id và khóa sắp xếp, thông tin
+        // truyện kèm thể loại được nạp sau bằng một truy vấn (findAllWithCategoriesByIdIn).
+
+        // Mới nhất: duyệt ngược index (category_id, story_id) của story_categories
+        @Query("SELECT DISTINCT new org.qyn.qynnovel.dto.StoryCursorRow(s.id, s.updatedAt, s.totalViews) "
+                        + "FROM Story s JOIN s.categories c WHERE c.id IN :categoryIds AND s.id < :beforeId "
+                        + "ORDER BY s.id DESC")
+        List<StoryCursorRow> findNewestInCategories(@Param("categoryIds") List<Long> categoryIds,
+                        @Param("beforeId") Long beforeId, Pageable limit);
+
+        @Query("SELECT new org.qyn.qynnovel.dto.StoryCursorRow(s.id, s.updatedAt, s.totalViews) FROM Story s "
+                        + "WHERE s.id IN (SELECT cs.id FROM Story cs JOIN cs.categories c WHERE c.id IN :categoryIds) "
+                        + "AND (s.updatedAt < :beforeUpdatedAt OR (s.updatedAt = :beforeUpdatedAt AND s.id < :beforeId)) "
+                        + "ORDER BY s.updatedAt DESC, s.id DESC")
+        List<StoryCursorRow> findUpdatedInCategories(@Param("categoryIds") List<Long> categoryIds,
+                        @Param("beforeUpdatedAt") LocalDateTime beforeUpdatedAt,
+                        @Param("beforeId") Long beforeId, Pageable limit);
+
+        // Nhiều lượt xem nhất: total_views đổi liên tục nên không làm khóa keyset được, chỉ lấy
+        // id theo thứ tự để chụp một bản xếp hạng rồi phân trang trên bản chụp
+        @Query("SELECT s.id FROM Story s "
+                        + "WHERE s.id IN (SELECT cs.id FROM Story cs JOIN cs.categories c WHERE c.id IN :categoryIds) "
+                        + "ORDER BY s.totalViews DESC, s.id DESC")
+        List<Long> findMostViewedIdsInCategories(@Param("categoryIds") List<Long> categoryIds, Pageable limit);
+
         // Tìm kiếm nâng cao: theo tiêu đề, tác giả, mô tả
         @Query("SELECT s FROM Story s WHERE " +
                         "LOWER(s.title) LIKE LOWER(CONCAT('%', :keyword, '%')) OR " +
@@ -135,13 +205,21 @@ public interface StoryRepository extends JpaRepository<Story, Long> {
         List<Story> findByCreatedAtBetween(@Param("startDate") Date startDate, @Param("endDate") Date endDate);
 
         // Tìm truyện có từ số chapter trở lên
-        @Query("SELECT s FROM Story s WHERE SIZE(s.chapters) >= :minChapters")
+        @Query("SELECT s FROM Story s WHERE s.chapterCount >= :minChapters")
         List<Story> findByMinChapters(@Param("minChapters") int minChapters);
 
         // Tìm truyện có rating trung bình trên mức nào đó
-        // @Query("SELECT s FROM Story s WHERE (SELECT COALESCE(AVG(r.rating), 0) FROM
-        // Rating r WHERE r.story = s) >= :minRating")
-        // List<Story> findByMinRating(@Param("minRating") double minRating);
+        @Query("SELECT s FROM Story s WHERE s.averageRating >= :minRating")
+        List<Story> findByMinRating(@Param("minRating") double minRating);
+
+        // Truyện đánh giá cao theo điểm Bayes (truyện ít lượt đánh giá bị kéo về điểm trung bình chung)
+        @Query("SELECT s FROM Story s WHERE s.ratingCount > 0 ORDER BY s.bayesianRating DESC, s.ratingCount DESC")
+        List<Story> findTopRated(Pageable pageable);
+
+        // Truyện đánh giá cao theo điểm trung bình, chỉ tính truyện có tối thiểu minVotes lượt
+        @Query("SELECT s FROM Story s WHERE s.ratingCount >= :minVotes "
+                        + "ORDER BY s.averageRating DESC, s.ratingCount DESC")
+        List<Story> findTopRatedByAverage(@Param("minVotes") int minVotes, Pageable pageable);
 
         // Cập nhật lượt xem
         @Query("UPDATE Story s SET s.totalViews = s.totalViews + 1 WHERE s.id = :storyId")
@@ -161,12 +239,12 @@ public interface StoryRepository extends JpaRepository<Story, Long> {
         @Transactional
         void decrementLikes(@Param("storyId") Long storyId);
 
-        // Đếm tổng số từ của tất cả chapter trong truyện
-        @Query("SELECT SUM(c.wordCount) FROM Chapter c WHERE c.story.id = :storyId")
+        // Tổng số từ của tất cả chapter trong truyện (cột thống kê, xem StoryStatsService)
+        @Query("SELECT s.totalWordCount FROM Story s WHERE s.id = :storyId")
         Long getTotalWordCount(@Param("storyId") Long storyId);
 
-        // Lấy số chapter của truyện
-        @Query("SELECT COUNT(c) FROM Chapter c WHERE c.story.id = :storyId")
+        // Số chapter của truyện (cột thống kê)
+        @Query("SELECT CAST(s.chapterCount AS Long) FROM Story s WHERE s.id = :storyId")
         Long getChapterCount(@Param("storyId") Long storyId);
 
         // Lấy chapter mới nhất của truyện
@@ -0,0 +1,15 @@
+package org.qyn.qynnovel.repositories;
+
+import java.util.Optional;
+
+import org.qyn.qynnovel.models.User;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+public interface UserRepository extends JpaRepository<User, Long> {
+
+    // Id của user đang đăng nhập, tra theo username (UNIQUE), không nạp cả entity
+    @Query("SELECT u.id FROM User u WHERE u.username = :username")
+    Optional<Long> findIdByUsername(@Param("username") String username);
+}
@@ -0,0 +1,157 @@
+package org.qyn.qynnovel.search;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.qyn.qynnovel.search.ChapterWriteJournal.Batch;
+import org.qyn.qynnovel.search.ChapterWriteJournal.Entry;
+import org.qyn.qynnovel.search.ChapterWriteJournal.Operation;
+import org.qyn.qynnovel.services.ChapterStorageService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Đọc tiếp ChapterWriteJournal và cập nhật ChapterSearchIndex ở nền.
+ *
+ * Chạy trên một luồng riêng (không dùng scheduler chung) vì lần dựng index đầu
+ * tiên có thể mất hàng giờ với thư viện lớn. Mỗi lô: gộp các thay đổi của cùng
+ * một chương (lần cuối thắng), index, commit rồi mới lưu checkpoint nhật ký.
+ */
+@Component
+public class ChapterContentIndexer {
+
+    private static final Logger log = LoggerFactory.getLogger(ChapterContentIndexer.class);
+
+    private static final int BATCH_SIZE = 500;
+
+    @Autowired
+    private ChapterWriteJournal journal;
+
+    @Autowired
+    private ChapterSearchIndex searchIndex;
+
+    @Autowired
+    private ChapterStorageService storageService;
+
+    @Value("${app.search.chapters.index-interval-ms:5000}")
+    private long intervalMs;
+
+    private volatile boolean stopping;
+
+    // Đã xếp mọi chương vào nhật ký nhưng chưa ghi dấu dựng index xong (chỉ luồng indexer dùng)
+    private boolean bootstrapPending;
+
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "chapter-indexer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        executor.execute(this::bootstrapIfEmpty);
+        executor.scheduleWithFixedDelay(this::drain, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Index chưa được dựng xong (lần chạy đầu, đổi số shard, hoặc lần dựng trước bị ngắt giữa
+     * chừng): đưa mọi chương vào nhật ký. Chương đã index sẽ được index lại (updateDocument),
+     * dấu dựng xong chỉ được ghi khi nhật ký đã được xử lý hết (xem drain()).
+     */
+    private void bootstrapIfEmpty() {
+        try {
+            if (searchIndex.isBootstrapped()) {
+                return;
+            }
+            long[] count = { 0 };
+            storageService.forEachStoredChapter((storyId, chapterId) -> {
+                try {
+                    journal.append(Operation.UPDATE, storyId, chapterId);
+                    count[0]++;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            bootstrapPending = true;
+            log.info("Index nội dung chương chưa dựng xong, đã xếp {} chương vào hàng đợi để index", count[0]);
+        } catch (IOException | RuntimeException e) {
+            log.error("Không thể dựng lại danh sách chương cần index", e);
+        }
+    }
+
+    /**
+     * Xử lý hết phần nhật ký chưa index
+     */
+    public void drain() {
+        try {
+            long indexed = 0;
+            long started = System.currentTimeMillis();
+            while (true) {
+                Batch batch = journal.read(BATCH_SIZE);
+                if (batch.isEmpty() || stopping) {
+                    break;
+                }
+                indexed += apply(batch);
+                searchIndex.commit();
+                journal.checkpoint(batch.endOffset());
+                searchIndex.refresh();
+            }
+            if (bootstrapPending && !stopping && journal.pendingBytes() == 0) {
+                // Mọi chương xếp vào lúc dựng index đã được index và commit
+                searchIndex.markBootstrapped();
+                bootstrapPending = false;
+                log.info("Đã dựng xong index nội dung chương ({} chương)", searchIndex.size());
+            }
+            if (indexed > 0) {
+                log.debug("Đã index {} thay đổi nội dung chương trong {} ms",
+                        indexed, System.currentTimeMillis() - started);
+            }
+        } catch (IOException | RuntimeException e) {
+            // Checkpoint chưa dời nên lần chạy sau sẽ làm lại lô này
+            log.error("Không thể cập nhật index nội dung chương", e);
+        }
+    }
+
+    private int apply(Batch batch) throws IOException {
+        Map<Long, Entry> latest = new LinkedHashMap<>();
+        for (Entry entry : batch.entries()) {
+            latest.remove(entry.chapterId());
+            latest.put(entry.chapterId(), entry);
+        }
+
+        for (Entry entry : latest.values()) {
+            if (entry.operation() == Operation.DELETE) {
+                searchIndex.delete(entry.storyId(), entry.chapterId());
+                continue;
+            }
+            try {
+                searchIndex.index(entry.storyId(), entry.chapterId(),
+                        storageService.openChapterContent(entry.storyId(), entry.chapterId(), null).body());
+            } catch (IOException e) {
+                // Nội dung đã bị xóa sau khi ghi nhật ký
+                log.debug("Bỏ qua chương {}: {}", entry.chapterId(), e.getMessage());
+                searchIndex.delete(entry.storyId(), entry.chapterId());
+            }
+        }
+        return latest.size();
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        stopping = true;
+        executor.shutdown();
+        executor.awaitTermination(30, TimeUnit.SECONDS);
+    }
+}
@@ -0,0 +1,473 @@
+package org.qyn.qynnovel.search;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.analysis.tokenattributes.OffsetAttribute;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.MultiReader;
+import org.apache.lucene.index.StoredFields;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause.Occur;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.BoostQuery;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.PhraseQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Component;
+import org.springframework.web.util.HtmlUtils;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Index toàn văn (Lucene) cho nội dung chương, chia thành nhiều shard theo storyId.
+ *
+ * Nội dung không được lưu trong index (file .txt đã là bản gốc) nên index chỉ chứa
+ * danh sách từ, nhỏ hơn nhiều so với dữ liệu. Mỗi chương được đọc thẳng từ file bằng
+ * Reader, và tổng bộ đệm RAM của các IndexWriter bị giới hạn bởi
+ * app.search.chapters.ram-buffer-mb, nên heap dùng cho việc index không phụ thuộc
+ * vào kích thước thư viện truyện. Đoạn trích cũng đọc nội dung theo luồng (không nạp
+ * cả chương). Tìm trong một truyện chỉ cần mở một shard.
+ *
+ * Commit user data của mỗi shard ghi lại việc dựng index lần đầu đã xong
+ * (xem {@link #isBootstrapped()}).
+ */
+@Component
+public class ChapterSearchIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(ChapterSearchIndex.class);
+
+    static final String FIELD_ID = "id";
+    static final String FIELD_STORY_ID = "storyId";
+    static final String FIELD_BODY = "body";
+
+    private static final int MAX_RESULT_WINDOW = 1000;
+
+    // Các từ khóa đứng gần nhau (cụm từ) được cộng thêm điểm
+    private static final int PHRASE_SLOP = 2;
+    private static final float PHRASE_BOOST = 2.0f;
+
+    private static final int SNIPPET_CHARS = 200;
+    private static final int SNIPPET_LEAD_CHARS = 40;
+
+    private static final String BOOTSTRAP_KEY = "bootstrap";
+    private static final String BOOTSTRAP_COMPLETE = "complete";
+
+    /**
+     * Một chương khớp truy vấn
+     */
+    public record Hit(Long storyId, Long chapterId, float score) {
+    }
+
+    public record SearchResult(List<Hit> hits, long totalHits) {
+    }
+
+    private final VietnameseAnalyzer analyzer = new VietnameseAnalyzer();
+
+    @Value("${app.storage.path:./storage}")
+    private String storagePath;
+
+    @Value("${app.search.chapters.shards:8}")
+    private int shardCount;
+
+    @Value("${app.search.chapters.ram-buffer-mb:64}")
+    private double ramBufferMb;
+
+    private Shard[] shards;
+
+    private static final class Shard {
+        private final Directory directory;
+        private final IndexWriter writer;
+        private final SearcherManager searcherManager;
+
+        private Shard(Directory directory, IndexWriter writer) throws IOException {
+            this.directory = directory;
+            this.writer = writer;
+            this.searcherManager = new SearcherManager(writer, null);
+        }
+    }
+
+    @PostConstruct
+    public void open() throws IOException {
+        if (shardCount < 1) {
+            throw new IllegalStateException("app.search.chapters.shards phải lớn hơn 0");
+        }
+        // Đổi số shard thì dùng thư mục mới (index trống) để dựng lại từ đầu
+        Path root = Paths.get(storagePath, "index", "chapters", "shards-" + shardCount);
+        double shardBufferMb = Math.max(1.0, ramBufferMb / shardCount);
+
+        shards = new Shard[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            Directory directory = FSDirectory.open(root.resolve("shard-" + i));
+            IndexWriterConfig config = new IndexWriterConfig(analyzer)
+                    .setOpenMode(IndexWriterConfig.OpenMode.CREATE_OR_APPEND)
+                    .setRAMBufferSizeMB(shardBufferMb);
+            shards[i] = new Shard(directory, new IndexWriter(directory, config));
+        }
+        log.info("Đã mở index nội dung chương tại {} ({} shard, {} chương)",
+                root.toAbsolutePath(), shardCount, size());
+    }
+
+    /**
+     * Index (hoặc index lại) nội dung chương, đọc trực tiếp từ nơi lưu trữ (không qua String)
+     */
+    public void index(Long storyId, Long chapterId, Resource content) throws IOException {
+        try (Reader reader = open(content)) {
+            Document doc = new Document();
+            doc.add(new StringField(FIELD_ID, chapterId.toString(), Field.Store.YES));
+            doc.add(new StringField(FIELD_STORY_ID, storyId.toString(), Field.Store.YES));
+            doc.add(new TextField(FIELD_BODY, reader));
+            shard(storyId).writer.updateDocument(new Term(FIELD_ID, chapterId.toString()), doc);
+        }
+    }
+
+    public void delete(Long storyId, Long chapterId) {
+        try {
+            shard(storyId).writer.deleteDocuments(new Term(FIELD_ID, chapterId.toString()));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Commit các shard có thay đổi; sau khi trả về, thay đổi đã nằm an toàn trên đĩa
+     */
+    public void commit() throws IOException {
+        for (Shard shard : shards) {
+            if (shard.writer.hasUncommittedChanges()) {
+                shard.writer.commit();
+            }
+        }
+    }
+
+    /**
+     * Lần dựng index đầu tiên đã index xong mọi chương và đã commit (mọi shard đều có dấu)
+     */
+    public boolean isBootstrapped() {
+        for (Shard shard : shards) {
+            Iterable<Map.Entry<String, String>> commitData = shard.writer.getLiveCommitData();
+            boolean marked = false;
+            if (commitData != null) {
+                for (Map.Entry<String, String> entry : commitData) {
+                    marked |= BOOTSTRAP_KEY.equals(entry.getKey()) && BOOTSTRAP_COMPLETE.equals(entry.getValue());
+                }
+            }
+            if (!marked) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Ghi dấu dựng index xong vào commit user data của mọi shard (commit ngay)
+     */
+    public void markBootstrapped() throws IOException {
+        for (Shard shard : shards) {
+            shard.writer.setLiveCommitData(Map.of(BOOTSTRAP_KEY, BOOTSTRAP_COMPLETE).entrySet());
+            shard.writer.commit();
+        }
+    }
+
+    public void refresh() {
+        try {
+            for (Shard shard : shards) {
+                shard.searcherManager.maybeRefresh();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Tìm các chương chứa mọi từ khóa; {@code storyId} khác null thì chỉ tìm trong truyện đó
+     */
+    public SearchResult search(String keyword, Long storyId, int page, int size) {
+        List<String> tokens = analyzer.tokenize(keyword);
+        if (tokens.isEmpty() || size <= 0) {
+            return new SearchResult(List.of(), 0);
+        }
+
+        int from = page * size;
+        if (from >= MAX_RESULT_WINDOW) {
+            return new SearchResult(List.of(), 0);
+        }
+        int to = Math.min(from + size, MAX_RESULT_WINDOW);
+
+        Query query = buildQuery(tokens, storyId);
+        try {
+            if (storyId != null) {
+                return searchShards(new Shard[] { shard(storyId) }, query, from, to);
+            }
+            return searchShards(shards, query, from, to);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private SearchResult searchShards(Shard[] targets, Query query, int from, int to) throws IOException {
+        IndexSearcher[] searchers = new IndexSearcher[targets.length];
+        try {
+            IndexReader[] readers = new IndexReader[targets.length];
+            for (int i = 0; i < targets.length; i++) {
+                searchers[i] = targets[i].searcherManager.acquire();
+                readers[i] = searchers[i].getIndexReader();
+            }
+
+            // MultiReader tự tăng/giảm refCount của các reader con, không đóng chúng
+            try (MultiReader reader = new MultiReader(readers, false)) {
+                IndexSearcher searcher = new IndexSearcher(reader);
+                TopDocs topDocs = searcher.search(query, to);
+                StoredFields storedFields = searcher.storedFields();
+
+                List<Hit> hits = new ArrayList<>();
+                for (int i = from; i < topDocs.scoreDocs.length; i++) {
+                    ScoreDoc scoreDoc = topDocs.scoreDocs[i];
+                    Document doc = storedFields.document(scoreDoc.doc);
+                    hits.add(new Hit(Long.valueOf(doc.get(FIELD_STORY_ID)), Long.valueOf(doc.get(FIELD_ID)),
+                            scoreDoc.score));
+                }
+                return new SearchResult(hits, topDocs.totalHits.value);
+            }
+        } finally {
+            for (int i = 0; i < targets.length; i++) {
+                if (searchers[i] != null) {
+                    targets[i].searcherManager.release(searchers[i]);
+                }
+            }
+        }
+    }
+
+    private Query buildQuery(List<String> tokens, Long storyId) {
+        BooleanQuery.Builder query = new BooleanQuery.Builder();
+        for (String token : tokens) {
+            query.add(new TermQuery(new Term(FIELD_BODY, token)), Occur.MUST);
+        }
+        if (tokens.size() > 1) {
+            PhraseQuery.Builder phrase = new PhraseQuery.Builder().setSlop(PHRASE_SLOP);
+            for (String token : tokens) {
+                phrase.add(new Term(FIELD_BODY, token));
+            }
+            query.add(new BoostQuery(phrase.build(), PHRASE_BOOST), Occur.SHOULD);
+        }
+        if (storyId != null) {
+            query.add(new TermQuery(new Term(FIELD_STORY_ID, storyId.toString())), Occur.FILTER);
+        }
+        return query.build();
+    }
+
+    /**
+     * Trích một đoạn ngắn quanh vùng có nhiều từ khóa nhất, từ khóa bọc trong &lt;mark&gt;
+     * (phần còn lại đã được escape HTML). Trả về null nếu không có nội dung.
+     *
+     * Đọc nội dung hai lượt theo luồng: lượt đầu chỉ giữ các từ khóa trong một cửa sổ
+     * để tìm vị trí đoạn trích, lượt sau đọc đúng đoạn đó. Bộ nhớ dùng không phụ thuộc
+     * độ dài chương và nội dung không đi qua cache nội dung chương.
+     */
+    public String snippet(Resource content, String keyword) throws IOException {
+        Set<String> terms = new HashSet<>(analyzer.tokenize(keyword));
+
+        int bestStart = 0;
+        int bestDistinct = 0;
+        boolean empty = true;
+        // Các từ khóa còn có thể nằm chung cửa sổ SNIPPET_CHARS ký tự với từ khóa đầu hàng đợi
+        ArrayDeque<Match> window = new ArrayDeque<>();
+        try (Reader reader = open(content); TokenStream stream = analyzer.tokenStream(FIELD_BODY, reader)) {
+            CharTermAttribute term = stream.addAttribute(CharTermAttribute.class);
+            OffsetAttribute offset = stream.addAttribute(OffsetAttribute.class);
+            stream.reset();
+            while (stream.incrementToken()) {
+                empty = false;
+                String token = term.toString();
+                if (!terms.contains(token)) {
+                    continue;
+                }
+                Match match = new Match(offset.startOffset(), offset.endOffset(), token);
+                while (!window.isEmpty() && match.end() > window.peekFirst().start() + SNIPPET_CHARS) {
+                    int distinct = distinctTerms(window);
+                    if (distinct > bestDistinct) {
+                        bestDistinct = distinct;
+                        bestStart = window.peekFirst().start();
+                    }
+                    window.pollFirst();
+                }
+                window.addLast(match);
+            }
+            stream.end();
+        }
+        while (!window.isEmpty()) {
+            int distinct = distinctTerms(window);
+            if (distinct > bestDistinct) {
+                bestDistinct = distinct;
+                bestStart = window.peekFirst().start();
+            }
+            window.pollFirst();
+        }
+        if (empty) {
+            return null;
+        }
+
+        // Lượt hai: đọc đoạn quanh bestStart (dư một ký tự để biết còn nội dung phía sau)
+        int base = Math.max(0, bestStart - SNIPPET_LEAD_CHARS);
+        char[] buffer = new char[SNIPPET_CHARS + 2 * SNIPPET_LEAD_CHARS + 1];
+        int read = 0;
+        try (Reader reader = open(content)) {
+            long skipped = 0;
+            while (skipped < base) {
+                long n = reader.skip(base - skipped);
+                if (n <= 0) {
+                    break;
+                }
+                skipped += n;
+            }
+            int n;
+            while (read < buffer.length && (n = reader.read(buffer, read, buffer.length - read)) > 0) {
+                read += n;
+            }
+        }
+        boolean more = read == buffer.length;
+        String excerpt = new String(buffer, 0, more ? read - 1 : read);
+        return highlight(excerpt, terms, bestStart - base, base > 0, more);
+    }
+
+    private record Match(int start, int end, String term) {
+    }
+
+    private static int distinctTerms(ArrayDeque<Match> window) {
+        int limit = window.peekFirst().start() + SNIPPET_CHARS;
+        Set<String> distinct = new HashSet<>();
+        for (Match match : window) {
+            if (match.end() <= limit) {
+                distinct.add(match.term());
+            }
+        }
+        return distinct.size();
+    }
+
+    /**
+     * Dựng đoạn trích từ phần nội dung {@code text} đã đọc; {@code focus} là vị trí từ khóa
+     * đầu tiên của đoạn, {@code cutBefore}/{@code cutAfter}: nội dung còn ở trước/sau phần đã đọc
+     */
+    private String highlight(String text, Set<String> terms, int focus, boolean cutBefore, boolean cutAfter) {
+        int start = Math.max(0, focus - SNIPPET_LEAD_CHARS);
+        if (start > 0 || cutBefore) {
+            int space = text.indexOf(' ', start);
+            start = space < 0 || space >= focus ? start : space + 1;
+        }
+        int end = Math.min(text.length(), start + SNIPPET_CHARS + SNIPPET_LEAD_CHARS);
+        if (end < text.length() || cutAfter) {
+            int space = text.lastIndexOf(' ', end);
+            end = space > focus ? space : end;
+        }
+
+        List<int[]> matches = new ArrayList<>();
+        try (TokenStream stream = analyzer.tokenStream(FIELD_BODY, text)) {
+            CharTermAttribute term = stream.addAttribute(CharTermAttribute.class);
+            OffsetAttribute offset = stream.addAttribute(OffsetAttribute.class);
+            stream.reset();
+            while (stream.incrementToken()) {
+                if (terms.contains(term.toString())) {
+                    matches.add(new int[] { offset.startOffset(), offset.endOffset() });
+                }
+            }
+            stream.end();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        StringBuilder snippet = new StringBuilder();
+        if (start > 0 || cutBefore) {
+            snippet.append("…");
+        }
+        int cursor = start;
+        for (int[] match : matches) {
+            if (match[0] < start || match[1] > end) {
+                continue;
+            }
+            snippet.append(escape(text.substring(cursor, match[0])))
+                    .append("<mark>")
+                    .append(escape(text.substring(match[0], match[1])))
+                    .append("</mark>");
+            cursor = match[1];
+        }
+        snippet.append(escape(text.substring(cursor, end)));
+        if (end < text.length() || cutAfter) {
+            snippet.append("…");
+        }
+        return snippet.toString().replaceAll("\\s+", " ").trim();
+    }
+
+    /**
+     * Số chương đang có trong index
+     */
+    public long size() {
+        long total = 0;
+        for (Shard shard : shards) {
+            total += shard.writer.getDocStats().numDocs;
+        }
+        return total;
+    }
+
+    /**
+     * Số chương trong index của từng shard
+     */
+    public List<Integer> shardSizes() {
+        List<Integer> sizes = new ArrayList<>();
+        for (Shard shard : shards) {
+            sizes.add(shard.writer.getDocStats().numDocs);
+        }
+        return sizes;
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        for (Shard shard : shards) {
+            shard.searcherManager.close();
+            shard.writer.close();
+            shard.directory.close();
+        }
+    }
+
+    private Shard shard(Long storyId) {
+        return shards[(int) Math.floorMod(storyId, (long) shardCount)];
+    }
+
+    private static Reader open(Resource content) throws IOException {
+        return new BufferedReader(new InputStreamReader(content.getInputStream(), StandardCharsets.UTF_8));
+    }
+
+    private static String escape(String text) {
+        return HtmlUtils.htmlEscape(text, StandardCharsets.UTF_8.name());
+    }
+}
@@ -0,0 +1,208 @@
+package org.qyn.qynnovel.search;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.qyn.qynnovel.events.ChapterContentChangedEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Nhật ký các lần ghi/xóa nội dung chương, nằm trên đĩa cạnh index chương.
+ *
+ * Mỗi lần ChapterStorageService ghi file chỉ nối thêm một dòng "U|D storyId chapterId"
+ * vào cuối file; ChapterContentIndexer đọc tiếp từ vị trí đã xử lý (checkpoint) và
+ * chỉ lưu checkpoint sau khi index đã commit, nên khởi động lại không mất thay đổi nào.
+ * Khi đã xử lý hết, file được cắt về 0 để không phình ra mãi.
+ */
+@Component
+public class ChapterWriteJournal {
+
+    private static final Logger log = LoggerFactory.getLogger(ChapterWriteJournal.class);
+
+    // Mỗi lần đọc tối đa 64KB (khoảng vài nghìn dòng)
+    private static final int READ_CHUNK_BYTES = 64 * 1024;
+
+    public enum Operation {
+        UPDATE('U'),
+        DELETE('D');
+
+        private final char code;
+
+        Operation(char code) {
+            this.code = code;
+        }
+
+        static Operation fromCode(char code) {
+            for (Operation operation : values()) {
+                if (operation.code == code) {
+                    return operation;
+                }
+            }
+            return null;
+        }
+    }
+
+    public record Entry(Operation operation, Long storyId, Long chapterId) {
+    }
+
+    /**
+     * Các dòng đọc được và vị trí ngay sau dòng cuối cùng (truyền lại cho checkpoint).
+     * Dòng không hợp lệ bị bỏ qua nhưng vẫn tính vào endOffset.
+     */
+    public record Batch(List<Entry> entries, long startOffset, long endOffset) {
+
+        public boolean isEmpty() {
+            return endOffset == startOffset;
+        }
+    }
+
+    @Value("${app.storage.path:./storage}")
+    private String storagePath;
+
+    private Path journalFile;
+    private Path checkpointFile;
+    private FileChannel channel;
+    private long checkpoint;
+
+    @PostConstruct
+    public void open() throws IOException {
+        Path dir = Paths.get(storagePath, "index", "chapters");
+        Files.createDirectories(dir);
+        journalFile = dir.resolve("journal.log");
+        checkpointFile = dir.resolve("journal.offset");
+        channel = FileChannel.open(journalFile,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        checkpoint = readCheckpoint();
+        if (checkpoint > channel.size()) {
+            // File đã bị cắt nhưng chưa kịp lưu checkpoint mới
+            checkpoint = 0;
+        }
+    }
+
+    @EventListener
+    public void onContentChanged(ChapterContentChangedEvent event) {
+        try {
+            append(event.deleted() ? Operation.DELETE : Operation.UPDATE, event.storyId(), event.chapterId());
+        } catch (IOException e) {
+            // Không làm hỏng thao tác lưu chương; lần dựng lại index sau sẽ bù
+            log.error("Không thể ghi nhật ký thay đổi của chương {}", event.chapterId(), e);
+        }
+    }
+
+    public synchronized void append(Operation operation, Long storyId, Long chapterId) throws IOException {
+        String line = operation.code + " " + storyId + " " + chapterId + "\n";
+        ByteBuffer buffer = ByteBuffer.wrap(line.getBytes(StandardCharsets.US_ASCII));
+        long position = channel.size();
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    /**
+     * Đọc tối đa {@code maxEntries} dòng kể từ checkpoint (không dời checkpoint)
+     */
+    public synchronized Batch read(int maxEntries) throws IOException {
+        long size = channel.size();
+        if (checkpoint >= size) {
+            return new Batch(List.of(), checkpoint, checkpoint);
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(size - checkpoint, READ_CHUNK_BYTES));
+        while (buffer.hasRemaining() && channel.read(buffer, checkpoint + buffer.position()) > 0) {
+            // đọc đến khi đầy buffer
+        }
+        String chunk = new String(buffer.array(), 0, buffer.position(), StandardCharsets.US_ASCII);
+
+        List<Entry> entries = new ArrayList<>();
+        int consumed = 0;
+        while (entries.size() < maxEntries) {
+            int newline = chunk.indexOf('\n', consumed);
+            if (newline < 0) {
+                break; // dòng cuối chưa ghi xong hoặc nằm ở chunk sau
+            }
+            Entry entry = parse(chunk.substring(consumed, newline));
+            if (entry != null) {
+                entries.add(entry);
+            }
+            consumed = newline + 1;
+        }
+        return new Batch(entries, checkpoint, checkpoint + consumed);
+    }
+
+    /**
+     * Đánh dấu đã xử lý đến {@code offset}; nếu đã hết nhật ký thì cắt file về 0
+     */
+    public synchronized void checkpoint(long offset) throws IOException {
+        if (offset >= channel.size()) {
+            channel.truncate(0);
+            checkpoint = 0;
+        } else {
+            checkpoint = offset;
+        }
+        writeCheckpoint(checkpoint);
+    }
+
+    /**
+     * Số byte nhật ký chưa được xử lý
+     */
+    public synchronized long pendingBytes() throws IOException {
+        return channel.size() - checkpoint;
+    }
+
+    @PreDestroy
+    public synchronized void close() throws IOException {
+        channel.close();
+    }
+
+    private static Entry parse(String line) {
+        String[] parts = line.trim().split(" ");
+        if (parts.length != 3 || parts[0].length() != 1) {
+            log.warn("Bỏ qua dòng nhật ký không hợp lệ: {}", line);
+            return null;
+        }
+        Operation operation = Operation.fromCode(parts[0].charAt(0));
+        try {
+            if (operation != null) {
+                return new Entry(operation, Long.valueOf(parts[1]), Long.valueOf(parts[2]));
+            }
+        } catch (NumberFormatException e) {
+            // rơi xuống cảnh báo bên dưới
+        }
+        log.warn("Bỏ qua dòng nhật ký không hợp lệ: {}", line);
+        return null;
+    }
+
+    private long readCheckpoint() throws IOException {
+        if (!Files.exists(checkpointFile)) {
+            return 0;
+        }
+        try {
+            return Long.parseLong(Files.readString(checkpointFile, StandardCharsets.US_ASCII).trim());
+        } catch (NumberFormatException e) {
+            log.warn("Checkpoint nhật ký chương không hợp lệ, đọc lại từ đầu");
+            return 0;
+        }
+    }
+
+    private void writeCheckpoint(long offset) throws IOException {
+        Path tmp = checkpointFile.resolveSibling(checkpointFile.getFileName() + ".tmp");
+        Files.writeString(tmp, Long.toString(offset), StandardCharsets.US_ASCII);
+        Files.move(tmp, checkpointFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
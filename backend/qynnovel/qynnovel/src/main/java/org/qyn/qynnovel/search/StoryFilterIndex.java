@@ -0,0 +1,311 @@
+package org.qyn.qynnovel.search;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.qyn.qynnovel.dto.StoryCategoryLink;
+import org.qyn.qynnovel.dto.StoryFilterRow;
+import org.qyn.qynnovel.events.StoryChangedEvent;
+import org.qyn.qynnovel.models.Category;
+import org.qyn.qynnovel.models.Story;
+import org.qyn.qynnovel.models.StoryStatus;
+import org.qyn.qynnovel.repositories.StoryRepository;
+import org.roaringbitmap.FastAggregation;
+import org.roaringbitmap.IntIterator;
+import org.roaringbitmap.RoaringBitmap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+/**
+ * Index lọc truyện theo thể loại và trạng thái trong bộ nhớ: mỗi thể loại / trạng thái
+ * là một roaring bitmap các id truyện, nên tổ hợp "thuộc một trong / thuộc tất cả /
+ * không thuộc" các thể loại cùng trạng thái chỉ là vài phép AND/OR/ANDNOT trên bitmap
+ * (vài micro giây), không JOIN story_categories.
+ *
+ * Index được cập nhật từ StoryChangedEvent (thêm/bỏ thể loại và đổi trạng thái đều
+ * phát sự kiện này), nạp từ DB lúc khởi động và đối soát lại theo chu kỳ dài.
+ * Id truyện được lưu dạng int (bitmap 32-bit).
+ */
+@Component
+public class StoryFilterIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(StoryFilterIndex.class);
+
+    private static final int BATCH_SIZE = 1000;
+
+    /**
+     * Điều kiện lọc: thuộc ít nhất một thể loại trong {@code anyCategories}, thuộc mọi
+     * thể loại trong {@code allCategories}, không thuộc thể loại nào trong
+     * {@code excludedCategories}, có trạng thái trong {@code statuses}.
+     * Tập rỗng nghĩa là không lọc theo điều kiện đó.
+     */
+    public record Filter(
+            Set<Long> anyCategories,
+            Set<Long> allCategories,
+            Set<Long> excludedCategories,
+            Set<StoryStatus> statuses) {
+    }
+
+    /**
+     * Một trang id truyện (id giảm dần) và tổng số truyện khớp điều kiện
+     */
+    public record FilterResult(List<Long> storyIds, long total) {
+    }
+
+    /**
+     * Thể loại và trạng thái hiện tại của một truyện, để gỡ khỏi bitmap cũ khi thay đổi
+     */
+    private record Membership(StoryStatus status, Set<Long> categoryIds) {
+    }
+
+    @Autowired
+    private StoryRepository storyRepository;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final RoaringBitmap allStories = new RoaringBitmap();
+    private final Map<Long, RoaringBitmap> byCategory = new HashMap<>();
+    private final Map<StoryStatus, RoaringBitmap> byStatus = new EnumMap<>(StoryStatus.class);
+    private final Map<Integer, Membership> memberships = new HashMap<>();
+
+    @Async
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onStoryChanged(StoryChangedEvent event) {
+        if (event.deleted()) {
+            remove(event.storyId());
+            return;
+        }
+        try {
+            storyRepository.findWithCategoriesById(event.storyId())
+                    .ifPresentOrElse(this::index, () -> remove(event.storyId()));
+        } catch (RuntimeException e) {
+            log.error("Không thể cập nhật index lọc cho truyện {}", event.storyId(), e);
+        }
+    }
+
+    @Async
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadOnStartup() {
+        reloadFromDatabase();
+    }
+
+    /**
+     * Đọc lại trạng thái và thể loại của mọi truyện từ DB (theo lô)
+     */
+    @Scheduled(initialDelayString = "${app.search.filters.resync-interval-ms:3600000}",
+            fixedDelayString = "${app.search.filters.resync-interval-ms:3600000}")
+    public void reloadFromDatabase() {
+        try {
+            long started = System.currentTimeMillis();
+            RoaringBitmap seen = new RoaringBitmap();
+            long afterId = 0;
+            while (true) {
+                List<StoryFilterRow> rows = storyRepository.findFilterRowsAfter(afterId,
+                        PageRequest.of(0, BATCH_SIZE));
+                if (rows.isEmpty()) {
+                    break;
+                }
+                List<Long> ids = rows.stream().map(StoryFilterRow::id).toList();
+                Map<Long, Set<Long>> categories = new HashMap<>();
+                for (StoryCategoryLink link : storyRepository.findCategoryLinks(ids)) {
+                    categories.computeIfAbsent(link.storyId(), id -> new HashSet<>()).add(link.categoryId());
+                }
+                for (StoryFilterRow row : rows) {
+                    if (put(row.id(), row.status(), categories.getOrDefault(row.id(), Set.of()))) {
+                        seen.add(row.id().intValue());
+                    }
+                }
+                afterId = ids.get(ids.size() - 1);
+            }
+
+            RoaringBitmap stale;
+            lock.readLock().lock();
+            try {
+                stale = RoaringBitmap.andNot(allStories, seen);
+            } finally {
+                lock.readLock().unlock();
+            }
+            stale.forEach((int storyId) -> remove((long) storyId));
+            log.info("Đã nạp index lọc cho {} truyện trong {} ms",
+                    seen.getCardinality(), System.currentTimeMillis() - started);
+        } catch (RuntimeException e) {
+            log.error("Không thể nạp index lọc truyện từ DB", e);
+        }
+    }
+
+    /**
+     * Id truyện khớp {@code filter}, giảm dần, chỉ lấy các id nhỏ hơn {@code beforeId}
+     * (phân trang keyset), tối đa {@code limit} id
+     */
+    public FilterResult filter(Filter filter, long beforeId, int limit) {
+        RoaringBitmap matched;
+        lock.readLock().lock();
+        try {
+            matched = evaluate(filter);
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        long total = matched.getLongCardinality();
+        if (beforeId <= Integer.MAX_VALUE) {
+            matched.remove(Math.max(beforeId, 0), 1L << 32);
+        }
+        List<Long> ids = new ArrayList<>(Math.min(limit, matched.getCardinality()));
+        IntIterator iterator = matched.getReverseIntIterator();
+        while (iterator.hasNext() && ids.size() < limit) {
+            ids.add((long) iterator.next());
+        }
+        return new FilterResult(ids, total);
+    }
+
+    /**
+     * Số truyện đang có trong index
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return allStories.getCardinality();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private RoaringBitmap evaluate(Filter filter) {
+        // Bắt đầu từ một tập dương (nhỏ hơn nhiều so với toàn bộ truyện) rồi thu hẹp dần
+        List<RoaringBitmap> required = new ArrayList<>();
+        if (!filter.anyCategories().isEmpty()) {
+            required.add(union(categoryBitmaps(filter.anyCategories())));
+        }
+        for (Long categoryId : filter.allCategories()) {
+            RoaringBitmap category = byCategory.get(categoryId);
+            if (category == null) {
+                return new RoaringBitmap();
+            }
+            required.add(category);
+        }
+        if (!filter.statuses().isEmpty()) {
+            List<RoaringBitmap> statuses = new ArrayList<>();
+            for (StoryStatus status : filter.statuses()) {
+                RoaringBitmap bitmap = byStatus.get(status);
+                if (bitmap != null) {
+                    statuses.add(bitmap);
+                }
+            }
+            required.add(union(statuses));
+        }
+
+        RoaringBitmap result = required.isEmpty()
+                ? allStories.clone()
+                : FastAggregation.and(required.iterator());
+        if (!filter.excludedCategories().isEmpty()) {
+            result.andNot(union(categoryBitmaps(filter.excludedCategories())));
+        }
+        return result;
+    }
+
+    private List<RoaringBitmap> categoryBitmaps(Collection<Long> categoryIds) {
+        List<RoaringBitmap> bitmaps = new ArrayList<>(categoryIds.size());
+        for (Long categoryId : categoryIds) {
+            RoaringBitmap bitmap = byCategory.get(categoryId);
+            if (bitmap != null) {
+                bitmaps.add(bitmap);
+            }
+        }
+        return bitmaps;
+    }
+
+    private static RoaringBitmap union(List<RoaringBitmap> bitmaps) {
+        return bitmaps.isEmpty() ? new RoaringBitmap() : FastAggregation.or(bitmaps.iterator());
+    }
+
+    private void index(Story story) {
+        Set<Long> categoryIds = new HashSet<>();
+        for (Category category : story.getCategories()) {
+            categoryIds.add(category.getId());
+        }
+        put(story.getId(), story.getStatus(), categoryIds);
+    }
+
+    /**
+     * Ghi trạng thái và thể loại của truyện vào index; trả về false nếu id vượt quá int
+     */
+    boolean put(Long storyId, StoryStatus status, Set<Long> categoryIds) {
+        if (storyId > Integer.MAX_VALUE) {
+            log.warn("Bỏ qua truyện {} khỏi index lọc: id vượt quá giới hạn bitmap", storyId);
+            return false;
+        }
+        int id = storyId.intValue();
+        Membership updated = new Membership(status, Set.copyOf(categoryIds));
+
+        lock.writeLock().lock();
+        try {
+            Membership previous = memberships.put(id, updated);
+            if (updated.equals(previous)) {
+                return true;
+            }
+            if (previous != null) {
+                unlink(id, previous);
+            }
+            allStories.add(id);
+            if (status != null) {
+                byStatus.computeIfAbsent(status, s -> new RoaringBitmap()).add(id);
+            }
+            for (Long categoryId : updated.categoryIds()) {
+                byCategory.computeIfAbsent(categoryId, c -> new RoaringBitmap()).add(id);
+            }
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    void remove(Long storyId) {
+        if (storyId > Integer.MAX_VALUE) {
+            return;
+        }
+        int id = storyId.intValue();
+        lock.writeLock().lock();
+        try {
+            Membership previous = memberships.remove(id);
+            if (previous != null) {
+                unlink(id, previous);
+            }
+            allStories.remove(id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void unlink(int id, Membership membership) {
+        if (membership.status() != null) {
+            RoaringBitmap status = byStatus.get(membership.status());
+            if (status != null) {
+                status.remove(id);
+            }
+        }
+        for (Long categoryId : membership.categoryIds()) {
+            RoaringBitmap category = byCategory.get(categoryId);
+            if (category != null) {
+                category.remove(id);
+                if (category.isEmpty()) {
+                    byCategory.remove(categoryId);
+                }
+            }
+        }
+    }
+}
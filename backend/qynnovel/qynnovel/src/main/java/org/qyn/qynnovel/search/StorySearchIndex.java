@@ -0,0 +1,253 @@
+package org.qyn.qynnovel.search;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.StoredFields;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause.Occur;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.BoostQuery;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.PrefixQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.util.Bits;
+import org.qyn.qynnovel.models.Category;
+import org.qyn.qynnovel.models.Story;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Index toàn văn (Lucene) cho truyện: tiêu đề, tác giả, mô tả và tên thể loại.
+ *
+ * Index nằm trên đĩa trong thư mục storage nên khởi động lại không phải dựng lại;
+ * thay đổi được ghi ngay vào IndexWriter và hiện ra cho truy vấn sau lần refresh
+ * near-real-time kế tiếp. Kết quả xếp hạng theo BM25, tiêu đề có trọng số cao nhất.
+ */
+@Component
+public class StorySearchIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(StorySearchIndex.class);
+
+    static final String FIELD_ID = "id";
+    static final String FIELD_TITLE = "title";
+    static final String FIELD_AUTHOR = "author";
+    static final String FIELD_CATEGORY = "category";
+    static final String FIELD_DESCRIPTION = "description";
+
+    private static final float TITLE_BOOST = 3.0f;
+    private static final float AUTHOR_BOOST = 2.0f;
+    private static final float CATEGORY_BOOST = 1.5f;
+    private static final float DESCRIPTION_BOOST = 1.0f;
+
+    // Không cho phân trang quá sâu: kết quả tìm kiếm sau 1000 dòng không còn ý nghĩa
+    private static final int MAX_RESULT_WINDOW = 1000;
+
+    /**
+     * Một trang kết quả: id truyện theo thứ tự điểm giảm dần và tổng số kết quả khớp
+     */
+    public record SearchResult(List<Long> storyIds, long totalHits) {
+    }
+
+    private final VietnameseAnalyzer analyzer = new VietnameseAnalyzer();
+
+    @Value("${app.storage.path:./storage}")
+    private String storagePath;
+
+    private Directory directory;
+    private IndexWriter writer;
+    private SearcherManager searcherManager;
+
+    @PostConstruct
+    public void open() throws IOException {
+        Path indexPath = Paths.get(storagePath, "index", "stories");
+        directory = FSDirectory.open(indexPath);
+        IndexWriterConfig config = new IndexWriterConfig(analyzer)
+                .setOpenMode(IndexWriterConfig.OpenMode.CREATE_OR_APPEND);
+        writer = new IndexWriter(directory, config);
+        searcherManager = new SearcherManager(writer, null);
+        log.info("Đã mở index tìm kiếm truyện tại {} ({} truyện)", indexPath.toAbsolutePath(), size());
+    }
+
+    /**
+     * Thêm hoặc cập nhật truyện trong index (categories phải đã được nạp)
+     */
+    public void index(Story story) {
+        Document doc = new Document();
+        doc.add(new StringField(FIELD_ID, story.getId().toString(), Field.Store.YES));
+        addText(doc, FIELD_TITLE, story.getTitle());
+        addText(doc, FIELD_AUTHOR, story.getAuthor());
+        addText(doc, FIELD_DESCRIPTION, story.getDescription());
+        for (Category category : story.getCategories()) {
+            addText(doc, FIELD_CATEGORY, category.getName());
+        }
+
+        try {
+            writer.updateDocument(new Term(FIELD_ID, story.getId().toString()), doc);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public void delete(Long storyId) {
+        try {
+            writer.deleteDocuments(new Term(FIELD_ID, storyId.toString()));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Làm mới searcher để các thay đổi gần đây xuất hiện trong kết quả tìm kiếm
+     */
+    public void refresh() {
+        try {
+            searcherManager.maybeRefresh();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Tìm kiếm: mọi từ khóa đều phải xuất hiện (ở một field bất kỳ), từ cuối được
+     * khớp theo tiền tố để hỗ trợ gõ dở. Trả về trang {@code page} (bắt đầu từ 0).
+     */
+    public SearchResult search(String keyword, int page, int size) {
+        List<String> tokens = analyzer.tokenize(keyword);
+        if (tokens.isEmpty() || size <= 0) {
+            return new SearchResult(List.of(), 0);
+        }
+
+        int from = page * size;
+        if (from >= MAX_RESULT_WINDOW) {
+            return new SearchResult(List.of(), 0);
+        }
+        int to = Math.min(from + size, MAX_RESULT_WINDOW);
+
+        try {
+            IndexSearcher searcher = searcherManager.acquire();
+            try {
+                TopDocs topDocs = searcher.search(buildQuery(tokens), to);
+                StoredFields storedFields = searcher.storedFields();
+                List<Long> ids = new ArrayList<>();
+                for (int i = from; i < topDocs.scoreDocs.length; i++) {
+                    ScoreDoc scoreDoc = topDocs.scoreDocs[i];
+                    ids.add(Long.valueOf(storedFields.document(scoreDoc.doc).get(FIELD_ID)));
+                }
+                return new SearchResult(ids, topDocs.totalHits.value);
+            } finally {
+                searcherManager.release(searcher);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private Query buildQuery(List<String> tokens) {
+        BooleanQuery.Builder query = new BooleanQuery.Builder();
+        for (int i = 0; i < tokens.size(); i++) {
+            String token = tokens.get(i);
+            boolean last = i == tokens.size() - 1;
+
+            BooleanQuery.Builder anyField = new BooleanQuery.Builder();
+            anyField.add(fieldQuery(FIELD_TITLE, token, TITLE_BOOST, last), Occur.SHOULD);
+            anyField.add(fieldQuery(FIELD_AUTHOR, token, AUTHOR_BOOST, last), Occur.SHOULD);
+            anyField.add(fieldQuery(FIELD_CATEGORY, token, CATEGORY_BOOST, false), Occur.SHOULD);
+            anyField.add(fieldQuery(FIELD_DESCRIPTION, token, DESCRIPTION_BOOST, false), Occur.SHOULD);
+            query.add(anyField.build(), Occur.MUST);
+        }
+        return query.build();
+    }
+
+    private static Query fieldQuery(String field, String token, float boost, boolean prefix) {
+        Term term = new Term(field, token);
+        Query exact = new BoostQuery(new TermQuery(term), boost);
+        if (!prefix) {
+            return exact;
+        }
+        // Khớp nguyên từ vẫn được điểm cao hơn khớp tiền tố
+        BooleanQuery.Builder either = new BooleanQuery.Builder();
+        either.add(exact, Occur.SHOULD);
+        either.add(new BoostQuery(new PrefixQuery(term), boost / 2), Occur.SHOULD);
+        return either.build();
+    }
+
+    /**
+     * Id của mọi truyện đang có trong index (dùng khi đối soát với DB)
+     */
+    public Set<Long> indexedIds() {
+        Set<Long> ids = new HashSet<>();
+        try {
+            IndexSearcher searcher = searcherManager.acquire();
+            try {
+                for (LeafReaderContext leaf : searcher.getIndexReader().leaves()) {
+                    Bits liveDocs = leaf.reader().getLiveDocs();
+                    StoredFields storedFields = leaf.reader().storedFields();
+                    for (int doc = 0; doc < leaf.reader().maxDoc(); doc++) {
+                        if (liveDocs == null || liveDocs.get(doc)) {
+                            ids.add(Long.valueOf(storedFields.document(doc).get(FIELD_ID)));
+                        }
+                    }
+                }
+            } finally {
+                searcherManager.release(searcher);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return ids;
+    }
+
+    public int size() {
+        return writer.getDocStats().numDocs;
+    }
+
+    @Scheduled(fixedDelayString = "${app.search.commit-interval-ms:30000}")
+    public void commit() {
+        try {
+            if (writer.hasUncommittedChanges()) {
+                writer.commit();
+            }
+        } catch (IOException e) {
+            log.error("Không thể commit index tìm kiếm truyện", e);
+        }
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        searcherManager.close();
+        writer.close();
+        directory.close();
+    }
+
+    private static void addText(Document doc, String field, String value) {
+        if (value != null && !value.isBlank()) {
+            doc.add(new TextField(field, value, Field.Store.NO));
+        }
+    }
+}
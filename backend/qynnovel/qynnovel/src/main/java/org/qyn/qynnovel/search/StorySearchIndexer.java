@@ -0,0 +1,161 @@
+package org.qyn.qynnovel.search;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.qyn.qynnovel.dto.StorySuggestion;
+import org.qyn.qynnovel.events.StoryChangedEvent;
+import org.qyn.qynnovel.models.Story;
+import org.qyn.qynnovel.repositories.StoryRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Giữ StorySearchIndex và StorySuggester đồng bộ với bảng stories: cập nhật từng
+ * truyện khi có StoryChangedEvent (sau khi transaction commit, chạy bất đồng bộ)
+ * và đối soát toàn bộ khi khởi động.
+ */
+@Component
+public class StorySearchIndexer {
+
+    private static final Logger log = LoggerFactory.getLogger(StorySearchIndexer.class);
+
+    private static final int BATCH_SIZE = 500;
+    private static final int LOCK_STRIPES = 64;
+
+    @Autowired
+    private StorySearchIndex searchIndex;
+
+    @Autowired
+    private StorySuggester suggester;
+
+    @Autowired
+    private StoryRepository storyRepository;
+
+    private final TransactionTemplate readOnlyTransaction;
+
+    private final Object[] locks = new Object[LOCK_STRIPES];
+
+    public StorySearchIndexer(PlatformTransactionManager transactionManager) {
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new Object();
+        }
+    }
+
+    /**
+     * Các task bất đồng bộ có thể chạy không theo thứ tự sự kiện: luôn đọc lại trạng thái
+     * mới nhất của truyện từ DB (kể cả với sự kiện xóa) và giữ khóa theo truyện từ lúc đọc
+     * đến lúc ghi index, nên task chạy sau cùng luôn ghi trạng thái mới nhất
+     */
+    @Async
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onStoryChanged(StoryChangedEvent event) {
+        Object lock = locks[(int) Math.floorMod(event.storyId(), (long) LOCK_STRIPES)];
+        try {
+            synchronized (lock) {
+                readOnlyTransaction.executeWithoutResult(status -> storyRepository
+                        .findWithCategoriesById(event.storyId())
+                        .ifPresentOrElse(this::index, () -> remove(event.storyId())));
+            }
+            searchIndex.refresh();
+        } catch (RuntimeException e) {
+            log.error("Không thể cập nhật index tìm kiếm cho truyện {}", event.storyId(), e);
+        }
+    }
+
+    /**
+     * Đối soát index với DB lúc khởi động: index lại mọi truyện theo lô và xóa
+     * các truyện đã bị xóa trong lúc ứng dụng không chạy
+     */
+    @Async
+    @EventListener(ApplicationReadyEvent.class)
+    public void reconcileOnStartup() {
+        try {
+            long started = System.currentTimeMillis();
+            Set<Long> staleIds = searchIndex.indexedIds();
+            Set<Long> seen = new HashSet<>();
+            List<StorySuggestion> suggestions = new ArrayList<>();
+
+            long afterId = 0;
+            while (true) {
+                long cursor = afterId;
+                List<Long> ids = storyRepository.findIdsAfter(cursor, PageRequest.of(0, BATCH_SIZE));
+                if (ids.isEmpty()) {
+                    break;
+                }
+                readOnlyTransaction.executeWithoutResult(status -> {
+                    for (Story story : storyRepository.findAllWithCategoriesByIdIn(ids)) {
+                        searchIndex.index(story);
+                        suggestions.add(StorySuggestion.from(story));
+                    }
+                });
+                seen.addAll(ids);
+                afterId = ids.get(ids.size() - 1);
+            }
+
+            staleIds.removeAll(seen);
+            staleIds.forEach(searchIndex::delete);
+            searchIndex.refresh();
+            searchIndex.commit();
+            suggester.replaceAll(suggestions);
+            suggester.rebuild();
+            suggester.saveSnapshot();
+            log.info("Đã đối soát index tìm kiếm: {} truyện, xóa {} truyện cũ trong {} ms",
+                    seen.size(), staleIds.size(), System.currentTimeMillis() - started);
+        } catch (IOException | RuntimeException e) {
+            log.error("Không thể đối soát index tìm kiếm truyện", e);
+        }
+    }
+
+    /**
+     * Đọc lại dữ liệu gợi ý từ DB theo chu kỳ: lượt xem được cộng thẳng bằng SQL
+     * (ViewCountService) nên không phát StoryChangedEvent, thứ hạng gợi ý cần cập nhật định kỳ
+     */
+    @Scheduled(initialDelayString = "${app.search.suggest.refresh-interval-ms:600000}",
+            fixedDelayString = "${app.search.suggest.refresh-interval-ms:600000}")
+    public void refreshSuggestions() {
+        try {
+            List<StorySuggestion> suggestions = new ArrayList<>();
+            long afterId = 0;
+            while (true) {
+                List<StorySuggestion> batch = storyRepository.findSuggestionsAfter(afterId,
+                        PageRequest.of(0, BATCH_SIZE));
+                if (batch.isEmpty()) {
+                    break;
+                }
+                suggestions.addAll(batch);
+                afterId = batch.get(batch.size() - 1).id();
+            }
+            suggester.replaceAll(suggestions);
+            suggester.rebuild();
+            suggester.saveSnapshot();
+        } catch (IOException | RuntimeException e) {
+            log.error("Không thể làm mới dữ liệu gợi ý tìm kiếm", e);
+        }
+    }
+
+    private void index(Story story) {
+        searchIndex.index(story);
+        suggester.put(StorySuggestion.from(story));
+    }
+
+    private void remove(Long storyId) {
+        searchIndex.delete(storyId);
+        suggester.remove(storyId);
+    }
+}
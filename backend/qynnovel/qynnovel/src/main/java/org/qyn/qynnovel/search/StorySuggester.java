@@ -0,0 +1,328 @@
+package org.qyn.qynnovel.search;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.lucene.search.suggest.InputIterator;
+import org.apache.lucene.search.suggest.Lookup;
+import org.apache.lucene.search.suggest.Lookup.LookupResult;
+import org.apache.lucene.search.suggest.fst.WFSTCompletionLookup;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.util.BytesRef;
+import org.qyn.qynnovel.dto.StorySuggestion;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Gợi ý khi gõ ô tìm kiếm: FST (Lucene WFST) chứa tiêu đề, slug và tác giả đã chuẩn
+ * hóa (chữ thường, bỏ dấu), trọng số là lượt xem, nên mỗi lần tra chỉ là duyệt FST
+ * trong bộ nhớ, không chạm DB.
+ *
+ * Ngoài tiền tố của cả tiêu đề, mỗi từ trong tiêu đề cũng là điểm bắt đầu để gõ "thuong khung"
+ * vẫn ra "Đấu Phá Thương Khung". FST là cấu trúc bất biến: thay đổi được gom lại và
+ * dựng lại FST theo chu kỳ ngắn. FST và dữ liệu gợi ý được lưu xuống đĩa để lần khởi
+ * động sau dùng ngay, không phải đợi đọc lại cả bảng stories.
+ */
+@Component
+public class StorySuggester {
+
+    private static final Logger log = LoggerFactory.getLogger(StorySuggester.class);
+
+    // Ngăn cách khóa đã chuẩn hóa với id truyện (nhỏ hơn mọi ký tự có thể xuất hiện trong khóa)
+    private static final char ID_SEPARATOR = '\u001f';
+
+    // Số từ tối đa trong tiêu đề được dùng làm điểm bắt đầu gợi ý
+    private static final int MAX_TITLE_SUFFIXES = 8;
+
+    private static final int SNAPSHOT_VERSION = 1;
+
+    private final VietnameseAnalyzer analyzer = new VietnameseAnalyzer();
+
+    private final ConcurrentHashMap<Long, StorySuggestion> entries = new ConcurrentHashMap<>();
+    private final AtomicBoolean dirty = new AtomicBoolean();
+
+    @Value("${app.storage.path:./storage}")
+    private String storagePath;
+
+    private Path snapshotDir;
+    private Directory tempDir;
+    private volatile Lookup lookup;
+
+    @PostConstruct
+    public void open() throws IOException {
+        snapshotDir = Paths.get(storagePath, "index", "suggest");
+        Files.createDirectories(snapshotDir.resolve("tmp"));
+        tempDir = FSDirectory.open(snapshotDir.resolve("tmp"));
+        loadSnapshot();
+    }
+
+    /**
+     * Thêm hoặc cập nhật gợi ý của một truyện (có hiệu lực sau lần dựng lại kế tiếp)
+     */
+    public void put(StorySuggestion suggestion) {
+        entries.put(suggestion.id(), suggestion);
+        dirty.set(true);
+    }
+
+    public void remove(Long storyId) {
+        if (entries.remove(storyId) != null) {
+            dirty.set(true);
+        }
+    }
+
+    /**
+     * Thay toàn bộ dữ liệu gợi ý (sau khi đọc lại từ DB)
+     */
+    public void replaceAll(Collection<StorySuggestion> suggestions) {
+        Map<Long, StorySuggestion> fresh = new LinkedHashMap<>();
+        for (StorySuggestion suggestion : suggestions) {
+            fresh.put(suggestion.id(), suggestion);
+        }
+        entries.keySet().retainAll(fresh.keySet());
+        entries.putAll(fresh);
+        dirty.set(true);
+    }
+
+    /**
+     * Tối đa {@code limit} truyện có tiêu đề/tác giả/slug bắt đầu bằng {@code prefix}, nhiều lượt xem trước
+     */
+    public List<StorySuggestion> suggest(String prefix, int limit) {
+        Lookup current = lookup;
+        String key = normalize(prefix);
+        if (current == null || key.isEmpty() || limit <= 0) {
+            return List.of();
+        }
+        // Đã gõ xong một từ thì không gợi ý từ dài hơn bắt đầu bằng từ đó
+        if (Character.isWhitespace(prefix.charAt(prefix.length() - 1))) {
+            key = key + " ";
+        }
+
+        try {
+            // Một truyện có nhiều khóa nên lấy dư để còn đủ sau khi bỏ trùng
+            List<LookupResult> results = current.lookup(key, false, limit * 4);
+            Set<Long> seen = new LinkedHashSet<>();
+            List<StorySuggestion> suggestions = new ArrayList<>();
+            for (LookupResult result : results) {
+                Long storyId = storyIdOf(result.key);
+                StorySuggestion suggestion = entries.get(storyId);
+                if (suggestion != null && seen.add(storyId)) {
+                    suggestions.add(suggestion);
+                    if (suggestions.size() == limit) {
+                        break;
+                    }
+                }
+            }
+            return suggestions;
+        } catch (IOException e) {
+            log.warn("Không thể tra gợi ý cho '{}'", prefix, e);
+            return List.of();
+        }
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    @Scheduled(fixedDelayString = "${app.search.suggest.rebuild-interval-ms:2000}")
+    public void rebuildIfDirty() {
+        if (dirty.compareAndSet(true, false)) {
+            try {
+                rebuild();
+            } catch (IOException | RuntimeException e) {
+                dirty.set(true);
+                log.error("Không thể dựng lại FST gợi ý tìm kiếm", e);
+            }
+        }
+    }
+
+    /**
+     * Dựng FST mới từ dữ liệu hiện tại rồi thay thế FST cũ (truy vấn đang chạy không bị ảnh hưởng)
+     */
+    public synchronized void rebuild() throws IOException {
+        WFSTCompletionLookup fresh = new WFSTCompletionLookup(tempDir, "suggest");
+        fresh.build(new KeyIterator(new ArrayList<>(entries.values()).iterator()));
+        lookup = fresh;
+    }
+
+    /**
+     * Lưu FST và dữ liệu gợi ý xuống đĩa (ghi file tạm rồi đổi tên)
+     */
+    public synchronized void saveSnapshot() throws IOException {
+        Lookup current = lookup;
+        if (current == null) {
+            return;
+        }
+        Path entriesTmp = snapshotDir.resolve("entries.bin.tmp");
+        Path fstTmp = snapshotDir.resolve("suggest.fst.tmp");
+        try (DataOutputStream out = new DataOutputStream(Files.newOutputStream(entriesTmp))) {
+            List<StorySuggestion> values = new ArrayList<>(entries.values());
+            out.writeInt(SNAPSHOT_VERSION);
+            out.writeInt(values.size());
+            for (StorySuggestion suggestion : values) {
+                out.writeLong(suggestion.id());
+                writeNullable(out, suggestion.title());
+                writeNullable(out, suggestion.slug());
+                writeNullable(out, suggestion.author());
+                out.writeLong(suggestion.totalViews() == null ? 0 : suggestion.totalViews());
+            }
+        }
+        try (OutputStream out = Files.newOutputStream(fstTmp)) {
+            current.store(out);
+        }
+        Files.move(entriesTmp, snapshotDir.resolve("entries.bin"),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        Files.move(fstTmp, snapshotDir.resolve("suggest.fst"),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        try {
+            rebuildIfDirty();
+            saveSnapshot();
+        } finally {
+            tempDir.close();
+        }
+    }
+
+    private void loadSnapshot() {
+        Path entriesFile = snapshotDir.resolve("entries.bin");
+        Path fstFile = snapshotDir.resolve("suggest.fst");
+        if (!Files.exists(entriesFile) || !Files.exists(fstFile)) {
+            return;
+        }
+
+        try (DataInputStream in = new DataInputStream(Files.newInputStream(entriesFile));
+                InputStream fstIn = Files.newInputStream(fstFile)) {
+            if (in.readInt() != SNAPSHOT_VERSION) {
+                return;
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                long id = in.readLong();
+                entries.put(id, new StorySuggestion(id, readNullable(in), readNullable(in), readNullable(in),
+                        in.readLong()));
+            }
+            WFSTCompletionLookup loaded = new WFSTCompletionLookup(tempDir, "suggest");
+            loaded.load(fstIn);
+            lookup = loaded;
+            log.info("Đã nạp {} gợi ý tìm kiếm từ {}", entries.size(), snapshotDir.toAbsolutePath());
+        } catch (IOException | RuntimeException e) {
+            // Snapshot hỏng: bỏ qua, dữ liệu sẽ được đọc lại từ DB
+            entries.clear();
+            lookup = null;
+            log.warn("Không thể nạp snapshot gợi ý tìm kiếm, sẽ dựng lại từ DB", e);
+        }
+    }
+
+    /**
+     * Các khóa của một truyện: tiêu đề, từng đoạn tiêu đề bắt đầu từ một từ, tác giả, slug
+     */
+    private Set<String> keysOf(StorySuggestion suggestion) {
+        Set<String> keys = new LinkedHashSet<>();
+        List<String> titleTokens = analyzer.tokenize(suggestion.title());
+        for (int i = 0; i < Math.min(titleTokens.size(), MAX_TITLE_SUFFIXES); i++) {
+            keys.add(String.join(" ", titleTokens.subList(i, titleTokens.size())));
+        }
+        keys.add(normalize(suggestion.author()));
+        keys.add(normalize(suggestion.slug()));
+        keys.remove("");
+        return keys;
+    }
+
+    private String normalize(String text) {
+        return String.join(" ", analyzer.tokenize(text));
+    }
+
+    private static Long storyIdOf(CharSequence key) {
+        String value = key.toString();
+        return Long.valueOf(value.substring(value.lastIndexOf(ID_SEPARATOR) + 1));
+    }
+
+    private static void writeNullable(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static String readNullable(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    /**
+     * Sinh lần lượt các khóa "khóa chuẩn hóa + ID_SEPARATOR + id" kèm trọng số lượt xem
+     */
+    private class KeyIterator implements InputIterator {
+        private final Iterator<StorySuggestion> suggestions;
+        private Iterator<String> keys = List.<String>of().iterator();
+        private StorySuggestion current;
+
+        KeyIterator(Iterator<StorySuggestion> suggestions) {
+            this.suggestions = suggestions;
+        }
+
+        @Override
+        public BytesRef next() {
+            while (!keys.hasNext()) {
+                if (!suggestions.hasNext()) {
+                    return null;
+                }
+                current = suggestions.next();
+                keys = keysOf(current).iterator();
+            }
+            return new BytesRef(keys.next() + ID_SEPARATOR + current.id());
+        }
+
+        @Override
+        public long weight() {
+            long views = current.totalViews() == null ? 0 : current.totalViews();
+            // WFST chỉ nhận trọng số trong khoảng int
+            return Math.max(0, Math.min(views, Integer.MAX_VALUE));
+        }
+
+        @Override
+        public BytesRef payload() {
+            return null;
+        }
+
+        @Override
+        public boolean hasPayloads() {
+            return false;
+        }
+
+        @Override
+        public Set<BytesRef> contexts() {
+            return null;
+        }
+
+        @Override
+        public boolean hasContexts() {
+            return false;
+        }
+    }
+}
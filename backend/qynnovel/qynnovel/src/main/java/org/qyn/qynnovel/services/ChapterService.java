@@ -2,18 +2,39 @@ package org.qyn.qynnovel.services;
 
 import java.io.IOException;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
-
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import org.qyn.qynnovel.components.ChapterPrefetcher;
+import org.qyn.qynnovel.components.ChapterTocCache;
+import org.qyn.qynnovel.dto.ChapterNavigation;
+import org.qyn.qynnovel.dto.ChapterSearchHit;
+import org.qyn.qynnovel.dto.ChapterListVersion;
+import org.qyn.qynnovel.dto.ChapterTocItem;
+import org.qyn.qynnovel.dto.KeysetCursor;
+import org.qyn.qynnovel.dto.KeysetPage;
+import org.qyn.qynnovel.events.ChapterDeletedEvent;
 import org.qyn.qynnovel.models.Chapter;
-import org.qyn.qynnovel.models.ReadingHistory;
-import org.qyn.qynnovel.models.Story;
+import org.qyn.qynnovel.repositories.ChapterNavigationRow;
 import org.qyn.qynnovel.repositories.ChapterRepository;
-import org.qyn.qynnovel.repositories.ReadingHistoryRepository;
-import org.qyn.qynnovel.repositories.StoryRepository;
+import org.qyn.qynnovel.search.ChapterSearchIndex;
+import org.qyn.qynnovel.search.ChapterSearchIndex.Hit;
+import org.qyn.qynnovel.search.ChapterSearchIndex.SearchResult;
+import org.qyn.qynnovel.services.ReadingHistoryIngestService.RecordResult;
+import org.qyn.qynnovel.storage.ContentStat;
+import org.qyn.qynnovel.storage.StoredContent;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
 import jakarta.persistence.EntityNotFoundException;
@@ -26,22 +47,41 @@ public class ChapterService {
     private ChapterRepository chapterRepository;
 
     @Autowired
-    private StoryRepository storyRepository;
+    private ReadingHistoryIngestService readingHistoryIngestService;
 
     @Autowired
-    private ReadingHistoryRepository readingHistoryRepository;
+    private ChapterStorageService storageService;
 
     @Autowired
-    private ChapterStorageService storageService;
+    private ViewCountService viewCountService;
+
+    @Autowired
+    private ChapterTocCache tocCache;
+
+    @Autowired
+    private ChapterPrefetcher prefetcher;
+
+    @Autowired
+    private ChapterSearchIndex searchIndex;
+
+    @Autowired
+    private StoryStatsService statsService;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
 
+    @Transactional(readOnly = true)
     public Chapter findById(Long id) {
         return chapterRepository.findById(id)
                 .orElseThrow(() -> new EntityNotFoundException("Chapter not found with id: " + id));
     }
 
     public Chapter saveChapter(Chapter chapter) {
+        boolean isNew = chapter.getId() == null;
+
         // Lưu metadata trước để có ID
         Chapter savedChapter = chapterRepository.save(chapter);
+        tocCache.invalidateAfterCommit(savedChapter.getStoryId());
 
         // Nếu có nội dung, lưu vào file
         if (chapter.getContent() != null && !chapter.getContent().trim().isEmpty()) {
@@ -67,17 +107,52 @@ public class ChapterService {
             }
         }
 
+        // Cập nhật thống kê của truyện trong cùng transaction
+        if (isNew) {
+            statsService.chapterAdded(savedChapter.getStoryId(), savedChapter.getChapterNumber(),
+                    savedChapter.getWordCount());
+        } else {
+            // Sửa chương có sẵn có thể đổi số chương/số từ: tính lại cho riêng truyện này
+            chapterRepository.flush();
+            statsService.recalculate(savedChapter.getStoryId());
+        }
+
         return savedChapter;
     }
 
+    @Transactional(readOnly = true)
     public Chapter getChapterById(Long id) {
         return chapterRepository.findById(id)
                 .orElseThrow(() -> new RuntimeException("Không tìm thấy chương: " + id));
     }
 
+    /**
+     * Đọc chương kèm nội dung cho trang đọc truyện.
+     *
+     * Không chạy trong transaction: metadata được lấy bằng một truy vấn read-only
+     * (connection trả về pool ngay sau đó), nội dung đọc từ file không giữ
+     * connection nào, còn lượt xem được ghi nhận bất đồng bộ qua ViewCountService.
+     */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     public Chapter getChapterWithContent(Long id) {
-        Chapter chapter = getChapterById(id);
+        return loadContentAndRecordView(findChapterMetadata(id)
+                .orElseThrow(() -> new RuntimeException("Không tìm thấy chương: " + id)));
+    }
+
+    /**
+     * Lấy metadata chương bằng transaction read-only của repository; rỗng nếu không có chương
+     */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public Optional<Chapter> findChapterMetadata(Long id) {
+        return chapterRepository.findById(id);
+    }
 
+    /**
+     * Nạp nội dung chương từ storage vào entity (đã detach), không dùng connection DB,
+     * và ghi nhận một lượt đọc
+     */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public Chapter loadContentAndRecordView(Chapter chapter) {
         // Nếu có storage path, đọc nội dung từ file
         if (chapter.getStoragePath() != null) {
             try {
@@ -90,15 +165,11 @@ public class ChapterService {
             }
         }
 
-        // Tăng lượt xem
-        chapter.setViews(chapter.getViews() + 1);
-        chapterRepository.save(chapter);
+        // Tăng lượt xem của chương và truyện (gom trong bộ nhớ, ghi theo lô)
+        viewCountService.recordChapterView(chapter.getId(), chapter.getStoryId());
 
-        // Cập nhật tổng lượt xem của truyện
-        Story story = storyRepository.findById(chapter.getStoryId())
-                .orElseThrow(() -> new RuntimeException("Không tìm thấy truyện: " + chapter.getStoryId()));
-        story.setTotalViews(story.getTotalViews() + 1);
-        storyRepository.save(story);
+        // Người đọc thường bấm sang chương sau: nạp trước vào cache (bất đồng bộ)
+        prefetcher.prefetchNext(chapter.getStoryId(), chapter.getChapterNumber());
 
         return chapter;
     }
@@ -118,8 +189,12 @@ public class ChapterService {
             }
         }
 
-        // Xóa metadata
+        // Xóa metadata (flush để thống kê tính chương mới nhất khi không còn chương này)
         chapterRepository.deleteById(id);
+        chapterRepository.flush();
+        eventPublisher.publishEvent(new ChapterDeletedEvent(chapter.getStoryId(), id));
+        statsService.chapterRemoved(chapter.getStoryId(), chapter.getWordCount());
+        tocCache.invalidateAfterCommit(chapter.getStoryId());
     }
 
     public Chapter updateChapterContent(Long id, String newContent) {
@@ -132,13 +207,20 @@ public class ChapterService {
                     chapter.getId(),
                     newContent);
 
-            // Cập nhật word count
+            // Cập nhật word count (và tổng số từ của truyện)
+            int previousWordCount = chapter.getWordCount() == null ? 0 : chapter.getWordCount();
             chapter.setWordCount(storageService.countWords(newContent));
+            statsService.wordCountChanged(chapter.getStoryId(), chapter.getWordCount() - previousWordCount);
+            // Luôn đổi updatedAt để ETag của chương thay đổi theo nội dung
+            chapter.setUpdatedAt(LocalDateTime.now());
             chapter.setStoragePath(
                     storageService.generateStoragePath(
                             chapter.getStoryId(),
                             chapter.getId()));
 
+            // Word count hiển thị trong mục lục
+            tocCache.invalidateAfterCommit(chapter.getStoryId());
+
             return chapterRepository.save(chapter);
 
         } catch (IOException e) {
@@ -146,44 +228,203 @@ public class ChapterService {
         }
     }
 
+    /**
+     * Metadata của nội dung sẽ stream (để kiểm tra If-None-Match / If-Modified-Since),
+     * không mở dữ liệu và không tính lượt xem
+     */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public ContentStat statChapterContent(Chapter chapter, String acceptEncoding) {
+        try {
+            return storageService.statChapterContent(chapter.getStoryId(), chapter.getId(), acceptEncoding);
+        } catch (IOException e) {
+            throw new RuntimeException("Lỗi khi đọc nội dung chương", e);
+        }
+    }
+
+    /**
+     * Nội dung của chương để stream trực tiếp (có thể là bản nén sẵn); lượt xem do
+     * người gọi ghi nhận bằng recordView khi thật sự trả nội dung
+     */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public StoredContent openChapterContent(Chapter chapter, String acceptEncoding) {
+        try {
+            return storageService.openChapterContent(
+                    chapter.getStoryId(),
+                    chapter.getId(),
+                    acceptEncoding);
+        } catch (IOException e) {
+            throw new RuntimeException("Lỗi khi đọc nội dung chương", e);
+        }
+    }
+
+    /**
+     * Ghi nhận một lượt đọc chương (gom trong bộ nhớ, ghi theo lô)
+     */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void recordView(Chapter chapter) {
+        viewCountService.recordChapterView(chapter.getId(), chapter.getStoryId());
+    }
+
+    /**
+     * Tìm trong nội dung chương (storyId khác null thì chỉ tìm trong truyện đó).
+     * Chương bị khóa bị lọc khỏi kết quả lúc truy vấn (khóa/mở chương không đổi nội dung
+     * nên index không biết), và không được tính vào tổng số kết quả của trang.
+     */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public Page<ChapterSearchHit> searchChapterContent(String keyword, Long storyId, Pageable pageable) {
+        SearchResult result = searchIndex.search(keyword, storyId, pageable.getPageNumber(), pageable.getPageSize());
+        Map<Long, Chapter> chapters = chapterRepository
+                .findAllById(result.hits().stream().map(Hit::chapterId).collect(Collectors.toList()))
+                .stream()
+                .collect(Collectors.toMap(Chapter::getId, Function.identity()));
+
+        List<ChapterSearchHit> hits = new ArrayList<>();
+        long hidden = 0;
+        for (Hit hit : result.hits()) {
+            Chapter chapter = chapters.get(hit.chapterId());
+            if (chapter == null || Boolean.TRUE.equals(chapter.getIsLocked())) {
+                hidden++; // đã xóa (index chưa kịp cập nhật) hoặc bị khóa
+                continue;
+            }
+            hits.add(new ChapterSearchHit(chapter.getStoryId(), chapter.getId(), chapter.getChapterNumber(),
+                    chapter.getTitle(), chapter.getSlug(), hit.score(), snippet(chapter, keyword)));
+        }
+        return new PageImpl<>(hits, pageable, Math.max(0, result.totalHits() - hidden));
+    }
+
+    /**
+     * Đoạn trích đọc thẳng từ nơi lưu trữ (không qua cache nội dung chương, để lượt tìm kiếm
+     * không đẩy các chương đang được đọc ra khỏi cache)
+     */
+    private String snippet(Chapter chapter, String keyword) {
+        try {
+            return searchIndex.snippet(
+                    storageService.openChapterContent(chapter.getStoryId(), chapter.getId(), null).body(),
+                    keyword);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public Map<String, Object> getContentCacheStats() {
+        return storageService.getContentCacheStats();
+    }
+
+    @Transactional(readOnly = true)
     public List<Chapter> getChaptersByStoryId(Long storyId) {
         return chapterRepository.findByStoryIdOrderByChapterNumberAsc(storyId);
     }
 
-    public Page<Chapter> getChaptersByStoryId(Long storyId, Pageable pageable) {
-        return chapterRepository.findByStoryIdOrderByChapterNumberAsc(storyId, pageable);
+    /**
+     * Mục lục truyện (projection rút gọn, không hydrate entity), cache theo truyện
+     */
+    @Transactional(readOnly = true)
+    public List<ChapterTocItem> getChapterToc(Long storyId) {
+        return tocCache.get(storyId, chapterRepository::findTocByStoryId);
+    }
+
+    /**
+     * Phiên bản danh sách chương (số chương + thời điểm sửa gần nhất), dùng làm ETag
+     */
+    @Transactional(readOnly = true)
+    public ChapterListVersion getChapterListVersion(Long storyId) {
+        return chapterRepository.findChapterListVersion(storyId)
+                .orElse(new ChapterListVersion(storyId, 0, null));
     }
 
+    /**
+     * Một trang mục lục sau cursor (null = trang đầu). Lấy dư một dòng để biết còn trang sau không.
+     */
+    @Transactional(readOnly = true)
+    public KeysetPage<ChapterTocItem> getChapterTocPage(Long storyId, String cursor, int size) {
+        int afterNumber = Integer.MIN_VALUE;
+        long afterId = Long.MIN_VALUE;
+        if (cursor != null && !cursor.isBlank()) {
+            long[] key = KeysetCursor.decode(cursor, 2);
+            afterNumber = KeysetCursor.toInt(key[0]);
+            afterId = key[1];
+        }
+
+        List<ChapterTocItem> rows = chapterRepository.findTocPageAfter(
+                storyId, afterNumber, afterId, PageRequest.of(0, size + 1));
+        if (rows.size() <= size) {
+            return KeysetPage.of(rows, null);
+        }
+
+        List<ChapterTocItem> items = rows.subList(0, size);
+        ChapterTocItem last = items.get(size - 1);
+        return KeysetPage.of(List.copyOf(items), KeysetCursor.encode(last.chapterNumber(), last.id()));
+    }
+
+    @Transactional(readOnly = true)
     public Chapter getNextChapter(Long currentChapterId) {
         Chapter currentChapter = getChapterById(currentChapterId);
 
-        return chapterRepository.findNextChapter(
+        return chapterRepository.findFirstByStoryIdAndChapterNumberGreaterThanOrderByChapterNumberAscIdAsc(
                 currentChapter.getStoryId(),
                 currentChapter.getChapterNumber()).orElse(null);
     }
 
+    @Transactional(readOnly = true)
     public Chapter getPreviousChapter(Long currentChapterId) {
         Chapter currentChapter = getChapterById(currentChapterId);
 
-        return chapterRepository.findPreviousChapter(
+        return chapterRepository.findFirstByStoryIdAndChapterNumberLessThanOrderByChapterNumberDescIdDesc(
                 currentChapter.getStoryId(),
                 currentChapter.getChapterNumber()).orElse(null);
     }
 
+    /**
+     * Chương trước, hiện tại và sau trong một truy vấn; nạp trước nội dung chương sau vào cache
+     */
+    @Transactional(readOnly = true)
+    public ChapterNavigation getNavigation(Long chapterId) {
+        ChapterTocItem previous = null;
+        ChapterTocItem current = null;
+        ChapterTocItem next = null;
+        Long storyId = null;
+
+        for (ChapterNavigationRow row : chapterRepository.findNavigation(chapterId)) {
+            ChapterTocItem item = new ChapterTocItem(
+                    row.getId(),
+                    row.getChapterNumber(),
+                    row.getTitle(),
+                    row.getSlug(),
+                    row.getWordCount(),
+                    row.getLockedFlag() != null && row.getLockedFlag() != 0);
+            switch (row.getPosition()) {
+                case -1 -> previous = item;
+                case 0 -> {
+                    current = item;
+                    storyId = row.getStoryId();
+                }
+                default -> next = item;
+            }
+        }
+
+        if (current == null) {
+            throw new RuntimeException("Không tìm thấy chương: " + chapterId);
+        }
+        if (next != null) {
+            prefetcher.prefetch(storyId, next.id());
+        }
+
+        return new ChapterNavigation(storyId, previous, current, next);
+    }
+
+    @Transactional(readOnly = true)
     public Chapter getFirstChapter(Long storyId) {
         return chapterRepository.findFirstByStoryIdOrderByChapterNumberAsc(storyId)
                 .orElseThrow(() -> new RuntimeException("Truyện không có chương nào"));
     }
 
-    public void saveReadingHistory(Long userId, Long chapterId) {
-        Chapter chapter = getChapterById(chapterId);
-
-        ReadingHistory history = new ReadingHistory();
-        history.setUserId(userId);
-        history.setChapterId(chapterId);
-        history.setStoryId(chapter.getStoryId());
-        history.setReadAt(LocalDateTime.now());
-
-        readingHistoryRepository.save(history);
+    /**
+     * Ghi nhận lượt đọc chương (ghi xuống DB theo lô, không chờ);
+     * trả về UNKNOWN_CHAPTER nếu chương không tồn tại, QUEUE_FULL nếu hàng đợi lịch sử đọc đang đầy
+     */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public RecordResult saveReadingHistory(Long userId, Long chapterId) {
+        return readingHistoryIngestService.record(userId, chapterId);
     }
-}
\ No newline at end of file
+}
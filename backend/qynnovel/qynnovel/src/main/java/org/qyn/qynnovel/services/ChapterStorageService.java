@@ -2,41 +2,94 @@ package org.qyn.qynnovel.services;
 
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.function.BiConsumer;
 
+import org.qyn.qynnovel.components.ChapterContentCache;
+import org.qyn.qynnovel.components.ContentEncoder;
+import org.qyn.qynnovel.components.ContentEncoder.Encoding;
+import org.qyn.qynnovel.events.ChapterContentChangedEvent;
+import org.qyn.qynnovel.storage.ChapterContentStore;
+import org.qyn.qynnovel.storage.ContentStat;
+import org.qyn.qynnovel.storage.StoredContent;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 
+/**
+ * Đọc/ghi nội dung chương: cache nội dung trong bộ nhớ, nén sẵn khi ghi và phát
+ * ChapterContentChangedEvent. Dữ liệu nằm trong ChapterContentStore chọn theo
+ * app.storage.backend (files hoặc segments).
+ */
 @Service
 public class ChapterStorageService {
 
-    private final String storageBasePath = "./storage";
+    @Autowired
+    private ChapterContentStore contentStore;
+
+    @Autowired
+    private ChapterContentCache contentCache;
+
+    @Autowired
+    private ContentEncoder contentEncoder;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
 
     public void saveChapterContent(Long storyId, Long chapterId, String content) throws IOException {
-        Path storyPath = Paths.get(storageBasePath, "stories", storyId.toString());
-        Files.createDirectories(storyPath);
+        byte[] data = content.getBytes(StandardCharsets.UTF_8);
 
-        Path chapterPath = storyPath.resolve("chapters");
-        Files.createDirectories(chapterPath);
+        // Lưu sẵn các bản nén cạnh bản gốc để không phải nén lại ở mỗi request
+        Map<Encoding, byte[]> variants = new EnumMap<>(Encoding.class);
+        for (Encoding encoding : contentEncoder.getEnabledEncodings()) {
+            variants.put(encoding, contentEncoder.encode(encoding, data));
+        }
+        contentStore.write(storyId, chapterId, data, variants);
 
-        Path filePath = chapterPath.resolve(chapterId + ".txt");
-        Files.write(filePath, content.getBytes(StandardCharsets.UTF_8));
+        // Lưu mới và cập nhật nội dung đều đi qua đây
+        contentCache.invalidate(storyId, chapterId);
+        eventPublisher.publishEvent(new ChapterContentChangedEvent(storyId, chapterId, false));
     }
 
     public String getChapterContent(Long storyId, Long chapterId) throws IOException {
-        Path filePath = Paths.get(storageBasePath, "stories", storyId.toString(), "chapters", chapterId + ".txt");
+        return contentCache.get(storyId, chapterId, () -> contentStore.read(storyId, chapterId));
+    }
 
-        if (!Files.exists(filePath)) {
-            throw new IOException("Không tìm thấy file nội dung cho chương: " + chapterId);
-        }
+    /**
+     * Nội dung của chương để stream thẳng ra response mà không đọc vào heap.
+     * Nếu client chấp nhận và đã có bản nén sẵn thì trả về bản nén (br ưu tiên hơn gzip).
+     */
+    public StoredContent openChapterContent(Long storyId, Long chapterId, String acceptEncoding)
+            throws IOException {
+        return contentStore.open(storyId, chapterId, contentEncoder.acceptedEncodings(acceptEncoding));
+    }
 
-        return Files.readString(filePath, StandardCharsets.UTF_8);
+    /**
+     * Metadata (kiểu nén, độ dài, thời điểm ghi) của bản mà openChapterContent sẽ trả,
+     * không mở dữ liệu; dùng để trả 304 trước khi mở nội dung
+     */
+    public ContentStat statChapterContent(Long storyId, Long chapterId, String acceptEncoding) throws IOException {
+        return contentStore.stat(storyId, chapterId, contentEncoder.acceptedEncodings(acceptEncoding));
     }
 
     public void deleteChapterContent(Long storyId, Long chapterId) throws IOException {
-        Path filePath = Paths.get(storageBasePath, "stories", storyId.toString(), "chapters", chapterId + ".txt");
-        Files.deleteIfExists(filePath);
+        contentStore.delete(storyId, chapterId);
+        contentCache.invalidate(storyId, chapterId);
+        eventPublisher.publishEvent(new ChapterContentChangedEvent(storyId, chapterId, true));
+    }
+
+    /**
+     * Duyệt mọi chương đang có nội dung trong storage (không đọc nội dung),
+     * dùng để dựng lại các index. Một chương có thể được duyệt hai lần nếu đang
+     * được chuyển chỗ (người dùng phải chịu được lặp lại).
+     */
+    public void forEachStoredChapter(BiConsumer<Long, Long> visitor) throws IOException {
+        contentStore.forEachChapter(visitor);
+    }
+
+    public Map<String, Object> getContentCacheStats() {
+        return contentCache.stats();
     }
 
     public String generateStoragePath(Long storyId, Long chapterId) {
@@ -49,4 +102,4 @@ public class ChapterStorageService {
         }
         return content.trim().split("\\s+").length;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,393 @@
+package org.qyn.qynnovel.services;
+
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.qyn.qynnovel.components.StorySummaryCache;
+import org.qyn.qynnovel.dto.RankingEntry;
+import org.qyn.qynnovel.dto.StoryCategoryLink;
+import org.qyn.qynnovel.dto.StoryRankingRow;
+import org.qyn.qynnovel.dto.StorySummary;
+import org.qyn.qynnovel.events.StoryActivityEvent;
+import org.qyn.qynnovel.events.StoryChangedEvent;
+import org.qyn.qynnovel.models.Category;
+import org.qyn.qynnovel.models.Story;
+import org.qyn.qynnovel.ranking.Leaderboard;
+import org.qyn.qynnovel.ranking.RankingBoard;
+import org.qyn.qynnovel.repositories.StoryRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+/**
+ * Các bảng xếp hạng truyện giữ trong bộ nhớ: lượt xem, lượt thích, đề xuất và mới
+ * cập nhật (toàn thời gian), lượt xem trong ngày/tuần và lượt xem theo từng thể loại.
+ *
+ * Lượt đọc/thích (StoryActivityEvent) phát ra trên luồng request chỉ được cộng dồn vào
+ * bộ đếm chờ theo truyện (không khóa bảng nào); một luồng duy nhất (publish) lấy các
+ * bộ đếm ra, cập nhật bảng rồi publish snapshot theo chu kỳ ngắn. StoryChangedEvent
+ * cập nhật bảng bất đồng bộ. API đọc trang trực tiếp từ snapshot nên không truy vấn DB.
+ * Điểm toàn thời gian được đọc lại từ DB lúc khởi động và theo chu kỳ dài để sửa sai
+ * lệch. Bảng ngày/tuần chỉ tính từ lúc ứng dụng khởi động.
+ */
+@Service
+public class RankingService {
+
+    private static final Logger log = LoggerFactory.getLogger(RankingService.class);
+
+    private static final int WEEK_DAYS = 7;
+    private static final int BATCH_SIZE = 1000;
+
+    @Autowired
+    private StoryRepository storyRepository;
+
+    @Autowired
+    private StorySummaryCache summaryCache;
+
+    @Autowired
+    private ViewCountService viewCountService;
+
+    private final int categoryCapacity;
+
+    private final Map<RankingBoard, Leaderboard> boards = new EnumMap<>(RankingBoard.class);
+    private final ConcurrentHashMap<Long, Leaderboard> categoryBoards = new ConcurrentHashMap<>();
+
+    // Thể loại của từng truyện, để lượt xem cập nhật đúng các bảng thể loại
+    private final ConcurrentHashMap<Long, Set<Long>> storyCategories = new ConcurrentHashMap<>();
+
+    // Lượt xem/thích chưa đưa vào bảng, gom theo truyện cho đến lần publish kế tiếp
+    private final ConcurrentHashMap<Long, Long> pendingViews = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Long, Long> pendingLikes = new ConcurrentHashMap<>();
+
+    // Lượt xem theo ngày của 7 ngày gần nhất, để trừ khỏi bảng tuần khi một ngày hết hạn
+    private final ConcurrentHashMap<LocalDate, ConcurrentHashMap<Long, Long>> dailyViews = new ConcurrentHashMap<>();
+    private final Clock clock;
+    private volatile LocalDate currentDay;
+
+    @Autowired
+    public RankingService(
+            @Value("${app.rankings.capacity:1000}") int capacity,
+            @Value("${app.rankings.category-capacity:200}") int categoryCapacity) {
+        this(capacity, categoryCapacity, Clock.systemDefaultZone());
+    }
+
+    RankingService(int capacity, int categoryCapacity, Clock clock) {
+        this.categoryCapacity = categoryCapacity;
+        this.clock = clock;
+        this.currentDay = LocalDate.now(clock);
+        for (RankingBoard board : RankingBoard.values()) {
+            boards.put(board, new Leaderboard(capacity));
+        }
+        dailyViews.put(currentDay, new ConcurrentHashMap<>());
+    }
+
+    /**
+     * Ghi nhận lượt đọc/thích (chỉ khi transaction phát sự kiện đã commit, nếu có).
+     * Chạy trên luồng request nên chỉ cộng vào bộ đếm chờ; bảng được cập nhật khi publish.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onActivity(StoryActivityEvent event) {
+        (event.type() == StoryActivityEvent.Type.VIEW ? pendingViews : pendingLikes)
+                .merge(event.storyId(), event.delta(), Long::sum);
+    }
+
+    @Async
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onStoryChanged(StoryChangedEvent event) {
+        summaryCache.invalidate(event.storyId());
+        if (event.deleted()) {
+            removeStory(event.storyId());
+            return;
+        }
+        try {
+            storyRepository.findWithCategoriesById(event.storyId())
+                    .ifPresentOrElse(this::updateStory, () -> removeStory(event.storyId()));
+        } catch (RuntimeException e) {
+            log.error("Không thể cập nhật bảng xếp hạng cho truyện {}", event.storyId(), e);
+        }
+    }
+
+    /**
+     * Trang {@code page} của bảng xếp hạng, kèm thông tin truyện
+     */
+    public List<RankingEntry> getPage(RankingBoard board, int page, int size) {
+        return toEntries(boards.get(board).page(page, size), page * size);
+    }
+
+    public int getSize(RankingBoard board) {
+        return boards.get(board).size();
+    }
+
+    public List<RankingEntry> getCategoryPage(Long categoryId, int page, int size) {
+        Leaderboard board = categoryBoards.get(categoryId);
+        return board == null ? List.of() : toEntries(board.page(page, size), page * size);
+    }
+
+    public int getCategorySize(Long categoryId) {
+        Leaderboard board = categoryBoards.get(categoryId);
+        return board == null ? 0 : board.size();
+    }
+
+    /**
+     * Chuyển ngày nếu cần, publish snapshot các bảng có thay đổi và nạp sẵn thông tin
+     * các truyện mới lọt vào bảng (để request không phải chờ DB)
+     */
+    @Scheduled(fixedDelayString = "${app.rankings.publish-interval-ms:1000}")
+    public synchronized void publish() {
+        // Lượt xem đang chờ lúc sang ngày (tối đa một chu kỳ publish) được tính cho ngày mới
+        rollOverDay();
+        applyPending();
+
+        Set<Long> visible = new HashSet<>();
+        for (Leaderboard board : boards.values()) {
+            if (board.publish()) {
+                board.snapshot().forEach(entry -> visible.add(entry.storyId()));
+            }
+        }
+        for (Leaderboard board : categoryBoards.values()) {
+            if (board.publish()) {
+                board.snapshot().forEach(entry -> visible.add(entry.storyId()));
+            }
+        }
+
+        if (!visible.isEmpty()) {
+            try {
+                summaryCache.getAll(visible);
+            } catch (RuntimeException e) {
+                log.warn("Không thể nạp trước thông tin truyện cho bảng xếp hạng", e);
+            }
+        }
+    }
+
+    @Async
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadOnStartup() {
+        reloadFromDatabase();
+    }
+
+    /**
+     * Đọc lại điểm toàn thời gian và thể loại của mọi truyện từ DB (theo lô).
+     *
+     * Tổng trong DB chưa có lượt xem còn gom trong ViewCountService, còn bảng đã cộng
+     * chúng lúc ghi nhận: ghi hết lượt xem đang chờ trước khi đọc, rồi cộng phần phát
+     * sinh trong lúc đọc. Lượt xem/thích chưa publish sẽ được applyPending cộng sau nên
+     * được trừ ra, tránh tính hai lần.
+     */
+    @Scheduled(initialDelayString = "${app.rankings.resync-interval-ms:600000}",
+            fixedDelayString = "${app.rankings.resync-interval-ms:600000}")
+    public void reloadFromDatabase() {
+        try {
+            long started = System.currentTimeMillis();
+            viewCountService.flush();
+            Set<Long> seen = new HashSet<>();
+            long afterId = 0;
+            while (true) {
+                List<StoryRankingRow> rows = storyRepository.findRankingRowsAfter(afterId,
+                        PageRequest.of(0, BATCH_SIZE));
+                if (rows.isEmpty()) {
+                    break;
+                }
+                List<Long> ids = new ArrayList<>(rows.size());
+                for (StoryRankingRow row : rows) {
+                    ids.add(row.id());
+                    long totalViews = nullToZero(row.totalViews())
+                            + viewCountService.getPendingStoryViews(row.id())
+                            - pendingViews.getOrDefault(row.id(), 0L);
+                    long totalLikes = nullToZero(row.totalLikes()) - pendingLikes.getOrDefault(row.id(), 0L);
+                    applyTotals(row.id(), Math.max(totalViews, 0), Math.max(totalLikes, 0), row.updatedAt());
+                }
+
+                Map<Long, Set<Long>> categories = new HashMap<>();
+                for (StoryCategoryLink link : storyRepository.findCategoryLinks(ids)) {
+                    categories.computeIfAbsent(link.storyId(), id -> new HashSet<>()).add(link.categoryId());
+                }
+                for (Long id : ids) {
+                    applyCategories(id, categories.getOrDefault(id, Set.of()));
+                }
+
+                seen.addAll(ids);
+                afterId = ids.get(ids.size() - 1);
+            }
+
+            for (Long storyId : boards.get(RankingBoard.VIEWS).trackedIds()) {
+                if (!seen.contains(storyId)) {
+                    removeStory(storyId);
+                }
+            }
+            log.info("Đã nạp bảng xếp hạng cho {} truyện trong {} ms",
+                    seen.size(), System.currentTimeMillis() - started);
+        } catch (RuntimeException e) {
+            log.error("Không thể nạp bảng xếp hạng từ DB", e);
+        }
+    }
+
+    /**
+     * Đưa các lượt xem/thích đang chờ vào bảng (remove() nguyên tử nên không mất lượt nào)
+     */
+    private void applyPending() {
+        Leaderboard views = boards.get(RankingBoard.VIEWS);
+        Leaderboard likes = boards.get(RankingBoard.LIKES);
+        Set<Long> touched = new HashSet<>();
+
+        for (Long storyId : pendingViews.keySet()) {
+            Long delta = pendingViews.remove(storyId);
+            if (delta == null || delta == 0) {
+                continue;
+            }
+            views.add(storyId, delta);
+            boards.get(RankingBoard.DAILY).add(storyId, delta);
+            boards.get(RankingBoard.WEEKLY).add(storyId, delta);
+            dailyViews.computeIfAbsent(currentDay, day -> new ConcurrentHashMap<>())
+                    .merge(storyId, delta, Long::sum);
+
+            long total = views.scoreOf(storyId);
+            for (Long categoryId : storyCategories.getOrDefault(storyId, Set.of())) {
+                categoryBoard(categoryId).set(storyId, total);
+            }
+            touched.add(storyId);
+        }
+        for (Long storyId : pendingLikes.keySet()) {
+            Long delta = pendingLikes.remove(storyId);
+            if (delta != null && delta != 0) {
+                likes.add(storyId, delta);
+                touched.add(storyId);
+            }
+        }
+        for (Long storyId : touched) {
+            boards.get(RankingBoard.RECOMMENDED).set(storyId, views.scoreOf(storyId), likes.scoreOf(storyId));
+        }
+    }
+
+    Leaderboard board(RankingBoard board) {
+        return boards.get(board);
+    }
+
+    private void updateStory(Story story) {
+        Leaderboard views = boards.get(RankingBoard.VIEWS);
+        if (!views.contains(story.getId())) {
+            // Truyện mới: lấy điểm từ entity, các lần sau điểm đến từ StoryActivityEvent
+            applyTotals(story.getId(), nullToZero(story.getTotalViews()), nullToZero(story.getTotalLikes()),
+                    story.getUpdatedAt());
+        } else {
+            boards.get(RankingBoard.UPDATED).set(story.getId(), toEpochMillis(story.getUpdatedAt()));
+        }
+
+        Set<Long> categoryIds = new HashSet<>();
+        for (Category category : story.getCategories()) {
+            categoryIds.add(category.getId());
+        }
+        applyCategories(story.getId(), categoryIds);
+    }
+
+    private void applyTotals(Long storyId, long totalViews, long totalLikes, LocalDateTime updatedAt) {
+        boards.get(RankingBoard.VIEWS).set(storyId, totalViews);
+        boards.get(RankingBoard.LIKES).set(storyId, totalLikes);
+        boards.get(RankingBoard.RECOMMENDED).set(storyId, totalViews, totalLikes);
+        boards.get(RankingBoard.UPDATED).set(storyId, toEpochMillis(updatedAt));
+    }
+
+    private void applyCategories(Long storyId, Set<Long> categoryIds) {
+        Set<Long> previous = categoryIds.isEmpty()
+                ? storyCategories.remove(storyId)
+                : storyCategories.put(storyId, Set.copyOf(categoryIds));
+        if (previous != null) {
+            for (Long categoryId : previous) {
+                if (!categoryIds.contains(categoryId)) {
+                    categoryBoard(categoryId).remove(storyId);
+                }
+            }
+        }
+
+        long total = boards.get(RankingBoard.VIEWS).scoreOf(storyId);
+        for (Long categoryId : categoryIds) {
+            categoryBoard(categoryId).set(storyId, total);
+        }
+    }
+
+    private void removeStory(Long storyId) {
+        for (Leaderboard board : boards.values()) {
+            board.remove(storyId);
+        }
+        Set<Long> categoryIds = storyCategories.remove(storyId);
+        if (categoryIds != null) {
+            for (Long categoryId : categoryIds) {
+                categoryBoard(categoryId).remove(storyId);
+            }
+        }
+    }
+
+    /**
+     * Sang ngày mới: làm mới bảng ngày và trừ lượt xem của ngày vừa ra khỏi cửa sổ 7 ngày
+     */
+    private void rollOverDay() {
+        LocalDate today = LocalDate.now(clock);
+        if (today.equals(currentDay)) {
+            return;
+        }
+        currentDay = today;
+        dailyViews.computeIfAbsent(today, day -> new ConcurrentHashMap<>());
+        boards.get(RankingBoard.DAILY).clear();
+
+        Leaderboard weekly = boards.get(RankingBoard.WEEKLY);
+        LocalDate oldestKept = today.minusDays(WEEK_DAYS - 1);
+        for (LocalDate day : new ArrayList<>(dailyViews.keySet())) {
+            if (day.isBefore(oldestKept)) {
+                Map<Long, Long> expired = dailyViews.remove(day);
+                expired.forEach((storyId, count) -> {
+                    weekly.add(storyId, -count);
+                    if (weekly.scoreOf(storyId) <= 0) {
+                        weekly.remove(storyId);
+                    }
+                });
+            }
+        }
+    }
+
+    private Leaderboard categoryBoard(Long categoryId) {
+        return categoryBoards.computeIfAbsent(categoryId, id -> new Leaderboard(categoryCapacity));
+    }
+
+    private List<RankingEntry> toEntries(List<Leaderboard.Entry> entries, int offset) {
+        if (entries.isEmpty()) {
+            return List.of();
+        }
+        List<Long> ids = new ArrayList<>(entries.size());
+        entries.forEach(entry -> ids.add(entry.storyId()));
+        Map<Long, StorySummary> summaries = summaryCache.getAll(ids);
+
+        List<RankingEntry> result = new ArrayList<>(entries.size());
+        for (int i = 0; i < entries.size(); i++) {
+            StorySummary summary = summaries.get(entries.get(i).storyId());
+            if (summary != null) {
+                result.add(new RankingEntry(offset + i + 1, entries.get(i).score(), summary));
+            }
+        }
+        return result;
+    }
+
+    private static long nullToZero(Long value) {
+        return value == null ? 0 : value;
+    }
+
+    private static long toEpochMillis(LocalDateTime time) {
+        return time == null ? 0 : time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+}
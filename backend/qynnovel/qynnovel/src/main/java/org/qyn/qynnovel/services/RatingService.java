@@ -0,0 +1,77 @@
+package org.qyn.qynnovel.services;
+
+import java.util.Optional;
+
+import org.qyn.qynnovel.dto.RatingStats;
+import org.qyn.qynnovel.models.Rating;
+import org.qyn.qynnovel.repositories.RatingRepository;
+import org.qyn.qynnovel.repositories.StoryRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Đánh giá truyện (1-5 sao), mỗi user một đánh giá cho mỗi truyện.
+ * Mọi thao tác ghi cộng dồn thống kê đánh giá của truyện (StoryStatsService) trong cùng transaction.
+ */
+@Service
+@Transactional
+public class RatingService {
+
+    @Autowired
+    private RatingRepository ratingRepository;
+
+    @Autowired
+    private StoryRepository storyRepository;
+
+    @Autowired
+    private StoryStatsService statsService;
+
+    /**
+     * Thêm hoặc sửa đánh giá của user cho truyện
+     */
+    public Rating rate(Long userId, Long storyId, Integer value) {
+        if (value == null || value < 1 || value > 5) {
+            throw new RuntimeException("Điểm đánh giá phải từ 1 đến 5");
+        }
+        if (!storyRepository.existsById(storyId)) {
+            throw new RuntimeException("Không tìm thấy truyện: " + storyId);
+        }
+
+        Optional<Rating> existing = ratingRepository.findForUpdate(userId, storyId);
+        Integer previous = existing.map(Rating::getRating).orElse(null);
+        Rating rating = existing.orElseGet(() -> new Rating(userId, storyId, value));
+        rating.setRating(value);
+        // Flush trước để vi phạm UNIQUE (user_id, story_id) lộ ra trước khi cộng thống kê
+        Rating saved = ratingRepository.saveAndFlush(rating);
+
+        if (previous == null) {
+            statsService.ratingAdded(storyId, value);
+        } else {
+            statsService.ratingChanged(storyId, previous, value);
+        }
+        return saved;
+    }
+
+    /**
+     * Xóa đánh giá của user cho truyện (không có thì bỏ qua)
+     */
+    public void removeRating(Long userId, Long storyId) {
+        ratingRepository.findForUpdate(userId, storyId).ifPresent(rating -> {
+            ratingRepository.delete(rating);
+            statsService.ratingRemoved(storyId, rating.getRating());
+        });
+    }
+
+    @Transactional(readOnly = true)
+    public Optional<Rating> getUserRating(Long userId, Long storyId) {
+        return ratingRepository.findByUserIdAndStoryId(userId, storyId);
+    }
+
+    /**
+     * Số lượt, điểm trung bình, điểm Bayes và phân bố 1-5 sao của truyện
+     */
+    public RatingStats getRatingStats(Long storyId) {
+        return statsService.getRatingStats(storyId);
+    }
+}
@@ -0,0 +1,322 @@
+package org.qyn.qynnovel.services;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.qyn.qynnovel.dto.ChapterStoryLink;
+import org.qyn.qynnovel.dto.ReadingPosition;
+import org.qyn.qynnovel.events.ChapterDeletedEvent;
+import org.qyn.qynnovel.repositories.ChapterRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Ghi lịch sử đọc theo kiểu write-behind.
+ *
+ * POST /api/chapters/{id}/read chỉ kiểm tra chương có tồn tại (qua cache chương → truyện,
+ * chỉ hỏi DB khi chưa có trong cache) rồi đưa sự kiện vào một hàng đợi có giới hạn (không
+ * mở transaction). Khi hàng đợi đầy, lời gọi chờ tối đa app.reading-history.enqueue-timeout-ms
+ * rồi trả về QUEUE_FULL để controller báo 503, nên đợt tăng đột biến không chiếm hết
+ * connection pool.
+ *
+ * Định kỳ một luồng lấy hết sự kiện ra, tra truyện của các chương bằng một truy vấn
+ * (có cache chương → truyện), gộp các lượt đọc của cùng người dùng trên cùng truyện
+ * trong chu kỳ thành một dòng (giữ lượt đọc mới nhất) rồi ghi bằng batch INSERT
+ * (rewriteBatchedStatements gộp thành INSERT nhiều dòng), đồng thời upsert vị trí đọc
+ * cuối cùng của user trong truyện (ReadingPositionService). Lô INSERT chạy trong một
+ * transaction nên lỗi giữa chừng không để lại dòng nào; khi phải ghi từng dòng thì lỗi
+ * DB chỉ làm các dòng chưa ghi được thử lại. Lượt đọc bị bỏ vì hết chỗ chứa được đếm
+ * (getDroppedCount) và ghi log.
+ */
+@Service
+public class ReadingHistoryIngestService {
+
+    private static final Logger log = LoggerFactory.getLogger(ReadingHistoryIngestService.class);
+
+    private static final String INSERT_HISTORY = "INSERT INTO reading_history (user_id, chapter_id, story_id, read_at) VALUES (?, ?, ?, ?)";
+
+    /**
+     * Kết quả nhận một lượt đọc
+     */
+    public enum RecordResult {
+        ACCEPTED,
+        QUEUE_FULL,
+        UNKNOWN_CHAPTER
+    }
+
+    /**
+     * Một lượt đọc chương đang chờ ghi
+     */
+    record ReadEvent(long userId, long chapterId, LocalDateTime readAt) {
+    }
+
+    /**
+     * Khóa gộp: mỗi người dùng, mỗi truyện một dòng trong một chu kỳ
+     */
+    private record ReaderStory(long userId, long storyId) {
+    }
+
+    /**
+     * Ghi từng dòng bị dừng vì lỗi DB sau khi đã xử lý xong {@code handled} dòng đầu của lô
+     */
+    private static class PartialWriteException extends RuntimeException {
+        private final int handled;
+
+        PartialWriteException(int handled, RuntimeException cause) {
+            super(cause);
+            this.handled = handled;
+        }
+    }
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ChapterRepository chapterRepository;
+
+    @Autowired
+    private ReadingPositionService positionService;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    private final BlockingQueue<ReadEvent> queue;
+    private final long enqueueTimeoutMillis;
+    private final int batchSize;
+
+    // Chương không đổi truyện nên cache chương → truyện chỉ cần bỏ mục khi chương bị xóa
+    private final Cache<Long, Long> storyOfChapter = Caffeine.newBuilder()
+            .maximumSize(100_000)
+            .build();
+
+    // Các dòng chưa ghi được do lỗi DB, ghi lại ở lần flush sau (chỉ truy cập trong flush)
+    private final Map<ReaderStory, ReadEvent> retry = new LinkedHashMap<>();
+
+    private final AtomicLong accepted = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+
+    public ReadingHistoryIngestService(
+            @Value("${app.reading-history.queue-capacity:10000}") int queueCapacity,
+            @Value("${app.reading-history.enqueue-timeout-ms:50}") long enqueueTimeoutMillis,
+            @Value("${app.reading-history.batch-size:500}") int batchSize) {
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.enqueueTimeoutMillis = enqueueTimeoutMillis;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Đưa một lượt đọc vào hàng đợi. Trả về UNKNOWN_CHAPTER nếu chương không tồn tại,
+     * QUEUE_FULL nếu hàng đợi vẫn đầy sau thời gian chờ
+     */
+    public RecordResult record(Long userId, Long chapterId) {
+        if (storyOf(chapterId) == null) {
+            return RecordResult.UNKNOWN_CHAPTER;
+        }
+        ReadEvent event = new ReadEvent(userId, chapterId, LocalDateTime.now());
+        try {
+            if (queue.offer(event, enqueueTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                accepted.incrementAndGet();
+                return RecordResult.ACCEPTED;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        rejected.incrementAndGet();
+        return RecordResult.QUEUE_FULL;
+    }
+
+    /**
+     * Chương đã bị xóa: lượt đọc gửi sau đó bị từ chối thay vì ghi thành dòng mồ côi
+     */
+    @EventListener
+    public void onChapterDeleted(ChapterDeletedEvent event) {
+        storyOfChapter.invalidate(event.chapterId());
+    }
+
+    /**
+     * Ghi các lượt đọc đang chờ xuống DB, chạy theo chu kỳ app.reading-history.flush-interval-ms
+     */
+    @Scheduled(fixedDelayString = "${app.reading-history.flush-interval-ms:5000}")
+    public synchronized void flush() {
+        List<ReadEvent> drained = new ArrayList<>(Math.min(queue.size(), batchSize * 4));
+        queue.drainTo(drained);
+        if (drained.isEmpty() && retry.isEmpty()) {
+            return;
+        }
+
+        Map<Long, Long> stories;
+        try {
+            stories = resolveStories(drained);
+        } catch (RuntimeException e) {
+            // Không tra được truyện (DB lỗi): trả sự kiện về hàng đợi nếu còn chỗ
+            log.error("Không thể tra truyện cho {} lượt đọc, sẽ thử lại", drained.size(), e);
+            int lost = 0;
+            for (ReadEvent event : drained) {
+                if (!queue.offer(event)) {
+                    lost++;
+                }
+            }
+            drop(lost);
+            return;
+        }
+
+        Map<ReaderStory, ReadEvent> coalesced = new LinkedHashMap<>(retry);
+        retry.clear();
+        for (ReadEvent event : drained) {
+            Long storyId = stories.get(event.chapterId());
+            if (storyId == null) {
+                continue; // chương không tồn tại (hoặc đã bị xóa)
+            }
+            coalesced.merge(new ReaderStory(event.userId(), storyId), event,
+                    (current, next) -> next.readAt().isBefore(current.readAt()) ? current : next);
+        }
+
+        List<Map.Entry<ReaderStory, ReadEvent>> rows = new ArrayList<>(coalesced.entrySet());
+        for (int from = 0; from < rows.size(); from += batchSize) {
+            List<Map.Entry<ReaderStory, ReadEvent>> chunk = rows.subList(from, Math.min(from + batchSize, rows.size()));
+            try {
+                write(chunk);
+            } catch (RuntimeException e) {
+                // Chỉ thử lại các dòng chưa ghi: phần đầu lô đã ghi từng dòng thì bỏ qua
+                int resumeAt = from + (e instanceof PartialWriteException partial ? partial.handled : 0);
+                List<Map.Entry<ReaderStory, ReadEvent>> pending = rows.subList(resumeAt, rows.size());
+                log.error("Không thể ghi {} dòng lịch sử đọc, sẽ thử lại", pending.size(),
+                        e instanceof PartialWriteException ? e.getCause() : e);
+                int limit = queue.remainingCapacity();
+                for (Map.Entry<ReaderStory, ReadEvent> row : pending) {
+                    if (retry.size() >= limit) {
+                        break;
+                    }
+                    retry.put(row.getKey(), row.getValue());
+                }
+                drop(pending.size() - retry.size());
+                return;
+            }
+        }
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        log.info("Ghi {} lượt đọc còn lại trước khi tắt", queue.size() + retry.size());
+        flush();
+    }
+
+    public long getAcceptedCount() {
+        return accepted.get();
+    }
+
+    public long getRejectedCount() {
+        return rejected.get();
+    }
+
+    public long getWrittenCount() {
+        return written.get();
+    }
+
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    public int getQueueSize() {
+        return queue.size();
+    }
+
+    private void drop(int count) {
+        if (count > 0) {
+            dropped.addAndGet(count);
+            log.warn("Hàng đợi lịch sử đọc đầy, bỏ {} lượt đọc (đã bỏ tổng cộng {})", count, dropped.get());
+        }
+    }
+
+    private Long storyOf(long chapterId) {
+        Long storyId = storyOfChapter.getIfPresent(chapterId);
+        if (storyId == null) {
+            for (ChapterStoryLink link : chapterRepository.findStoryLinks(Set.of(chapterId))) {
+                storyOfChapter.put(link.chapterId(), link.storyId());
+                storyId = link.storyId();
+            }
+        }
+        return storyId;
+    }
+
+    private Map<Long, Long> resolveStories(List<ReadEvent> events) {
+        Set<Long> chapterIds = new HashSet<>();
+        for (ReadEvent event : events) {
+            chapterIds.add(event.chapterId());
+        }
+        Map<Long, Long> stories = new LinkedHashMap<>(storyOfChapter.getAllPresent(chapterIds));
+        chapterIds.removeAll(stories.keySet());
+        if (!chapterIds.isEmpty()) {
+            for (ChapterStoryLink link : chapterRepository.findStoryLinks(chapterIds)) {
+                stories.put(link.chapterId(), link.storyId());
+                storyOfChapter.put(link.chapterId(), link.storyId());
+            }
+        }
+        return stories;
+    }
+
+    private void write(List<Map.Entry<ReaderStory, ReadEvent>> chunk) {
+        List<Object[]> batch = new ArrayList<>(chunk.size());
+        List<ReadingPosition> positions = new ArrayList<>(chunk.size());
+        for (Map.Entry<ReaderStory, ReadEvent> row : chunk) {
+            batch.add(toArgs(row));
+            ReadEvent event = row.getValue();
+            positions.add(new ReadingPosition(event.userId(), row.getKey().storyId(), event.chapterId(), event.readAt()));
+        }
+
+        // Vị trí đọc ghi trước: upsert chỉ giữ lượt đọc mới nhất nên ghi lại khi thử lại lô không sao,
+        // còn INSERT lịch sử thì không được lặp
+        positionService.saveAll(positions);
+        try {
+            // Cả lô trong một transaction: lỗi thì không dòng nào được ghi, thử lại cả lô là an toàn
+            transactionTemplate.executeWithoutResult(status -> jdbcTemplate.batchUpdate(INSERT_HISTORY, batch));
+            written.addAndGet(batch.size());
+        } catch (DataIntegrityViolationException e) {
+            // Một dòng vi phạm ràng buộc làm hỏng cả lô: ghi lại từng dòng và bỏ các dòng lỗi
+            log.warn("Lô lịch sử đọc vi phạm ràng buộc, ghi lại từng dòng: {}", e.getMessage());
+            for (int i = 0; i < batch.size(); i++) {
+                Object[] args = batch.get(i);
+                try {
+                    jdbcTemplate.update(INSERT_HISTORY, args);
+                    written.incrementAndGet();
+                } catch (DataIntegrityViolationException rowError) {
+                    log.debug("Bỏ lượt đọc không hợp lệ của người dùng {} (chương {})", args[0], args[1]);
+                } catch (RuntimeException rowError) {
+                    // Các dòng trước đã ghi (tự commit): chỉ thử lại từ dòng này
+                    throw new PartialWriteException(i, rowError);
+                }
+            }
+        }
+    }
+
+    private static Object[] toArgs(Map.Entry<ReaderStory, ReadEvent> row) {
+        ReadEvent event = row.getValue();
+        return new Object[] {
+                event.userId(), event.chapterId(), row.getKey().storyId(), Timestamp.valueOf(event.readAt()) };
+    }
+}
@@ -0,0 +1,240 @@
+package org.qyn.qynnovel.services;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.qyn.qynnovel.components.StorySummaryCache;
+import org.qyn.qynnovel.dto.LibraryEntry;
+import org.qyn.qynnovel.dto.ReadingPosition;
+import org.qyn.qynnovel.dto.StorySummary;
+import org.qyn.qynnovel.events.ChapterDeletedEvent;
+import org.qyn.qynnovel.events.StoryChangedEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+
+/**
+ * Vị trí đọc cuối cùng ("đọc tiếp") của user trong từng truyện.
+ *
+ * Bảng reading_positions giữ một dòng cho mỗi (user_id, story_id), ghi bằng upsert
+ * theo lô từ ReadingHistoryIngestService. Tầng nóng là cache Caffeine theo user: toàn
+ * bộ vị trí của một user được nạp bằng một truy vấn theo tiền tố khóa chính, sau đó
+ * "đọc tiếp" là một lần tra map theo story_id và tủ truyện chỉ sắp xếp vài chục dòng
+ * trong bộ nhớ, không phụ thuộc độ dài lịch sử đọc. Vị trí chỉ được ghi từ lượt đọc của
+ * user đã đăng nhập (POST /api/chapters/{id}/read lấy user từ security context).
+ *
+ * Một index ngược story_id → các user có tủ truyện đang cache chứa truyện đó giúp việc
+ * xóa truyện/chương chỉ chạm vào tủ truyện liên quan thay vì duyệt mọi user đang cache.
+ */
+@Service
+public class ReadingPositionService {
+
+    private static final Logger log = LoggerFactory.getLogger(ReadingPositionService.class);
+
+    // Chỉ ghi đè khi lượt đọc mới hơn (các lô có thể đến không theo thứ tự khi thử lại);
+    // chapter_id được gán trước nên vẫn so với read_at cũ
+    private static final String UPSERT_POSITION = "INSERT INTO reading_positions (user_id, story_id, chapter_id, read_at) VALUES (?, ?, ?, ?) "
+            + "ON DUPLICATE KEY UPDATE chapter_id = IF(VALUES(read_at) >= read_at, VALUES(chapter_id), chapter_id), "
+            + "read_at = GREATEST(read_at, VALUES(read_at))";
+
+    private static final String SELECT_SHELF = "SELECT story_id, chapter_id, read_at FROM reading_positions WHERE user_id = ?";
+
+    private static final Comparator<ReadingPosition> MOST_RECENT_FIRST = Comparator
+            .comparing(ReadingPosition::readAt, Comparator.nullsLast(Comparator.reverseOrder()))
+            .thenComparing(ReadingPosition::storyId, Comparator.reverseOrder());
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private StorySummaryCache summaryCache;
+
+    // user_id → (story_id → vị trí); trọng số là số vị trí của user
+    private final Cache<Long, Map<Long, ReadingPosition>> shelves;
+
+    // story_id → user_id của các tủ truyện đang cache có truyện đó (cập nhật cùng tủ truyện)
+    private final ConcurrentHashMap<Long, Set<Long>> readersByStory = new ConcurrentHashMap<>();
+
+    public ReadingPositionService(
+            @Value("${app.reading-positions.cache-max-entries:500000}") long maxEntries,
+            @Value("${app.reading-positions.cache-idle-minutes:30}") long idleMinutes) {
+        this.shelves = Caffeine.newBuilder()
+                .maximumWeight(maxEntries)
+                .weigher((Long userId, Map<Long, ReadingPosition> shelf) -> shelf.size() + 1)
+                .expireAfterAccess(idleMinutes, TimeUnit.MINUTES)
+                // Chạy đồng bộ trong lúc gỡ entry nên không xen với lần nạp lại tủ truyện của cùng user
+                .evictionListener((Long userId, Map<Long, ReadingPosition> shelf, RemovalCause cause) -> {
+                    if (userId != null && shelf != null) {
+                        shelf.keySet().forEach(storyId -> unindex(storyId, userId));
+                    }
+                })
+                .build();
+    }
+
+    /**
+     * Chương user đọc gần nhất trong truyện
+     */
+    public Optional<ReadingPosition> getPosition(Long userId, Long storyId) {
+        return Optional.ofNullable(shelf(userId).get(storyId));
+    }
+
+    /**
+     * Tủ truyện: các truyện user đã đọc, truyện đọc gần nhất trước, tối đa {@code limit} truyện
+     */
+    public List<LibraryEntry> getLibrary(Long userId, int limit) {
+        List<ReadingPosition> positions = shelf(userId).values().stream()
+                .sorted(MOST_RECENT_FIRST)
+                .limit(limit)
+                .toList();
+        if (positions.isEmpty()) {
+            return List.of();
+        }
+
+        Map<Long, StorySummary> summaries = summaryCache.getAll(
+                positions.stream().map(ReadingPosition::storyId).toList());
+        List<LibraryEntry> library = new ArrayList<>(positions.size());
+        for (ReadingPosition position : positions) {
+            StorySummary summary = summaries.get(position.storyId());
+            if (summary != null) {
+                library.add(new LibraryEntry(position, summary));
+            }
+        }
+        return library;
+    }
+
+    /**
+     * Ghi (upsert) các vị trí đọc; dòng vi phạm khóa ngoại (user/chương vừa bị xóa) bị bỏ qua
+     */
+    public void saveAll(List<ReadingPosition> positions) {
+        if (positions.isEmpty()) {
+            return;
+        }
+        List<Object[]> batch = new ArrayList<>(positions.size());
+        for (ReadingPosition position : positions) {
+            batch.add(new Object[] {
+                    position.userId(), position.storyId(), position.chapterId(), Timestamp.valueOf(position.readAt()) });
+        }
+
+        try {
+            jdbcTemplate.batchUpdate(UPSERT_POSITION, batch);
+            positions.forEach(this::cache);
+        } catch (DataIntegrityViolationException e) {
+            log.warn("Lô vị trí đọc vi phạm ràng buộc, ghi lại từng dòng: {}", e.getMessage());
+            for (int i = 0; i < batch.size(); i++) {
+                try {
+                    jdbcTemplate.update(UPSERT_POSITION, batch.get(i));
+                    cache(positions.get(i));
+                } catch (DataIntegrityViolationException rowError) {
+                    log.debug("Bỏ vị trí đọc không hợp lệ của người dùng {} (truyện {})",
+                            positions.get(i).userId(), positions.get(i).storyId());
+                }
+            }
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onStoryChanged(StoryChangedEvent event) {
+        if (!event.deleted()) {
+            return;
+        }
+        // Dòng trong DB đã bị xóa theo khóa ngoại, chỉ cần gỡ khỏi các tủ truyện đang cache có truyện này
+        Set<Long> readers = readersByStory.remove(event.storyId());
+        if (readers == null) {
+            return;
+        }
+        for (Long reader : readers) {
+            shelves.asMap().computeIfPresent(reader, (userId, shelf) -> {
+                shelf.remove(event.storyId());
+                return shelf;
+            });
+        }
+    }
+
+    /**
+     * Dòng reading_positions trỏ tới chương bị xóa đã bị xóa theo khóa ngoại (ON DELETE CASCADE):
+     * gỡ vị trí đó khỏi các tủ truyện đang cache để "đọc tiếp" không trỏ tới chương không còn
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onChapterDeleted(ChapterDeletedEvent event) {
+        Set<Long> readers = readersByStory.get(event.storyId());
+        if (readers == null) {
+            return;
+        }
+        for (Long reader : List.copyOf(readers)) {
+            shelves.asMap().computeIfPresent(reader, (userId, shelf) -> {
+                ReadingPosition removed = shelf.computeIfPresent(event.storyId(),
+                        (storyId, current) -> current.chapterId().equals(event.chapterId()) ? null : current);
+                if (removed == null) {
+                    unindex(event.storyId(), userId);
+                }
+                return shelf;
+            });
+        }
+    }
+
+    public long getCachedUserCount() {
+        return shelves.estimatedSize();
+    }
+
+    private Map<Long, ReadingPosition> shelf(Long userId) {
+        return shelves.get(userId, this::loadShelf);
+    }
+
+    private Map<Long, ReadingPosition> loadShelf(Long userId) {
+        Map<Long, ReadingPosition> shelf = new ConcurrentHashMap<>();
+        jdbcTemplate.query(SELECT_SHELF, rs -> {
+            Timestamp readAt = rs.getTimestamp("read_at");
+            ReadingPosition position = new ReadingPosition(userId, rs.getLong("story_id"), rs.getLong("chapter_id"),
+                    readAt == null ? null : readAt.toLocalDateTime());
+            shelf.put(position.storyId(), position);
+            index(position.storyId(), userId);
+        }, userId);
+        return shelf;
+    }
+
+    /**
+     * Cập nhật tủ truyện đang cache (user chưa được cache thì sẽ nạp từ DB khi cần);
+     * compute để Caffeine tính lại trọng số
+     */
+    private void cache(ReadingPosition position) {
+        shelves.asMap().computeIfPresent(position.userId(), (userId, shelf) -> {
+            shelf.merge(position.storyId(), position,
+                    (current, next) -> current.readAt() != null && next.readAt().isBefore(current.readAt())
+                            ? current
+                            : next);
+            index(position.storyId(), userId);
+            return shelf;
+        });
+    }
+
+    private void index(Long storyId, Long userId) {
+        readersByStory.compute(storyId, (id, readers) -> {
+            Set<Long> result = readers == null ? ConcurrentHashMap.newKeySet() : readers;
+            result.add(userId);
+            return result;
+        });
+    }
+
+    private void unindex(Long storyId, Long userId) {
+        readersByStory.computeIfPresent(storyId, (id, readers) -> {
+            readers.remove(userId);
+            return readers.isEmpty() ? null : readers;
+        });
+    }
+}
@@ -0,0 +1,393 @@
+package org.qyn.qynnovel.services;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import org.qyn.qynnovel.components.StorySummaryCache;
+import org.qyn.qynnovel.dto.KeysetCursor;
+import org.qyn.qynnovel.dto.KeysetPage;
+import org.qyn.qynnovel.dto.StoryCursorRow;
+import org.qyn.qynnovel.dto.StoryDetail;
+import org.qyn.qynnovel.dto.StoryListItem;
+import org.qyn.qynnovel.dto.StoryListSort;
+import org.qyn.qynnovel.dto.StorySuggestion;
+import org.qyn.qynnovel.dto.StorySummary;
+import org.qyn.qynnovel.events.StoryActivityEvent;
+import org.qyn.qynnovel.models.Story;
+import org.qyn.qynnovel.repositories.ChapterRepository;
+import org.qyn.qynnovel.repositories.StoryRepository;
+import org.qyn.qynnovel.search.StoryFilterIndex;
+import org.qyn.qynnovel.search.StoryFilterIndex.Filter;
+import org.qyn.qynnovel.search.StoryFilterIndex.FilterResult;
+import org.qyn.qynnovel.search.StorySearchIndex;
+import org.qyn.qynnovel.search.StorySearchIndex.SearchResult;
+import org.qyn.qynnovel.search.StorySuggester;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+@Service
+public class StoryService {
+    
+    // Khóa "trước" trang đầu tiên khi duyệt theo thời gian cập nhật
+    private static final LocalDateTime MAX_UPDATED_AT = LocalDateTime.of(9999, 12, 31, 23, 59, 59);
+    
+    // Số chương mới nhất hiển thị ở trang chi tiết truyện
+    private static final int DETAIL_LATEST_CHAPTERS = 10;
+    
+    // Số truyện tối đa trong một bản chụp thứ tự theo lượt xem (danh sách theo thể loại)
+    private static final int VIEWS_SNAPSHOT_SIZE = 1000;
+    
+    // Bản chụp thứ tự theo lượt xem: id bản chụp (trong cursor) → id truyện theo thứ tự;
+    // trọng số là số id
+    private final Cache<Long, long[]> viewsSnapshots = Caffeine.newBuilder()
+            .maximumWeight(2_000_000)
+            .weigher((Long snapshotId, long[] storyIds) -> storyIds.length + 1)
+            .expireAfterAccess(Duration.ofMinutes(30))
+            .build();
+    
+    @Autowired
+    private StoryRepository storyRepository;
+    
+    @Autowired
+    private ChapterRepository chapterRepository;
+    
+    @Autowired
+    private StoryFilterIndex filterIndex;
+    
+    @Autowired
+    private StorySummaryCache summaryCache;
+    
+    @Autowired
+    private StorySearchIndex searchIndex;
+    
+    @Autowired
+    private StorySuggester suggester;
+    
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+    
+    public Page<Story> getAllStories(Pageable pageable) {
+        return storyRepository.findAll(pageable);
+    }
+    
+    public Optional<Story> getStoryById(Long id) {
+        return storyRepository.findById(id);
+    }
+    
+    public Optional<Story> getStoryBySlug(String slug) {
+        return storyRepository.findBySlug(slug);
+    }
+    
+    /**
+     * Dữ liệu trang chi tiết truyện: 2 truy vấn cố định (truyện kèm người đăng và thể loại,
+     * các chương mới nhất), không nạp lười collection nào của Story
+     */
+    @Transactional(readOnly = true)
+    public Optional<StoryDetail> getStoryDetail(Long id) {
+        return storyRepository.findDetailById(id).map(this::toDetail);
+    }
+    
+    @Transactional(readOnly = true)
+    public Optional<StoryDetail> getStoryDetailBySlug(String slug) {
+        return storyRepository.findDetailBySlug(slug).map(this::toDetail);
+    }
+    
+    private StoryDetail toDetail(Story story) {
+        return StoryDetail.from(story,
+                chapterRepository.findLatestToc(story.getId(), PageRequest.of(0, DETAIL_LATEST_CHAPTERS)));
+    }
+    
+    public Story saveStory(Story story) {
+        return storyRepository.save(story);
+    }
+    
+    public void deleteStory(Long id) {
+        storyRepository.deleteById(id);
+    }
+    
+    public Page<Story> getStoriesByStatus(String status, Pageable pageable) {
+        return storyRepository.findByStatus(status, pageable);
+    }
+    
+    public Page<Story> getStoriesByAuthor(String author, Pageable pageable) {
+        return storyRepository.findByAuthor(author, pageable);
+    }
+    
+    public Page<Story> getStoriesByUserId(Long userId, Pageable pageable) {
+        return storyRepository.findByUserId(userId, pageable);
+    }
+    
+    public Page<Story> searchStories(String keyword, Pageable pageable) {
+        return storyRepository.findByTitleContainingIgnoreCase(keyword, pageable);
+    }
+    
+    public Page<Story> getMostViewedStories(Pageable pageable) {
+        return storyRepository.findByOrderByTotalViewsDesc(pageable);
+    }
+    
+    public Page<Story> getNewestStories(Pageable pageable) {
+        return storyRepository.findByOrderByCreatedAtDesc(pageable);
+    }
+    
+    public Page<Story> getMostLikedStories(Pageable pageable) {
+        return storyRepository.findByOrderByTotalLikesDesc(pageable);
+    }
+    
+    public Page<Story> getStoriesByCategory(Long categoryId, Pageable pageable) {
+        return storyRepository.findByCategoryId(categoryId, pageable);
+    }
+    
+    public Page<Story> getStoriesByCategorySlug(String categorySlug, Pageable pageable) {
+        return storyRepository.findByCategorySlug(categorySlug, pageable);
+    }
+    
+    /**
+     * Truyện thuộc ít nhất một trong các thể loại (mỗi truyện một lần), phân trang keyset
+     * theo khóa không đổi giữa các trang (id, hoặc updatedAt rồi id); theo lượt xem thì phân
+     * trang trên một bản chụp thứ tự. Hai truy vấn mỗi trang: id + khóa sắp xếp, rồi truyện
+     * kèm thể loại bằng một fetch join.
+     *
+     * @throws IllegalArgumentException nếu cursor không hợp lệ
+     */
+    @Transactional(readOnly = true)
+    public KeysetPage<StoryListItem> getStoriesByCategories(List<Long> categoryIds, StoryListSort sort,
+            String cursor, int size) {
+        if (sort == StoryListSort.VIEWS) {
+            return getMostViewedInCategories(categoryIds, cursor, size);
+        }
+        long beforeKey = Long.MAX_VALUE;
+        long beforeId = Long.MAX_VALUE;
+        if (cursor != null && !cursor.isBlank()) {
+            long[] key = KeysetCursor.decode(cursor, 2);
+            beforeKey = key[0];
+            beforeId = key[1];
+        }
+        
+        PageRequest limit = PageRequest.of(0, size + 1);
+        List<StoryCursorRow> rows = sort == StoryListSort.NEWEST
+                ? storyRepository.findNewestInCategories(categoryIds, beforeId, limit)
+                : storyRepository.findUpdatedInCategories(categoryIds,
+                        beforeKey == Long.MAX_VALUE ? MAX_UPDATED_AT : fromCursorKey(beforeKey), beforeId, limit);
+        
+        List<StoryCursorRow> pageRows = rows.size() > size ? rows.subList(0, size) : rows;
+        String nextCursor = null;
+        if (rows.size() > size) {
+            StoryCursorRow last = pageRows.get(size - 1);
+            nextCursor = KeysetCursor.encode(cursorKey(sort, last), last.id());
+        }
+        
+        return KeysetPage.of(toListItems(pageRows.stream().map(StoryCursorRow::id).toList()), nextCursor);
+    }
+    
+    /**
+     * Danh sách theo thể loại, nhiều lượt xem nhất trước. Lượt xem đổi liên tục nên khóa
+     * keyset theo total_views làm truyện bị lặp/bỏ sót giữa các trang: trang đầu chụp thứ tự
+     * (tối đa VIEWS_SNAPSHOT_SIZE truyện), cursor là (id bản chụp, vị trí) và các trang sau
+     * đọc tiếp trong bản chụp đó.
+     *
+     * @throws IllegalArgumentException nếu cursor không hợp lệ hoặc bản chụp đã hết hạn
+     */
+    private KeysetPage<StoryListItem> getMostViewedInCategories(List<Long> categoryIds, String cursor, int size) {
+        long snapshotId;
+        int offset;
+        long[] storyIds;
+        if (cursor == null || cursor.isBlank()) {
+            storyIds = storyRepository.findMostViewedIdsInCategories(categoryIds, PageRequest.of(0, VIEWS_SNAPSHOT_SIZE))
+                    .stream().mapToLong(Long::longValue).toArray();
+            snapshotId = ThreadLocalRandom.current().nextLong(1, Long.MAX_VALUE);
+            offset = 0;
+        } else {
+            long[] key = KeysetCursor.decode(cursor, 2);
+            snapshotId = key[0];
+            offset = KeysetCursor.toInt(key[1]);
+            storyIds = viewsSnapshots.getIfPresent(snapshotId);
+            if (storyIds == null || offset < 0 || offset > storyIds.length) {
+                throw new IllegalArgumentException("Cursor đã hết hạn: " + cursor);
+            }
+        }
+        
+        int end = Math.min(offset + size, storyIds.length);
+        String nextCursor = null;
+        if (end < storyIds.length) {
+            viewsSnapshots.put(snapshotId, storyIds);
+            nextCursor = KeysetCursor.encode(snapshotId, end);
+        }
+        return KeysetPage.of(toListItems(Arrays.stream(storyIds, offset, end).boxed().toList()), nextCursor);
+    }
+    
+    /**
+     * Truyện kèm thể loại theo đúng thứ tự {@code ids} (một truy vấn); truyện vừa bị xóa bị bỏ qua
+     */
+    private List<StoryListItem> toListItems(List<Long> ids) {
+        Map<Long, Story> stories = ids.isEmpty() ? Map.of()
+                : storyRepository.findAllWithCategoriesByIdIn(ids).stream()
+                        .collect(Collectors.toMap(Story::getId, Function.identity(), (a, b) -> a));
+        return ids.stream()
+                .map(stories::get)
+                .filter(Objects::nonNull)
+                .map(StoryListItem::from)
+                .toList();
+    }
+    
+    /**
+     * Lọc truyện theo tổ hợp thể loại (một trong / tất cả / loại trừ) và trạng thái trên
+     * index bitmap trong bộ nhớ, id giảm dần; thông tin truyện lấy từ StorySummaryCache
+     *
+     * @throws IllegalArgumentException nếu cursor không hợp lệ
+     */
+    public KeysetPage<StorySummary> filterStories(Filter filter, String cursor, int size) {
+        long beforeId = Long.MAX_VALUE;
+        if (cursor != null && !cursor.isBlank()) {
+            beforeId = KeysetCursor.decode(cursor, 1)[0];
+        }
+        
+        FilterResult result = filterIndex.filter(filter, beforeId, size + 1);
+        List<Long> ids = result.storyIds().size() > size ? result.storyIds().subList(0, size) : result.storyIds();
+        String nextCursor = result.storyIds().size() > size ? KeysetCursor.encode(ids.get(size - 1)) : null;
+        
+        Map<Long, StorySummary> summaries = summaryCache.getAll(ids);
+        List<StorySummary> items = ids.stream()
+                .map(summaries::get)
+                .filter(Objects::nonNull)
+                .toList();
+        return KeysetPage.of(items, nextCursor);
+    }
+    
+    private static long cursorKey(StoryListSort sort, StoryCursorRow row) {
+        return switch (sort) {
+            case NEWEST -> row.id();
+            case UPDATED -> row.updatedAt() == null ? 0 : row.updatedAt().toInstant(ZoneOffset.UTC).toEpochMilli();
+            case VIEWS -> throw new IllegalStateException("Danh sách theo lượt xem không dùng khóa keyset");
+        };
+    }
+    
+    private static LocalDateTime fromCursorKey(long epochMilli) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(epochMilli), ZoneOffset.UTC);
+    }
+    
+    /**
+     * Tìm kiếm toàn văn theo tiêu đề, tác giả, mô tả và thể loại (không dấu cũng khớp),
+     * kết quả xếp hạng theo độ liên quan. Chỉ truy vấn DB để lấy thông tin các truyện của trang.
+     */
+    @Transactional(readOnly = true)
+    public Page<StorySummary> advancedSearch(String keyword, Pageable pageable) {
+        SearchResult result = searchIndex.search(keyword, pageable.getPageNumber(), pageable.getPageSize());
+        return new PageImpl<>(findSummariesInOrder(result.storyIds()), pageable, result.totalHits());
+    }
+    
+    /**
+     * Gợi ý truyện khi đang gõ (tiêu đề, tác giả, slug), chỉ tra trong bộ nhớ
+     */
+    public List<StorySuggestion> suggest(String prefix, int limit) {
+        return suggester.suggest(prefix, limit);
+    }
+    
+    /**
+     * Lấy thông tin rút gọn của các truyện, giữ nguyên thứ tự id truyền vào
+     */
+    @Transactional(readOnly = true)
+    public List<StorySummary> findSummariesInOrder(List<Long> storyIds) {
+        if (storyIds.isEmpty()) {
+            return List.of();
+        }
+        Map<Long, Story> stories = storyRepository.findAllById(storyIds).stream()
+                .collect(Collectors.toMap(Story::getId, Function.identity()));
+        return storyIds.stream()
+                .map(stories::get)
+                .filter(Objects::nonNull)
+                .map(StorySummary::from)
+                .collect(Collectors.toList());
+    }
+    
+    /**
+     * Truyện đánh giá cao: theo điểm Bayes, hoặc theo điểm trung bình với tối thiểu {@code minVotes} lượt
+     */
+    @Transactional(readOnly = true)
+    public List<StorySummary> getTopRated(boolean bayesian, int minVotes, Pageable pageable) {
+        List<Story> stories = bayesian
+                ? storyRepository.findTopRated(pageable)
+                : storyRepository.findTopRatedByAverage(Math.max(1, minVotes), pageable);
+        return stories.stream().map(StorySummary::from).collect(Collectors.toList());
+    }
+    
+    public Page<Story> getRecentlyUpdatedStories(Pageable pageable) {
+        return storyRepository.findRecentlyUpdated(pageable);
+    }
+    
+    public Page<Story> getCompletedStories(Pageable pageable) {
+        return storyRepository.findCompletedStories(pageable);
+    }
+    
+    public Page<Story> getOngoingStories(Pageable pageable) {
+        return storyRepository.findOngoingStories(pageable);
+    }
+    
+    public Page<Story> getRecommendedStories(Pageable pageable) {
+        return storyRepository.findRecommendedStories(pageable);
+    }
+    
+    public List<Story> getOtherStoriesByAuthor(String author, Long excludeId) {
+        return storyRepository.findOtherStoriesByAuthor(author, excludeId);
+    }
+    
+    public List<Story> getSimilarStories(List<Long> categoryIds, Long excludeId) {
+        return storyRepository.findSimilarStories(categoryIds, excludeId);
+    }
+    
+    @Transactional
+    public void incrementViews(Long storyId) {
+        storyRepository.incrementViews(storyId);
+        eventPublisher.publishEvent(StoryActivityEvent.view(storyId));
+    }
+    
+    @Transactional
+    public void incrementLikes(Long storyId) {
+        storyRepository.incrementLikes(storyId);
+        eventPublisher.publishEvent(StoryActivityEvent.like(storyId, 1));
+    }
+    
+    @Transactional
+    public void decrementLikes(Long storyId) {
+        storyRepository.decrementLikes(storyId);
+        eventPublisher.publishEvent(StoryActivityEvent.like(storyId, -1));
+    }
+    
+    public Long getTotalWordCount(Long storyId) {
+        return storyRepository.getTotalWordCount(storyId);
+    }
+    
+    public Long getChapterCount(Long storyId) {
+        return storyRepository.getChapterCount(storyId);
+    }
+    
+    public Long countByStatus(String status) {
+        return storyRepository.countByStatus(status);
+    }
+    
+    public Long countByCategoryId(Long categoryId) {
+        return storyRepository.countByCategoryId(categoryId);
+    }
+    
+    public Long countByUserId(Long userId) {
+        return storyRepository.countByUserId(userId);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,349 @@
+package org.qyn.qynnovel.services;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import org.qyn.qynnovel.dto.RatingStats;
+import org.qyn.qynnovel.dto.StoryDailyReads;
+import org.qyn.qynnovel.events.StoryChangedEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Duy trì các cột thống kê trên bảng stories (chapter_count, total_word_count,
+ * latest_chapter_number, rating_count, average_rating, bayesian_rating) và bảng
+ * story_rating_stats (tổng điểm, số lượt, phân bố 1-5 sao), để trang danh sách,
+ * lọc và sắp xếp không phải tính COUNT/SUM/AVG trên chapters và ratings.
+ *
+ * Các phương thức cập nhật chạy trong transaction của thao tác ghi chương/đánh giá
+ * (bắt buộc có transaction), nên thống kê commit hoặc rollback cùng dữ liệu gốc.
+ * Đánh giá được cộng dồn (không đọc lại bảng ratings). Ngoài ra có một lượt đối
+ * soát định kỳ tính lại theo từng khoảng id và sửa các truyện bị lệch (ghi thẳng
+ * vào DB, xóa user kéo theo xóa đánh giá...).
+ */
+@Service
+public class StoryStatsService {
+
+    private static final Logger log = LoggerFactory.getLogger(StoryStatsService.class);
+
+    // Thêm chương là một lần cập nhật truyện: để ON UPDATE CURRENT_TIMESTAMP đổi updated_at
+    private static final String CHAPTER_ADDED = "UPDATE stories SET chapter_count = chapter_count + 1, "
+            + "total_word_count = total_word_count + ?, "
+            + "latest_chapter_number = GREATEST(COALESCE(latest_chapter_number, ?), ?) WHERE id = ?";
+
+    // Các cập nhật còn lại gán lại updated_at để không tính là sửa truyện
+    private static final String WORD_COUNT_CHANGED = "UPDATE stories SET total_word_count = total_word_count + ?, "
+            + "updated_at = updated_at WHERE id = ?";
+
+    private static final String CHAPTER_REMOVED = "UPDATE stories SET chapter_count = GREATEST(chapter_count - 1, 0), "
+            + "total_word_count = GREATEST(total_word_count - ?, 0), "
+            + "latest_chapter_number = (SELECT MAX(c.chapter_number) FROM chapters c WHERE c.story_id = ?), "
+            + "updated_at = updated_at WHERE id = ?";
+
+    // Giá trị đúng của các cột thống kê chương cho một khoảng id truyện
+    private static final String ACTUAL_CHAPTER_STATS = "FROM stories s "
+            + "LEFT JOIN (SELECT story_id, COUNT(*) AS chapter_count, COALESCE(SUM(word_count), 0) AS total_word_count, "
+            + "MAX(chapter_number) AS latest_chapter_number FROM chapters WHERE story_id BETWEEN ? AND ? "
+            + "GROUP BY story_id) c ON c.story_id = s.id ";
+
+    private static final String CHAPTER_DRIFT = "s.chapter_count <> COALESCE(c.chapter_count, 0) "
+            + "OR s.total_word_count <> COALESCE(c.total_word_count, 0) "
+            + "OR NOT (s.latest_chapter_number <=> c.latest_chapter_number)";
+
+    private static final String FIND_CHAPTER_DRIFT = "SELECT s.id " + ACTUAL_CHAPTER_STATS
+            + "WHERE s.id BETWEEN ? AND ? AND (" + CHAPTER_DRIFT + ")";
+
+    private static final String FIX_CHAPTER_DRIFT = "UPDATE " + ACTUAL_CHAPTER_STATS.substring("FROM ".length())
+            + "SET s.chapter_count = COALESCE(c.chapter_count, 0), "
+            + "s.total_word_count = COALESCE(c.total_word_count, 0), "
+            + "s.latest_chapter_number = c.latest_chapter_number, "
+            + "s.updated_at = s.updated_at "
+            + "WHERE s.id BETWEEN ? AND ? AND (" + CHAPTER_DRIFT + ")";
+
+    private static final String RATING_CHANGED = "UPDATE story_rating_stats SET rating_sum = rating_sum + ?, "
+            + "%s = %s - 1, %s = %s + 1 WHERE story_id = ?";
+
+    private static final String RATING_REMOVED = "UPDATE story_rating_stats SET rating_count = rating_count - 1, "
+            + "rating_sum = rating_sum - ?, %s = %s - 1 WHERE story_id = ?";
+
+    // Chép số lượt/trung bình/điểm Bayes từ story_rating_stats sang stories
+    private static final String SYNC_RATING = "UPDATE stories s JOIN story_rating_stats t ON t.story_id = s.id "
+            + "SET s.rating_count = t.rating_count, "
+            + "s.average_rating = IF(t.rating_count > 0, t.rating_sum / t.rating_count, 0), "
+            + "s.bayesian_rating = (t.rating_sum + ? * ?) / (t.rating_count + ?), "
+            + "s.updated_at = s.updated_at WHERE s.id = ?";
+
+    private static final String RECOUNT_RATINGS = "INSERT INTO story_rating_stats "
+            + "(story_id, rating_count, rating_sum, rating_1, rating_2, rating_3, rating_4, rating_5) "
+            + "SELECT ?, COUNT(*), COALESCE(SUM(rating), 0), COALESCE(SUM(rating = 1), 0), COALESCE(SUM(rating = 2), 0), "
+            + "COALESCE(SUM(rating = 3), 0), COALESCE(SUM(rating = 4), 0), COALESCE(SUM(rating = 5), 0) "
+            + "FROM ratings WHERE story_id = ? "
+            + "ON DUPLICATE KEY UPDATE rating_count = VALUES(rating_count), rating_sum = VALUES(rating_sum), "
+            + "rating_1 = VALUES(rating_1), rating_2 = VALUES(rating_2), rating_3 = VALUES(rating_3), "
+            + "rating_4 = VALUES(rating_4), rating_5 = VALUES(rating_5)";
+
+    // Truyện trong khoảng id có story_rating_stats hoặc stories.rating_count khác với bảng ratings
+    private static final String FIND_RATING_DRIFT = "SELECT s.id FROM stories s "
+            + "LEFT JOIN story_rating_stats t ON t.story_id = s.id "
+            + "LEFT JOIN (SELECT story_id, COUNT(*) AS rating_count, SUM(rating) AS rating_sum, "
+            + "SUM(rating = 1) AS rating_1, SUM(rating = 2) AS rating_2, SUM(rating = 3) AS rating_3, "
+            + "SUM(rating = 4) AS rating_4, SUM(rating = 5) AS rating_5 FROM ratings "
+            + "WHERE story_id BETWEEN ? AND ? GROUP BY story_id) r ON r.story_id = s.id "
+            + "WHERE s.id BETWEEN ? AND ? AND ("
+            + "s.rating_count <> COALESCE(r.rating_count, 0) "
+            + "OR COALESCE(t.rating_count, 0) <> COALESCE(r.rating_count, 0) "
+            + "OR COALESCE(t.rating_sum, 0) <> COALESCE(r.rating_sum, 0) "
+            + "OR COALESCE(t.rating_1, 0) <> COALESCE(r.rating_1, 0) "
+            + "OR COALESCE(t.rating_2, 0) <> COALESCE(r.rating_2, 0) "
+            + "OR COALESCE(t.rating_3, 0) <> COALESCE(r.rating_3, 0) "
+            + "OR COALESCE(t.rating_4, 0) <> COALESCE(r.rating_4, 0) "
+            + "OR COALESCE(t.rating_5, 0) <> COALESCE(r.rating_5, 0))";
+
+    // Điểm Bayes phụ thuộc điểm trung bình toàn hệ thống nên cần tính lại khi điểm đó đổi
+    private static final String REFRESH_BAYESIAN = "UPDATE stories s JOIN story_rating_stats t ON t.story_id = s.id "
+            + "SET s.bayesian_rating = (t.rating_sum + ? * ?) / (t.rating_count + ?), s.updated_at = s.updated_at "
+            + "WHERE s.id BETWEEN ? AND ? AND s.bayesian_rating <> ROUND((t.rating_sum + ? * ?) / (t.rating_count + ?), 4)";
+
+    private static final String GLOBAL_RATING = "SELECT SUM(rating_sum) / NULLIF(SUM(rating_count), 0) "
+            + "FROM story_rating_stats";
+
+    private static final String FIND_RATING_STATS = "SELECT t.rating_count, t.rating_sum, t.rating_1, t.rating_2, "
+            + "t.rating_3, t.rating_4, t.rating_5, s.bayesian_rating "
+            + "FROM story_rating_stats t JOIN stories s ON s.id = t.story_id WHERE t.story_id = ?";
+
+    // Lượt đọc theo ngày, tổng hợp từ reading_history (ReadingHistoryPartitionManager)
+    private static final String FIND_DAILY_READS = "SELECT read_date, read_count, reader_count FROM story_daily_reads "
+            + "WHERE story_id = ? AND read_date >= ? ORDER BY read_date";
+
+    // Điểm trung bình dùng khi chưa có đánh giá nào
+    private static final double DEFAULT_PRIOR_MEAN = 3.0;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Value("${app.stories.stats.reconcile-batch-size:1000}")
+    private int reconcileBatchSize;
+
+    // m trong công thức Bayes: số lượt đánh giá "ảo" ở mức điểm trung bình toàn hệ thống
+    private final int minVotes;
+
+    // C trong công thức Bayes: cấu hình cố định, hoặc <= 0 để lấy trung bình toàn hệ thống
+    private final double configuredPriorMean;
+
+    private volatile double priorMean = DEFAULT_PRIOR_MEAN;
+
+    public StoryStatsService(
+            @Value("${app.ratings.bayesian.min-votes:10}") int minVotes,
+            @Value("${app.ratings.bayesian.prior-mean:0}") double configuredPriorMean) {
+        this.minVotes = Math.max(1, minVotes);
+        this.configuredPriorMean = configuredPriorMean;
+        if (configuredPriorMean > 0) {
+            this.priorMean = configuredPriorMean;
+        }
+    }
+
+    /**
+     * Một chương mới được thêm vào truyện
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void chapterAdded(Long storyId, Integer chapterNumber, Integer wordCount) {
+        int number = chapterNumber == null ? 0 : chapterNumber;
+        jdbcTemplate.update(CHAPTER_ADDED, words(wordCount), number, number, storyId);
+        eventPublisher.publishEvent(new StoryChangedEvent(storyId, false));
+    }
+
+    /**
+     * Số từ của một chương thay đổi {@code delta} (sửa nội dung)
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void wordCountChanged(Long storyId, long delta) {
+        if (delta != 0) {
+            jdbcTemplate.update(WORD_COUNT_CHANGED, delta, storyId);
+        }
+    }
+
+    /**
+     * Một chương đã bị xóa (chương phải đã được flush khỏi bảng chapters trước khi gọi)
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void chapterRemoved(Long storyId, Integer wordCount) {
+        jdbcTemplate.update(CHAPTER_REMOVED, words(wordCount), storyId, storyId);
+        eventPublisher.publishEvent(new StoryChangedEvent(storyId, false));
+    }
+
+    /**
+     * Tính lại thống kê chương của một truyện (khi chương bị sửa số thứ tự, đổi truyện...)
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void recalculate(Long storyId) {
+        if (jdbcTemplate.update(FIX_CHAPTER_DRIFT, storyId, storyId, storyId, storyId) > 0) {
+            eventPublisher.publishEvent(new StoryChangedEvent(storyId, false));
+        }
+    }
+
+    /**
+     * User đánh giá truyện lần đầu với {@code value} sao
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void ratingAdded(Long storyId, int value) {
+        String column = histogramColumn(value);
+        jdbcTemplate.update("INSERT INTO story_rating_stats (story_id, rating_count, rating_sum, " + column + ") "
+                + "VALUES (?, 1, ?, 1) ON DUPLICATE KEY UPDATE rating_count = rating_count + 1, "
+                + "rating_sum = rating_sum + VALUES(rating_sum), " + column + " = " + column + " + 1",
+                storyId, value);
+        syncRating(storyId);
+    }
+
+    /**
+     * User đổi đánh giá từ {@code previous} sang {@code value} sao
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void ratingChanged(Long storyId, int previous, int value) {
+        if (previous == value) {
+            return;
+        }
+        String from = histogramColumn(previous);
+        String to = histogramColumn(value);
+        jdbcTemplate.update(String.format(RATING_CHANGED, from, from, to, to), value - previous, storyId);
+        syncRating(storyId);
+    }
+
+    /**
+     * User xóa đánh giá {@code previous} sao
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void ratingRemoved(Long storyId, int previous) {
+        String column = histogramColumn(previous);
+        jdbcTemplate.update(String.format(RATING_REMOVED, column, column), previous, storyId);
+        syncRating(storyId);
+    }
+
+    /**
+     * Thống kê đánh giá của một truyện (một lần tra theo khóa chính)
+     */
+    public RatingStats getRatingStats(Long storyId) {
+        List<RatingStats> rows = jdbcTemplate.query(FIND_RATING_STATS, (rs, rowNum) -> {
+            long count = rs.getLong("rating_count");
+            long sum = rs.getLong("rating_sum");
+            List<Integer> histogram = List.of(rs.getInt("rating_1"), rs.getInt("rating_2"), rs.getInt("rating_3"),
+                    rs.getInt("rating_4"), rs.getInt("rating_5"));
+            double bayesian = count > 0 ? rs.getDouble("bayesian_rating") : 0;
+            return new RatingStats(storyId, count, count > 0 ? (double) sum / count : 0, bayesian, histogram);
+        }, storyId);
+        return rows.isEmpty() ? RatingStats.empty(storyId) : rows.get(0);
+    }
+
+    /**
+     * Lượt đọc theo ngày của truyện từ ngày {@code from} (UTC); ngày không có lượt đọc không có dòng
+     */
+    public List<StoryDailyReads> getDailyReads(Long storyId, LocalDate from) {
+        return jdbcTemplate.query(FIND_DAILY_READS, (rs, rowNum) -> new StoryDailyReads(
+                rs.getObject("read_date", LocalDate.class), rs.getInt("read_count"), rs.getInt("reader_count")),
+                storyId, from);
+    }
+
+    public double getPriorMean() {
+        return priorMean;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadPriorMean() {
+        try {
+            refreshPriorMean();
+        } catch (RuntimeException e) {
+            log.warn("Không thể đọc điểm đánh giá trung bình toàn hệ thống, dùng {}", priorMean, e);
+        }
+    }
+
+    /**
+     * Đối soát thống kê của mọi truyện theo từng khoảng id, chỉ ghi những truyện bị lệch
+     */
+    @Scheduled(initialDelayString = "${app.stories.stats.reconcile-initial-delay-ms:300000}",
+            fixedDelayString = "${app.stories.stats.reconcile-interval-ms:3600000}")
+    public void reconcile() {
+        Long maxId = jdbcTemplate.queryForObject("SELECT MAX(id) FROM stories", Long.class);
+        if (maxId == null) {
+            return;
+        }
+        refreshPriorMean();
+
+        int fixed = 0;
+        for (long from = 1; from <= maxId; from += reconcileBatchSize) {
+            long to = from + reconcileBatchSize - 1;
+            try {
+                fixed += reconcileRange(from, to);
+            } catch (RuntimeException e) {
+                log.error("Không thể đối soát thống kê truyện id {}-{}", from, to, e);
+            }
+        }
+        if (fixed > 0) {
+            log.warn("Đã sửa thống kê bị lệch của {} truyện", fixed);
+        }
+    }
+
+    private int reconcileRange(long from, long to) {
+        List<Long> chapterDrift = jdbcTemplate.queryForList(FIND_CHAPTER_DRIFT, Long.class, from, to, from, to);
+        if (!chapterDrift.isEmpty()) {
+            jdbcTemplate.update(FIX_CHAPTER_DRIFT, from, to, from, to);
+        }
+
+        List<Long> ratingDrift = jdbcTemplate.queryForList(FIND_RATING_DRIFT, Long.class, from, to, from, to);
+        for (Long storyId : ratingDrift) {
+            jdbcTemplate.update(RECOUNT_RATINGS, storyId, storyId);
+            jdbcTemplate.update(SYNC_RATING, minVotes, priorMean, minVotes, storyId);
+        }
+
+        double prior = priorMean;
+        jdbcTemplate.update(REFRESH_BAYESIAN, minVotes, prior, minVotes, from, to, minVotes, prior, minVotes);
+
+        for (Long storyId : chapterDrift) {
+            eventPublisher.publishEvent(new StoryChangedEvent(storyId, false));
+        }
+        for (Long storyId : ratingDrift) {
+            if (!chapterDrift.contains(storyId)) {
+                eventPublisher.publishEvent(new StoryChangedEvent(storyId, false));
+            }
+        }
+        return chapterDrift.size() + ratingDrift.size();
+    }
+
+    private void refreshPriorMean() {
+        if (configuredPriorMean > 0) {
+            return;
+        }
+        Double mean = jdbcTemplate.queryForObject(GLOBAL_RATING, Double.class);
+        priorMean = mean == null ? DEFAULT_PRIOR_MEAN : mean;
+    }
+
+    private void syncRating(Long storyId) {
+        jdbcTemplate.update(SYNC_RATING, minVotes, priorMean, minVotes, storyId);
+        eventPublisher.publishEvent(new StoryChangedEvent(storyId, false));
+    }
+
+    /**
+     * Cột phân bố của mức {@code value} sao (giá trị được kiểm tra trước khi ghép vào SQL)
+     */
+    private static String histogramColumn(int value) {
+        if (value < 1 || value > 5) {
+            throw new IllegalArgumentException("Điểm đánh giá phải từ 1 đến 5: " + value);
+        }
+        return "rating_" + value;
+    }
+
+    private static long words(Integer wordCount) {
+        return wordCount == null ? 0 : wordCount;
+    }
+}
@@ -0,0 +1,269 @@
+package org.qyn.qynnovel.services;
+
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.qyn.qynnovel.components.StorySummaryCache;
+import org.qyn.qynnovel.dto.StorySummary;
+import org.qyn.qynnovel.dto.TrendingEntry;
+import org.qyn.qynnovel.events.StoryActivityEvent;
+import org.qyn.qynnovel.events.StoryChangedEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+/**
+ * Truyện thịnh hành: điểm tính từ lượt đọc/thích gần đây, giảm dần theo thời gian.
+ *
+ * Mỗi truyện có một vòng (ring buffer) các bộ đếm theo khung thời gian cố định
+ * (mặc định 24 khung × 15 phút). Điểm là tổng các khung nhân hệ số giảm theo hàm mũ
+ * theo tuổi của khung (chu kỳ bán rã app.trending.half-life-minutes), nên truyện cũ
+ * nhiều view không chiếm bảng mãi. Truyện không có hoạt động trong cả cửa sổ bị
+ * bỏ khỏi bộ nhớ, và số truyện được theo dõi có giới hạn.
+ *
+ * Lượt đọc/thích trên luồng request chỉ được cộng vào bộ đếm chờ theo truyện; lần
+ * publish (một luồng, chu kỳ vài giây) đưa chúng vào các khung rồi tính lại và publish
+ * danh sách thịnh hành.
+ */
+@Service
+public class TrendingService {
+
+    private static final Logger log = LoggerFactory.getLogger(TrendingService.class);
+
+    /**
+     * Một truyện trong danh sách đã publish
+     */
+    record Scored(long storyId, double score) {
+    }
+
+    @Autowired
+    private StorySummaryCache summaryCache;
+
+    private final long bucketMillis;
+    private final int bucketCount;
+    private final int likeWeight;
+    private final int maxStories;
+    private final int capacity;
+
+    // decay[k]: hệ số của khung cách khung hiện tại k khung
+    private final double[] decay;
+
+    private final Clock clock;
+
+    private final ConcurrentHashMap<Long, StoryCounter> counters = new ConcurrentHashMap<>();
+
+    // Điểm (lượt đọc + lượt thích × trọng số) chưa đưa vào khung, gom theo truyện
+    private final ConcurrentHashMap<Long, Long> pending = new ConcurrentHashMap<>();
+    private volatile List<Scored> snapshot = List.of();
+    private volatile boolean overCapacityLogged;
+
+    @Autowired
+    public TrendingService(
+            @Value("${app.trending.bucket-minutes:15}") int bucketMinutes,
+            @Value("${app.trending.buckets:24}") int bucketCount,
+            @Value("${app.trending.half-life-minutes:120}") double halfLifeMinutes,
+            @Value("${app.trending.like-weight:5}") int likeWeight,
+            @Value("${app.trending.max-stories:200000}") int maxStories,
+            @Value("${app.trending.capacity:500}") int capacity) {
+        this(bucketMinutes, bucketCount, halfLifeMinutes, likeWeight, maxStories, capacity, Clock.systemUTC());
+    }
+
+    TrendingService(int bucketMinutes, int bucketCount, double halfLifeMinutes, int likeWeight, int maxStories,
+            int capacity, Clock clock) {
+        this.clock = clock;
+        this.bucketMillis = bucketMinutes * 60_000L;
+        this.bucketCount = bucketCount;
+        this.likeWeight = likeWeight;
+        this.maxStories = maxStories;
+        this.capacity = capacity;
+        this.decay = new double[bucketCount];
+        for (int k = 0; k < bucketCount; k++) {
+            decay[k] = Math.pow(0.5, k * (double) bucketMinutes / halfLifeMinutes);
+        }
+    }
+
+    /**
+     * Bộ đếm theo khung của một truyện. Khung cũ được xóa lười khi có lượt ghi mới;
+     * khi đọc, các khung sau lần ghi cuối được coi là 0.
+     */
+    private final class StoryCounter {
+        private final int[] buckets = new int[bucketCount];
+        private long lastEpoch;
+
+        StoryCounter(long epoch) {
+            this.lastEpoch = epoch;
+        }
+
+        synchronized void add(long epoch, int amount) {
+            if (epoch > lastEpoch) {
+                long steps = Math.min(epoch - lastEpoch, bucketCount);
+                for (long i = 1; i <= steps; i++) {
+                    buckets[slot(lastEpoch + i)] = 0;
+                }
+                lastEpoch = epoch;
+            }
+            if (epoch > lastEpoch - bucketCount) {
+                buckets[slot(epoch)] += amount;
+            }
+        }
+
+        synchronized double score(long epoch) {
+            double score = 0;
+            for (int k = 0; k < bucketCount; k++) {
+                long bucketEpoch = epoch - k;
+                if (bucketEpoch <= lastEpoch && bucketEpoch > lastEpoch - bucketCount) {
+                    score += buckets[slot(bucketEpoch)] * decay[k];
+                }
+            }
+            return score;
+        }
+
+        synchronized boolean isExpired(long epoch) {
+            return lastEpoch <= epoch - bucketCount;
+        }
+
+        private int slot(long epoch) {
+            return (int) Math.floorMod(epoch, (long) bucketCount);
+        }
+    }
+
+    /**
+     * Chạy trên luồng request: chỉ cộng vào bộ đếm chờ, khung được cập nhật khi publish
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onActivity(StoryActivityEvent event) {
+        if (event.delta() <= 0) {
+            return; // bỏ thích không làm giảm độ "nóng"
+        }
+        long amount = event.type() == StoryActivityEvent.Type.LIKE ? event.delta() * likeWeight : event.delta();
+        pending.merge(event.storyId(), amount, Long::sum);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onStoryChanged(StoryChangedEvent event) {
+        if (event.deleted()) {
+            counters.remove(event.storyId());
+        }
+    }
+
+    void record(Long storyId, int amount, long nowMillis) {
+        long epoch = nowMillis / bucketMillis;
+        StoryCounter counter = counters.get(storyId);
+        if (counter == null) {
+            if (counters.size() >= maxStories) {
+                if (!overCapacityLogged) {
+                    overCapacityLogged = true;
+                    log.warn("Đã theo dõi tối đa {} truyện thịnh hành, bỏ qua truyện mới đến lần dọn kế tiếp",
+                            maxStories);
+                }
+                return;
+            }
+            counter = counters.computeIfAbsent(storyId, id -> new StoryCounter(epoch));
+        }
+        counter.add(epoch, amount);
+    }
+
+    /**
+     * Tính lại điểm mọi truyện, giữ top theo capacity và bỏ các truyện đã hết hoạt động
+     */
+    @Scheduled(fixedDelayString = "${app.trending.publish-interval-ms:5000}")
+    public synchronized void publish() {
+        long nowMillis = clock.millis();
+        applyPending(nowMillis);
+        publish(nowMillis);
+    }
+
+    /**
+     * Đưa điểm đang chờ vào khung hiện tại (remove() nguyên tử nên không mất lượt nào)
+     */
+    private void applyPending(long nowMillis) {
+        for (Long storyId : pending.keySet()) {
+            Long amount = pending.remove(storyId);
+            if (amount != null && amount > 0) {
+                record(storyId, (int) Math.min(Integer.MAX_VALUE, amount), nowMillis);
+            }
+        }
+    }
+
+    void publish(long nowMillis) {
+        long epoch = nowMillis / bucketMillis;
+        Comparator<Scored> byScore = Comparator.comparingDouble(Scored::score)
+                .thenComparing(Comparator.comparingLong(Scored::storyId).reversed());
+        PriorityQueue<Scored> top = new PriorityQueue<>(capacity + 1, byScore);
+
+        for (Map.Entry<Long, StoryCounter> entry : counters.entrySet()) {
+            StoryCounter counter = entry.getValue();
+            if (counter.isExpired(epoch)) {
+                counters.remove(entry.getKey(), counter);
+                continue;
+            }
+            double score = counter.score(epoch);
+            if (score <= 0) {
+                continue;
+            }
+            top.offer(new Scored(entry.getKey(), score));
+            if (top.size() > capacity) {
+                top.poll();
+            }
+        }
+        overCapacityLogged = false;
+
+        List<Scored> ranked = new ArrayList<>(top);
+        ranked.sort(byScore.reversed());
+        snapshot = List.copyOf(ranked);
+
+        if (!ranked.isEmpty()) {
+            try {
+                summaryCache.getAll(ranked.stream().map(Scored::storyId).toList());
+            } catch (RuntimeException e) {
+                log.warn("Không thể nạp trước thông tin truyện thịnh hành", e);
+            }
+        }
+    }
+
+    /**
+     * Trang {@code page} (bắt đầu từ 0) của danh sách thịnh hành gần nhất
+     */
+    public List<TrendingEntry> getPage(int page, int size) {
+        List<Scored> current = snapshot;
+        int from = page * size;
+        if (page < 0 || size <= 0 || from >= current.size()) {
+            return List.of();
+        }
+        List<Scored> slice = current.subList(from, Math.min(from + size, current.size()));
+        Map<Long, StorySummary> summaries = summaryCache.getAll(slice.stream().map(Scored::storyId).toList());
+
+        List<TrendingEntry> result = new ArrayList<>(slice.size());
+        for (int i = 0; i < slice.size(); i++) {
+            StorySummary summary = summaries.get(slice.get(i).storyId());
+            if (summary != null) {
+                result.add(new TrendingEntry(from + i + 1, slice.get(i).score(), summary));
+            }
+        }
+        return result;
+    }
+
+    List<Scored> snapshot() {
+        return snapshot;
+    }
+
+    public int getSize() {
+        return snapshot.size();
+    }
+
+    /**
+     * Số truyện đang được theo dõi bộ đếm
+     */
+    public int getTrackedCount() {
+        return counters.size();
+    }
+}
@@ -0,0 +1,46 @@
+package org.qyn.qynnovel.services;
+
+import java.time.Duration;
+import java.util.Optional;
+
+import org.qyn.qynnovel.repositories.UserRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.security.core.Authentication;
+import org.springframework.stereotype.Service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+/**
+ * Xác định user của request từ security context (thay vì tin header X-User-ID do client gửi)
+ */
+@Service
+public class UserService {
+
+    @Autowired
+    private UserRepository userRepository;
+
+    // username → id; username không đổi nên chỉ cần hết hạn để bỏ user đã bị xóa
+    private final Cache<String, Long> idsByUsername = Caffeine.newBuilder()
+            .maximumSize(100_000)
+            .expireAfterWrite(Duration.ofMinutes(10))
+            .build();
+
+    /**
+     * Id của user đã đăng nhập; rỗng nếu chưa đăng nhập hoặc tài khoản không có trong bảng users
+     */
+    public Optional<Long> currentUserId(Authentication authentication) {
+        if (authentication == null || !authentication.isAuthenticated()) {
+            return Optional.empty();
+        }
+        String username = authentication.getName();
+        Long userId = idsByUsername.getIfPresent(username);
+        if (userId == null) {
+            userId = userRepository.findIdByUsername(username).orElse(null);
+            if (userId != null) {
+                idsByUsername.put(username, userId);
+            }
+        }
+        return Optional.ofNullable(userId);
+    }
+}
@@ -0,0 +1,103 @@
+package org.qyn.qynnovel.services;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.qyn.qynnovel.events.StoryActivityEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Gom lượt xem chương/truyện trong bộ nhớ và ghi xuống DB theo lô.
+ *
+ * Mỗi lượt đọc chỉ cộng dồn vào ConcurrentHashMap (khóa theo từng bin), không
+ * mở transaction. Định kỳ các bộ đếm được lấy ra bằng remove() (nguyên tử,
+ * không mất lượt xem) và ghi bằng batch "UPDATE ... SET views = views + ?".
+ */
+@Service
+public class ViewCountService {
+
+    private static final Logger log = LoggerFactory.getLogger(ViewCountService.class);
+
+    // Gán lại updated_at để ON UPDATE CURRENT_TIMESTAMP không coi lượt xem là một lần sửa
+    // (updated_at dùng cho ETag và danh sách truyện mới cập nhật)
+    private static final String UPDATE_CHAPTER_VIEWS = "UPDATE chapters SET views = views + ?, updated_at = updated_at WHERE id = ?";
+    private static final String UPDATE_STORY_VIEWS = "UPDATE stories SET total_views = total_views + ?, updated_at = updated_at WHERE id = ?";
+
+    private final ConcurrentHashMap<Long, Long> pendingChapterViews = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Long, Long> pendingStoryViews = new ConcurrentHashMap<>();
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    /**
+     * Ghi nhận một lượt đọc chương (và lượt xem của truyện chứa chương đó)
+     */
+    public void recordChapterView(Long chapterId, Long storyId) {
+        pendingChapterViews.merge(chapterId, 1L, Long::sum);
+        pendingStoryViews.merge(storyId, 1L, Long::sum);
+        eventPublisher.publishEvent(StoryActivityEvent.view(storyId));
+    }
+
+    /**
+     * Ghi các lượt xem đang chờ xuống DB, chạy theo chu kỳ app.views.flush-interval-ms
+     */
+    @Scheduled(fixedDelayString = "${app.views.flush-interval-ms:5000}")
+    public synchronized void flush() {
+        flushCounters(pendingChapterViews, UPDATE_CHAPTER_VIEWS);
+        flushCounters(pendingStoryViews, UPDATE_STORY_VIEWS);
+    }
+
+    /**
+     * Lượt xem của truyện đã ghi nhận nhưng chưa ghi xuống DB
+     */
+    public long getPendingStoryViews(Long storyId) {
+        return pendingStoryViews.getOrDefault(storyId, 0L);
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        log.info("Ghi {} lượt xem chương / {} lượt xem truyện còn lại trước khi tắt",
+                pendingChapterViews.size(), pendingStoryViews.size());
+        flush();
+    }
+
+    private void flushCounters(ConcurrentHashMap<Long, Long> pending, String sql) {
+        if (pending.isEmpty()) {
+            return;
+        }
+
+        List<Object[]> batch = new ArrayList<>(pending.size());
+        for (Long id : pending.keySet()) {
+            Long delta = pending.remove(id);
+            if (delta != null && delta > 0) {
+                batch.add(new Object[] { delta, id });
+            }
+        }
+
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        try {
+            jdbcTemplate.batchUpdate(sql, batch);
+        } catch (RuntimeException e) {
+            // Trả lại bộ đếm để lần flush sau ghi tiếp, không làm mất lượt xem
+            log.error("Không thể ghi {} bộ đếm lượt xem, sẽ thử lại", batch.size(), e);
+            for (Object[] row : batch) {
+                pending.merge((Long) row[1], (Long) row[0], Long::sum);
+            }
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package org.qyn.qynnovel.storage;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+import org.qyn.qynnovel.components.ContentEncoder.Encoding;
+
+/**
+ * Nơi lưu nội dung chương (bản gốc UTF-8 và các bản nén sẵn), chọn theo app.storage.backend:
+ * files (mỗi chương một file, mặc định) hoặc segments (gộp vào các file segment lớn).
+ * ChapterStorageService lo cache, nén và phát sự kiện; store chỉ đọc/ghi dữ liệu.
+ */
+public interface ChapterContentStore {
+
+    /**
+     * Ghi bản gốc và các bản nén của chương, thay thế toàn bộ bản cũ
+     */
+    void write(long storyId, long chapterId, byte[] content, Map<Encoding, byte[]> variants) throws IOException;
+
+    /**
+     * Nội dung gốc của chương; IOException nếu chương chưa có nội dung
+     */
+    String read(long storyId, long chapterId) throws IOException;
+
+    /**
+     * Nội dung để stream ra response: bản nén đầu tiên trong {@code accepted} có sẵn,
+     * nếu không có thì bản gốc
+     */
+    StoredContent open(long storyId, long chapterId, List<Encoding> accepted) throws IOException;
+
+    /**
+     * Metadata của bản mà {@link #open} sẽ chọn, không mở hay đọc dữ liệu;
+     * IOException nếu chương chưa có nội dung
+     */
+    ContentStat stat(long storyId, long chapterId, List<Encoding> accepted) throws IOException;
+
+    void delete(long storyId, long chapterId) throws IOException;
+
+    /**
+     * Duyệt mọi chương đang có nội dung (không đọc nội dung); một chương có thể được
+     * duyệt hai lần nếu đang được chuyển chỗ
+     */
+    void forEachChapter(BiConsumer<Long, Long> visitor) throws IOException;
+}
@@ -0,0 +1,54 @@
+package org.qyn.qynnovel.storage;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Cách sắp xếp file nội dung chương trong thư mục storage: đường dẫn của một chương
+ * và cách duyệt lại mọi chương đang có (để dựng index, chuyển layout).
+ */
+public interface ChapterStorageLayout {
+
+    String FILE_SUFFIX = ".txt";
+
+    @FunctionalInterface
+    interface ChapterFileVisitor {
+        void visit(long storyId, long chapterId, Path file) throws IOException;
+    }
+
+    String name();
+
+    /**
+     * File nội dung gốc của chương (các bản nén nằm cạnh file này)
+     */
+    Path chapterFile(Path root, long storyId, long chapterId);
+
+    /**
+     * Duyệt mọi file nội dung gốc theo layout này (không đọc nội dung)
+     */
+    void forEachChapter(Path root, ChapterFileVisitor visitor) throws IOException;
+
+    /**
+     * Layout theo tên cấu hình: legacy hoặc hashed
+     */
+    static ChapterStorageLayout named(String name) {
+        return switch (name.trim().toLowerCase()) {
+            case LegacyChapterLayout.NAME -> new LegacyChapterLayout();
+            case HashedChapterLayout.NAME -> new HashedChapterLayout();
+            default -> throw new IllegalArgumentException("Layout lưu trữ chương không hợp lệ: " + name);
+        };
+    }
+
+    static Long parseId(String name) {
+        try {
+            return Long.valueOf(name);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    static Long parseChapterFileId(Path file) {
+        String name = file.getFileName().toString();
+        return name.endsWith(FILE_SUFFIX) ? parseId(name.substring(0, name.length() - FILE_SUFFIX.length())) : null;
+    }
+}
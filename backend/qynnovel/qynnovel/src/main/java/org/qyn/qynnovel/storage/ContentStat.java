@@ -0,0 +1,11 @@
+package org.qyn.qynnovel.storage;
+
+/**
+ * Metadata của bản nội dung mà ChapterContentStore.open sẽ chọn (kiểu nén, độ dài, thời
+ * điểm ghi), lấy mà không mở dữ liệu: đủ để dựng ETag / Last-Modified và trả 304
+ */
+public record ContentStat(
+        String contentEncoding,
+        long length,
+        long lastModified) {
+}
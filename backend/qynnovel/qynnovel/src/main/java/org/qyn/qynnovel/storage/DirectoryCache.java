@@ -0,0 +1,36 @@
+package org.qyn.qynnovel.storage;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+/**
+ * Nhớ các thư mục đã biết là tồn tại, để lần ghi tiếp theo vào cùng thư mục không phải
+ * gọi Files.createDirectories (mỗi lần là vài lệnh stat/mkdir trên từng cấp thư mục).
+ * Thư mục bị xóa từ bên ngoài thì người gọi {@link #forget} rồi thử lại.
+ */
+public class DirectoryCache {
+
+    private final Cache<Path, Boolean> existing;
+
+    public DirectoryCache(long maxEntries) {
+        this.existing = Caffeine.newBuilder()
+                .maximumSize(maxEntries)
+                .build();
+    }
+
+    public void ensure(Path directory) throws IOException {
+        if (existing.getIfPresent(directory) != null) {
+            return;
+        }
+        Files.createDirectories(directory);
+        existing.put(directory, Boolean.TRUE);
+    }
+
+    public void forget(Path directory) {
+        existing.invalidate(directory);
+    }
+}
@@ -0,0 +1,434 @@
+package org.qyn.qynnovel.storage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryNotEmptyException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiConsumer;
+
+import org.qyn.qynnovel.components.ContentEncoder.Encoding;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Component;
+
+/**
+ * Lưu nội dung chương dạng file: mỗi chương một file, các bản nén sẵn nằm cạnh file gốc.
+ *
+ * Vị trí file do ChapterStorageLayout quyết định (app.storage.layout.name, mặc định
+ * chia nhánh theo hash). Khi đặt app.storage.layout.previous, các chương chưa chuyển
+ * vẫn được đọc từ layout cũ và một tác vụ nền chuyển dần file sang layout mới; đọc/ghi
+ * vẫn chạy bình thường trong lúc chuyển. Chuyển xong thì ghi file đánh dấu vào thư mục
+ * lưu trữ: từ đó (kể cả sau khi khởi động lại) không tra layout cũ và không quét lại nữa.
+ */
+@Component
+@ConditionalOnProperty(name = "app.storage.backend", havingValue = "files", matchIfMissing = true)
+public class FileChapterContentStore implements ChapterContentStore {
+
+    private static final Logger log = LoggerFactory.getLogger(FileChapterContentStore.class);
+
+    // Khóa theo chapterId (chia sọc) giữa lần ghi/xóa và lần chuyển file của cùng chương
+    private static final int LOCK_STRIPES = 64;
+
+    // File đánh dấu đã chuyển xong từ layout cũ sang layout hiện tại (theo tên hai layout)
+    private static final String MIGRATED_MARKER = ".layout-migrated-%s-to-%s";
+
+    // Đuôi file tạm khi ghi (không khớp đuôi file chương nên không bị duyệt như một chương)
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    private final Path root;
+    private final ChapterStorageLayout layout;
+    private final DirectoryCache directories;
+    private final ReentrantLock[] locks = new ReentrantLock[LOCK_STRIPES];
+
+    // Layout cũ còn có thể chứa file chưa chuyển (null nếu không có)
+    private volatile ChapterStorageLayout previousLayout;
+
+    @Value("${app.storage.layout.migrate-on-startup:true}")
+    private boolean migrateOnStartup;
+
+    @Value("${app.storage.layout.migration-pause-ms:100}")
+    private long migrationPauseMillis;
+
+    public FileChapterContentStore(
+            @Value("${app.storage.path:./storage}") String storagePath,
+            @Value("${app.storage.layout.name:hashed}") String layoutName,
+            @Value("${app.storage.layout.previous:}") String previousLayoutName,
+            @Value("${app.storage.layout.directory-cache-size:100000}") long directoryCacheSize) {
+        this.root = Paths.get(storagePath);
+        this.layout = ChapterStorageLayout.named(layoutName);
+        ChapterStorageLayout previous = previousLayoutName.isBlank() ? null
+                : ChapterStorageLayout.named(previousLayoutName);
+        this.previousLayout = previous == null || previous.name().equals(layout.name())
+                || Files.exists(migratedMarker(previous)) ? null : previous;
+        this.directories = new DirectoryCache(directoryCacheSize);
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new ReentrantLock();
+        }
+    }
+
+    @Override
+    public void write(long storyId, long chapterId, byte[] content, Map<Encoding, byte[]> variants)
+            throws IOException {
+        Path filePath = layout.chapterFile(root, storyId, chapterId);
+        ReentrantLock lock = lockFor(chapterId);
+        lock.lock();
+        try {
+            write(filePath, content);
+            for (Encoding encoding : Encoding.values()) {
+                byte[] variant = variants.get(encoding);
+                if (variant != null) {
+                    write(variantFile(filePath, encoding), variant);
+                } else {
+                    // Bản nén của nội dung cũ (kiểu nén đã bị tắt) không còn đúng
+                    Files.deleteIfExists(variantFile(filePath, encoding));
+                }
+            }
+
+            // Bản ở layout cũ (nếu chưa chuyển) đã lỗi thời
+            ChapterStorageLayout previous = previousLayout;
+            if (previous != null) {
+                deleteFiles(previous.chapterFile(root, storyId, chapterId));
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public String read(long storyId, long chapterId) throws IOException {
+        Path filePath = locateChapterFile(storyId, chapterId);
+
+        try {
+            return Files.readString(filePath, StandardCharsets.UTF_8);
+        } catch (NoSuchFileException e) {
+            // File ở layout cũ có thể vừa được chuyển sang layout mới
+            Path relocated = layout.chapterFile(root, storyId, chapterId);
+            if (!relocated.equals(filePath) && Files.isRegularFile(relocated)) {
+                return Files.readString(relocated, StandardCharsets.UTF_8);
+            }
+            throw new IOException("Không tìm thấy file nội dung cho chương: " + chapterId, e);
+        }
+    }
+
+    @Override
+    public StoredContent open(long storyId, long chapterId, List<Encoding> accepted) throws IOException {
+        Path filePath = locateChapterFile(storyId, chapterId);
+        Path currentPath = layout.chapterFile(root, storyId, chapterId);
+
+        for (Encoding encoding : accepted) {
+            Path variant = variantFile(filePath, encoding);
+            if (Files.isRegularFile(variant)) {
+                return stored(variant, variantFile(currentPath, encoding), encoding.getToken());
+            }
+        }
+
+        if (!Files.isRegularFile(filePath)) {
+            throw new IOException("Không tìm thấy file nội dung cho chương: " + chapterId);
+        }
+        return stored(filePath, currentPath, null);
+    }
+
+    @Override
+    public ContentStat stat(long storyId, long chapterId, List<Encoding> accepted) throws IOException {
+        Path filePath = locateChapterFile(storyId, chapterId);
+        Path currentPath = layout.chapterFile(root, storyId, chapterId);
+
+        for (Encoding encoding : accepted) {
+            Path variant = variantFile(filePath, encoding);
+            if (Files.isRegularFile(variant)) {
+                return stat(variant, variantFile(currentPath, encoding), encoding.getToken());
+            }
+        }
+        return stat(filePath, currentPath, null);
+    }
+
+    @Override
+    public void delete(long storyId, long chapterId) throws IOException {
+        ReentrantLock lock = lockFor(chapterId);
+        lock.lock();
+        try {
+            deleteFiles(layout.chapterFile(root, storyId, chapterId));
+            ChapterStorageLayout previous = previousLayout;
+            if (previous != null) {
+                deleteFiles(previous.chapterFile(root, storyId, chapterId));
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void forEachChapter(BiConsumer<Long, Long> visitor) throws IOException {
+        layout.forEachChapter(root, (storyId, chapterId, file) -> visitor.accept(storyId, chapterId));
+        ChapterStorageLayout previous = previousLayout;
+        if (previous != null) {
+            previous.forEachChapter(root, (storyId, chapterId, file) -> visitor.accept(storyId, chapterId));
+        }
+    }
+
+    @Async
+    @EventListener(ApplicationReadyEvent.class)
+    public void migrateOnStartup() {
+        if (migrateOnStartup && previousLayout != null) {
+            migrateLayout();
+        }
+    }
+
+    /**
+     * Chuyển các file còn ở layout cũ sang layout hiện tại, từng chương một và nghỉ
+     * app.storage.layout.migration-pause-ms sau mỗi 1000 chương để không chiếm hết IO.
+     * Chạy lại được nhiều lần; chuyển hết thì ngừng tra layout cũ.
+     */
+    public synchronized void migrateLayout() {
+        ChapterStorageLayout previous = previousLayout;
+        if (previous == null) {
+            return;
+        }
+        log.info("Bắt đầu chuyển file nội dung chương từ layout {} sang {}", previous.name(), layout.name());
+        long started = System.currentTimeMillis();
+        long[] counts = new long[2]; // đã chuyển, lỗi
+        try {
+            previous.forEachChapter(root, (storyId, chapterId, file) -> {
+                try {
+                    relocate(storyId, chapterId, file);
+                } catch (IOException e) {
+                    counts[1]++;
+                    log.warn("Không thể chuyển file nội dung chương {}: {}", chapterId, e.getMessage());
+                    return;
+                }
+                if (++counts[0] % 1000 == 0 && migrationPauseMillis > 0) {
+                    pause();
+                }
+            });
+        } catch (IOException | RuntimeException e) {
+            log.error("Chuyển layout lưu trữ chương bị dừng sau {} chương, sẽ tiếp tục ở lần chạy sau", counts[0], e);
+            return;
+        }
+
+        if (counts[1] == 0) {
+            try {
+                directories.ensure(root);
+                Files.write(migratedMarker(previous), (previous.name() + " -> " + layout.name() + "\n")
+                        .getBytes(StandardCharsets.US_ASCII));
+            } catch (IOException e) {
+                // Lần khởi động sau sẽ quét lại layout cũ (không còn gì để chuyển)
+                log.warn("Không thể ghi file đánh dấu chuyển layout: {}", e.getMessage());
+            }
+            previousLayout = null;
+        }
+        log.info("Đã chuyển {} chương sang layout {} trong {} ms ({} lỗi)",
+                counts[0], layout.name(), System.currentTimeMillis() - started, counts[1]);
+    }
+
+    /**
+     * File chỉ được mở khi response bắt đầu stream. Nếu {@code file} ở layout cũ thì tác vụ
+     * chuyển layout có thể đã chuyển nó đi trong khoảng đó (chuyển nguyên file nên nội dung,
+     * độ dài không đổi): khi ấy mở bản ở {@code currentFile}. Stream đã mở thì không bị ảnh
+     * hưởng khi file được đổi tên hay bị ghi đè.
+     */
+    private static StoredContent stored(Path file, Path currentFile, String contentEncoding) throws IOException {
+        ContentStat stat = stat(file, currentFile, contentEncoding);
+        FileSystemResource resource = new StoredFileResource(file, file.equals(currentFile) ? null : currentFile,
+                stat.length());
+        return new StoredContent(resource, contentEncoding, stat.length(), stat.lastModified());
+    }
+
+    /**
+     * Độ dài và thời điểm ghi của file;
+     * file ở layout cũ vừa bị chuyển đi thì lấy của bản ở {@code currentFile}
+     */
+    private static ContentStat stat(Path file, Path currentFile, String contentEncoding) throws IOException {
+        BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(file, BasicFileAttributes.class);
+        } catch (NoSuchFileException e) {
+            if (file.equals(currentFile) || !Files.isRegularFile(currentFile)) {
+                throw new IOException("Không tìm thấy file nội dung: " + file.getFileName(), e);
+            }
+            attributes = Files.readAttributes(currentFile, BasicFileAttributes.class);
+        }
+        return new ContentStat(contentEncoding, attributes.size(), attributes.lastModifiedTime().toMillis());
+    }
+
+    /**
+     * File nội dung đã stat lúc tra: nếu file ở layout cũ vừa được chuyển đi thì mở bản ở
+     * {@code relocated}. Chương có thể được ghi lại (đổi tên đè file) sau khi stat: khi đó
+     * độ dài khác Content-Length đã gửi nên báo lỗi thay vì gửi sai số byte.
+     */
+    private static class StoredFileResource extends FileSystemResource {
+
+        private final Path relocated;
+        private final long length;
+
+        StoredFileResource(Path file, Path relocated, long length) {
+            super(file);
+            this.relocated = relocated;
+            this.length = length;
+        }
+
+        @Override
+        public InputStream getInputStream() throws IOException {
+            FileChannel channel;
+            try {
+                channel = FileChannel.open(getFile().toPath(), StandardOpenOption.READ);
+            } catch (NoSuchFileException e) {
+                if (relocated == null || !Files.isRegularFile(relocated)) {
+                    throw e;
+                }
+                channel = FileChannel.open(relocated, StandardOpenOption.READ);
+            }
+            if (channel.size() != length) {
+                channel.close();
+                throw new IOException("Nội dung chương vừa được ghi lại: " + getFilename());
+            }
+            return Channels.newInputStream(channel);
+        }
+
+        @Override
+        public long contentLength() {
+            return length;
+        }
+    }
+
+    private Path migratedMarker(ChapterStorageLayout previous) {
+        return root.resolve(String.format(MIGRATED_MARKER, previous.name(), layout.name()));
+    }
+
+    /**
+     * File gốc của chương: ở layout hiện tại, hoặc ở layout cũ nếu chưa được chuyển
+     */
+    private Path locateChapterFile(Long storyId, Long chapterId) {
+        Path filePath = layout.chapterFile(root, storyId, chapterId);
+        ChapterStorageLayout previous = previousLayout;
+        if (previous == null || Files.exists(filePath)) {
+            return filePath;
+        }
+        Path previousPath = previous.chapterFile(root, storyId, chapterId);
+        // Không có ở cả hai nơi (hoặc vừa được chuyển xong): dùng đường dẫn mới
+        return Files.exists(previousPath) ? previousPath : filePath;
+    }
+
+    private void relocate(long storyId, long chapterId, Path source) throws IOException {
+        Path target = layout.chapterFile(root, storyId, chapterId);
+        ReentrantLock lock = lockFor(chapterId);
+        lock.lock();
+        try {
+            if (!Files.exists(source)) {
+                return; // đã bị ghi đè hoặc xóa sau khi duyệt
+            }
+            if (Files.exists(target)) {
+                // Layout mới đã có bản mới hơn (ghi sau khi bắt đầu chuyển)
+                deleteFiles(source);
+                return;
+            }
+            directories.ensure(target.getParent());
+            // Bản nén chuyển trước, file gốc chuyển sau cùng: chương chỉ được đọc từ layout
+            // mới khi file gốc đã ở đó
+            for (Encoding encoding : Encoding.values()) {
+                Path variant = variantFile(source, encoding);
+                if (Files.exists(variant)) {
+                    Files.move(variant, variantFile(target, encoding), StandardCopyOption.ATOMIC_MOVE);
+                }
+            }
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            lock.unlock();
+        }
+        deleteEmptyDirectories(source.getParent(), 2);
+    }
+
+    /**
+     * Ghi file qua file tạm cùng thư mục (fsync rồi đổi tên nguyên tử đè lên file cũ) để
+     * request đang đọc không bao giờ thấy file ghi dở; tạo thư mục cha nếu chưa có (có
+     * cache), thư mục bị xóa từ bên ngoài thì tạo lại và ghi lại một lần. Gọi khi đang giữ
+     * khóa của chương nên file tạm không bị hai lần ghi dùng chung.
+     */
+    private void write(Path file, byte[] data) throws IOException {
+        Path directory = file.getParent();
+        Path temp = file.resolveSibling(file.getFileName() + TEMP_SUFFIX);
+        directories.ensure(directory);
+        try {
+            writeSynced(temp, data);
+        } catch (NoSuchFileException e) {
+            directories.forget(directory);
+            directories.ensure(directory);
+            writeSynced(temp, data);
+        }
+        try {
+            Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+    }
+
+    private static void writeSynced(Path file, byte[] data) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.wrap(data);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+        }
+    }
+
+    private void deleteFiles(Path filePath) throws IOException {
+        Files.deleteIfExists(filePath);
+        for (Encoding encoding : Encoding.values()) {
+            Files.deleteIfExists(variantFile(filePath, encoding));
+        }
+    }
+
+    /**
+     * Xóa thư mục rỗng của layout cũ, đi lên tối đa {@code levels} cấp (chapters/, rồi {storyId}/)
+     */
+    private void deleteEmptyDirectories(Path directory, int levels) {
+        for (int i = 0; i < levels && directory != null; i++, directory = directory.getParent()) {
+            try {
+                Files.deleteIfExists(directory);
+            } catch (DirectoryNotEmptyException e) {
+                return;
+            } catch (IOException e) {
+                log.debug("Không thể xóa thư mục {}: {}", directory, e.getMessage());
+                return;
+            }
+        }
+    }
+
+    private ReentrantLock lockFor(long chapterId) {
+        return locks[(int) Math.floorMod(chapterId, (long) LOCK_STRIPES)];
+    }
+
+    private void pause() {
+        try {
+            Thread.sleep(migrationPauseMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Chuyển layout lưu trữ chương bị ngắt", e);
+        }
+    }
+
+    private Path variantFile(Path filePath, Encoding encoding) {
+        return filePath.resolveSibling(filePath.getFileName() + encoding.getFileSuffix());
+    }
+}
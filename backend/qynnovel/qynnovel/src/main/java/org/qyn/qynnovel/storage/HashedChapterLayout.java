@@ -0,0 +1,78 @@
+package org.qyn.qynnovel.storage;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Layout chia nhánh theo hash: chapters/{hs}/{storyId}/{hc}/{chapterId}.txt, với hs, hc là
+ * 2 ký tự hex (256 nhánh) lấy từ hash của storyId / chapterId.
+ *
+ * Thư mục gốc chapters/ tách khỏi stories/ của layout cũ nên hai layout cùng tồn tại được
+ * trong lúc chuyển đổi. Truyện 50.000 chương chỉ còn khoảng 200 file mỗi thư mục, và thư
+ * mục cấp trên không chứa trực tiếp hàng triệu truyện.
+ */
+public class HashedChapterLayout implements ChapterStorageLayout {
+
+    static final String NAME = "hashed";
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    @Override
+    public String name() {
+        return NAME;
+    }
+
+    @Override
+    public Path chapterFile(Path root, long storyId, long chapterId) {
+        return root.resolve("chapters")
+                .resolve(bucket(storyId))
+                .resolve(Long.toString(storyId))
+                .resolve(bucket(chapterId))
+                .resolve(chapterId + FILE_SUFFIX);
+    }
+
+    @Override
+    public void forEachChapter(Path root, ChapterFileVisitor visitor) throws IOException {
+        Path chaptersRoot = root.resolve("chapters");
+        if (!Files.isDirectory(chaptersRoot)) {
+            return;
+        }
+        try (DirectoryStream<Path> storyBuckets = Files.newDirectoryStream(chaptersRoot, Files::isDirectory)) {
+            for (Path storyBucket : storyBuckets) {
+                try (DirectoryStream<Path> stories = Files.newDirectoryStream(storyBucket, Files::isDirectory)) {
+                    for (Path storyPath : stories) {
+                        Long storyId = ChapterStorageLayout.parseId(storyPath.getFileName().toString());
+                        if (storyId != null) {
+                            visitStory(storyId, storyPath, visitor);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private void visitStory(long storyId, Path storyPath, ChapterFileVisitor visitor) throws IOException {
+        try (DirectoryStream<Path> chapterBuckets = Files.newDirectoryStream(storyPath, Files::isDirectory)) {
+            for (Path chapterBucket : chapterBuckets) {
+                try (DirectoryStream<Path> chapters = Files.newDirectoryStream(chapterBucket, "*" + FILE_SUFFIX)) {
+                    for (Path chapterFile : chapters) {
+                        Long chapterId = ChapterStorageLayout.parseChapterFileId(chapterFile);
+                        if (chapterId != null) {
+                            visitor.visit(storyId, chapterId, chapterFile);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * 8 bit cao của hash Fibonacci: id liên tiếp được rải đều trên 256 nhánh
+     */
+    static String bucket(long id) {
+        int hash = (int) ((id * 0x9E3779B97F4A7C15L) >>> 56);
+        return new String(new char[] { HEX[hash >>> 4], HEX[hash & 0xF] });
+    }
+}
@@ -0,0 +1,51 @@
+package org.qyn.qynnovel.storage;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Layout cũ: stories/{storyId}/chapters/{chapterId}.txt. Mọi chương của một truyện nằm
+ * chung một thư mục, nên truyện dài có hàng chục nghìn file trong một thư mục.
+ */
+public class LegacyChapterLayout implements ChapterStorageLayout {
+
+    static final String NAME = "legacy";
+
+    @Override
+    public String name() {
+        return NAME;
+    }
+
+    @Override
+    public Path chapterFile(Path root, long storyId, long chapterId) {
+        return root.resolve("stories").resolve(Long.toString(storyId)).resolve("chapters")
+                .resolve(chapterId + FILE_SUFFIX);
+    }
+
+    @Override
+    public void forEachChapter(Path root, ChapterFileVisitor visitor) throws IOException {
+        Path storiesPath = root.resolve("stories");
+        if (!Files.isDirectory(storiesPath)) {
+            return;
+        }
+        try (DirectoryStream<Path> stories = Files.newDirectoryStream(storiesPath)) {
+            for (Path storyPath : stories) {
+                Long storyId = ChapterStorageLayout.parseId(storyPath.getFileName().toString());
+                Path chapterPath = storyPath.resolve("chapters");
+                if (storyId == null || !Files.isDirectory(chapterPath)) {
+                    continue;
+                }
+                try (DirectoryStream<Path> chapters = Files.newDirectoryStream(chapterPath, "*" + FILE_SUFFIX)) {
+                    for (Path chapterFile : chapters) {
+                        Long chapterId = ChapterStorageLayout.parseChapterFileId(chapterFile);
+                        if (chapterId != null) {
+                            visitor.visit(storyId, chapterId, chapterFile);
+                        }
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,545 @@
+package org.qyn.qynnovel.storage;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import java.util.zip.CRC32;
+
+import org.qyn.qynnovel.components.ContentEncoder.Encoding;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Lưu nội dung chương gộp trong các file segment lớn (storage/segments/seg-NNNNNN.dat),
+ * thay cho hàng triệu file nhỏ (tốn inode, lãng phí page cache, mỗi lần đọc một open()).
+ *
+ * Mỗi bản ghi (bản gốc hoặc một bản nén của chương) được nối vào cuối segment đang ghi:
+ * header cố định 40 byte (magic, loại, biến thể, storyId, chapterId, thời điểm ghi, độ dài,
+ * CRC32) rồi tới dữ liệu. Xóa là nối thêm một bản ghi tombstone. Một lần ghi chương nối
+ * bản gốc trước rồi mới tới các bản nén, tất cả cùng một thời điểm ghi (tăng dần trong
+ * store): bản nén chỉ được dùng khi cùng thời điểm ghi với bản gốc, nên tắt máy giữa
+ * chừng không để bản nén cũ đi cùng bản gốc mới (hay ngược lại). Segment đầy
+ * (app.storage.segments.max-bytes) thì được đóng lại và mmap chỉ đọc; đọc từ segment đã
+ * đóng là một lát cắt của MappedByteBuffer, từ segment đang ghi là đọc theo vị trí
+ * (FileChannel.read(buffer, position)).
+ *
+ * Index vị trí (chapterId, biến thể) → (segment, offset, độ dài) nằm trong bộ nhớ, dựng
+ * lại lúc khởi động bằng cách đọc lần lượt các header (bản ghi sau đè bản ghi trước);
+ * phần đuôi hỏng của segment đang ghi (tắt máy giữa chừng) bị cắt bỏ, rồi bỏ các bản nén
+ * không khớp thời điểm ghi với bản gốc (hoặc không còn bản gốc). Một tác vụ nền
+ * gom các segment đã đóng có tỉ lệ dữ liệu còn dùng thấp: chép các bản ghi còn hiệu lực
+ * sang segment đang ghi rồi xóa file segment cũ.
+ */
+@Component
+@ConditionalOnProperty(name = "app.storage.backend", havingValue = "segments")
+public class SegmentChapterContentStore implements ChapterContentStore {
+
+    private static final Logger log = LoggerFactory.getLogger(SegmentChapterContentStore.class);
+
+    private static final int MAGIC = 0x51594E53; // "QYNS"
+    private static final int HEADER_BYTES = 40;
+    private static final byte TYPE_RECORD = 0;
+    private static final byte TYPE_TOMBSTONE = 1;
+
+    // Biến thể 0 là bản gốc, 1 + ordinal là bản nén tương ứng
+    private static final byte ORIGINAL = 0;
+
+    /**
+     * Khóa của một bản ghi trong index
+     */
+    record Key(long chapterId, byte variant) {
+    }
+
+    /**
+     * Vị trí dữ liệu của một bản ghi: offset tính từ đầu segment tới đầu header
+     */
+    record Location(Segment segment, long storyId, long offset, int length, long modified) {
+
+        long payloadOffset() {
+            return offset + HEADER_BYTES;
+        }
+
+        long recordBytes() {
+            return HEADER_BYTES + (long) length;
+        }
+    }
+
+    /**
+     * Header của một bản ghi khi duyệt segment
+     */
+    private record Header(byte type, byte variant, long storyId, long chapterId, long modified, int length, int crc) {
+    }
+
+    static final class Segment {
+        final int id;
+        final Path path;
+        final FileChannel channel;
+        final AtomicLong liveBytes = new AtomicLong();
+        volatile long size;
+        // Chỉ có sau khi segment được đóng (không ghi thêm)
+        volatile MappedByteBuffer mapped;
+
+        Segment(int id, Path path, FileChannel channel, long size) {
+            this.id = id;
+            this.path = path;
+            this.channel = channel;
+            this.size = size;
+        }
+    }
+
+    private final Path directory;
+    private final long maxSegmentBytes;
+    private final boolean fsync;
+    private final double compactThreshold;
+
+    private final Map<Key, Location> index = new ConcurrentHashMap<>();
+    private final ConcurrentSkipListMap<Integer, Segment> segments = new ConcurrentSkipListMap<>();
+
+    // Chỉ truy cập khi giữ khóa ghi (synchronized trên this)
+    private Segment active;
+    private long lastModified;
+
+    public SegmentChapterContentStore(
+            @Value("${app.storage.path:./storage}") String storagePath,
+            @Value("${app.storage.segments.max-bytes:268435456}") long maxSegmentBytes,
+            @Value("${app.storage.segments.fsync:false}") boolean fsync,
+            @Value("${app.storage.segments.compact-threshold:0.5}") double compactThreshold) {
+        this.directory = Paths.get(storagePath, "segments");
+        // Segment đã đóng được mmap trọn một lần nên không vượt quá giới hạn của ByteBuffer
+        this.maxSegmentBytes = Math.min(maxSegmentBytes, Integer.MAX_VALUE - HEADER_BYTES);
+        this.fsync = fsync;
+        this.compactThreshold = compactThreshold;
+    }
+
+    @PostConstruct
+    public synchronized void open() throws IOException {
+        Files.createDirectories(directory);
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "seg-*.dat")) {
+            stream.forEach(files::add);
+        }
+        files.sort(null);
+
+        long started = System.currentTimeMillis();
+        for (int i = 0; i < files.size(); i++) {
+            Integer id = parseSegmentId(files.get(i));
+            if (id == null) {
+                continue;
+            }
+            Segment segment = openSegment(id, files.get(i));
+            segments.put(id, segment);
+            recover(segment, i == files.size() - 1);
+        }
+        int stale = dropStaleVariants();
+        if (stale > 0) {
+            log.warn("Bỏ {} bản nén không khớp với bản gốc (lần ghi trước bị ngắt giữa chừng)", stale);
+        }
+
+        Map.Entry<Integer, Segment> last = segments.lastEntry();
+        if (last != null && last.getValue().size < maxSegmentBytes) {
+            active = last.getValue();
+        } else {
+            active = createSegment(last == null ? 1 : last.getKey() + 1);
+        }
+        for (Segment segment : segments.values()) {
+            if (segment != active) {
+                seal(segment);
+            }
+        }
+        log.info("Đã mở {} segment nội dung chương ({} bản ghi) trong {} ms",
+                segments.size(), index.size(), System.currentTimeMillis() - started);
+    }
+
+    @PreDestroy
+    public synchronized void close() throws IOException {
+        if (active != null) {
+            active.channel.force(true);
+        }
+        for (Segment segment : segments.values()) {
+            segment.channel.close();
+        }
+    }
+
+    @Override
+    public synchronized void write(long storyId, long chapterId, byte[] content, Map<Encoding, byte[]> variants)
+            throws IOException {
+        // Tăng dần để hai lần ghi liên tiếp của một chương không trùng thời điểm ghi
+        long modified = Math.max(System.currentTimeMillis(), lastModified + 1);
+        lastModified = modified;
+        // Bản gốc ghi trước, các bản nén sau: bị ngắt giữa chừng thì các bản nén còn lại của
+        // lần ghi trước không khớp thời điểm ghi và bị bỏ khi mở lại (dropStaleVariants)
+        put(storyId, chapterId, ORIGINAL, ByteBuffer.wrap(content), modified);
+        for (Encoding encoding : Encoding.values()) {
+            byte[] variant = variants.get(encoding);
+            if (variant != null) {
+                put(storyId, chapterId, variantOf(encoding), ByteBuffer.wrap(variant), modified);
+            } else {
+                remove(storyId, chapterId, variantOf(encoding));
+            }
+        }
+        if (fsync) {
+            active.channel.force(false);
+        }
+    }
+
+    @Override
+    public String read(long storyId, long chapterId) throws IOException {
+        Location location = index.get(new Key(chapterId, ORIGINAL));
+        if (location == null) {
+            throw new IOException("Không tìm thấy nội dung cho chương: " + chapterId);
+        }
+        return StandardCharsets.UTF_8.decode(slice(new Key(chapterId, ORIGINAL), location)).toString();
+    }
+
+    @Override
+    public StoredContent open(long storyId, long chapterId, List<Encoding> accepted) throws IOException {
+        for (Encoding encoding : accepted) {
+            Key key = new Key(chapterId, variantOf(encoding));
+            Location location = index.get(key);
+            if (location != null) {
+                return stored(key, location, encoding.getToken());
+            }
+        }
+        Key key = new Key(chapterId, ORIGINAL);
+        Location location = index.get(key);
+        if (location == null) {
+            throw new IOException("Không tìm thấy nội dung cho chương: " + chapterId);
+        }
+        return stored(key, location, null);
+    }
+
+    @Override
+    public ContentStat stat(long storyId, long chapterId, List<Encoding> accepted) throws IOException {
+        for (Encoding encoding : accepted) {
+            Location location = index.get(new Key(chapterId, variantOf(encoding)));
+            if (location != null) {
+                return new ContentStat(encoding.getToken(), location.length(), location.modified());
+            }
+        }
+        Location location = index.get(new Key(chapterId, ORIGINAL));
+        if (location == null) {
+            throw new IOException("Không tìm thấy nội dung cho chương: " + chapterId);
+        }
+        return new ContentStat(null, location.length(), location.modified());
+    }
+
+    @Override
+    public synchronized void delete(long storyId, long chapterId) throws IOException {
+        remove(storyId, chapterId, ORIGINAL);
+        for (Encoding encoding : Encoding.values()) {
+            remove(storyId, chapterId, variantOf(encoding));
+        }
+        if (fsync) {
+            active.channel.force(false);
+        }
+    }
+
+    @Override
+    public void forEachChapter(BiConsumer<Long, Long> visitor) {
+        for (Map.Entry<Key, Location> entry : index.entrySet()) {
+            if (entry.getKey().variant() == ORIGINAL) {
+                visitor.accept(entry.getValue().storyId(), entry.getKey().chapterId());
+            }
+        }
+    }
+
+    /**
+     * Gom các segment đã đóng có tỉ lệ dữ liệu còn hiệu lực dưới app.storage.segments.compact-threshold
+     */
+    @Scheduled(initialDelayString = "${app.storage.segments.compact-interval-ms:600000}",
+            fixedDelayString = "${app.storage.segments.compact-interval-ms:600000}")
+    public void compact() {
+        for (Segment segment : List.copyOf(segments.values())) {
+            if (segment.mapped == null || segment.size == 0
+                    || (double) segment.liveBytes.get() / segment.size >= compactThreshold) {
+                continue;
+            }
+            try {
+                compact(segment);
+            } catch (IOException | RuntimeException e) {
+                log.error("Không thể gom segment {}", segment.path.getFileName(), e);
+            }
+        }
+    }
+
+    private void compact(Segment segment) throws IOException {
+        long started = System.currentTimeMillis();
+        long liveBefore = segment.liveBytes.get();
+        boolean hasOlder = segments.lowerKey(segment.id) != null;
+        ByteBuffer buffer = segment.mapped.duplicate();
+        long position = 0;
+        int copied = 0;
+        while (position + HEADER_BYTES <= segment.size) {
+            Header header = readHeader(buffer, position);
+            if (header == null) {
+                break;
+            }
+            Key key = new Key(header.chapterId(), header.variant());
+            long recordPosition = position;
+            position += HEADER_BYTES + (long) header.length();
+
+            synchronized (this) {
+                Location current = index.get(key);
+                if (header.type() == TYPE_RECORD) {
+                    // Chỉ chép bản ghi còn là bản mới nhất; kiểm tra và nối thêm trong cùng khóa ghi
+                    // nên bản chép luôn nằm sau mọi bản ghi cũ hơn của cùng khóa
+                    if (current != null && current.segment() == segment && current.offset() == recordPosition) {
+                        ByteBuffer payload = segment.mapped.slice((int) current.payloadOffset(), current.length());
+                        Location moved = append(TYPE_RECORD, header.variant(), header.storyId(), header.chapterId(),
+                                header.modified(), payload);
+                        index.put(key, moved);
+                        moved.segment().liveBytes.addAndGet(moved.recordBytes());
+                        copied++;
+                    }
+                } else if (current == null && hasOlder) {
+                    // Segment cũ hơn có thể còn bản ghi của khóa này: giữ tombstone
+                    append(TYPE_TOMBSTONE, header.variant(), header.storyId(), header.chapterId(), header.modified(),
+                            ByteBuffer.allocate(0));
+                }
+            }
+        }
+
+        synchronized (this) {
+            active.channel.force(false);
+            segments.remove(segment.id);
+        }
+        // Lát cắt mmap đang được đọc vẫn hợp lệ sau khi đóng channel và xóa file
+        segment.channel.close();
+        Files.deleteIfExists(segment.path);
+        log.info("Đã gom segment {} ({} byte còn dùng / {} byte, {} bản ghi) trong {} ms",
+                segment.path.getFileName(), liveBefore, segment.size, copied, System.currentTimeMillis() - started);
+    }
+
+    private void put(long storyId, long chapterId, byte variant, ByteBuffer payload, long modified)
+            throws IOException {
+        Location location = append(TYPE_RECORD, variant, storyId, chapterId, modified, payload);
+        location.segment().liveBytes.addAndGet(location.recordBytes());
+        release(index.put(new Key(chapterId, variant), location));
+    }
+
+    private void remove(long storyId, long chapterId, byte variant) throws IOException {
+        Location previous = index.remove(new Key(chapterId, variant));
+        if (previous != null) {
+            append(TYPE_TOMBSTONE, variant, storyId, chapterId, System.currentTimeMillis(), ByteBuffer.allocate(0));
+            release(previous);
+        }
+    }
+
+    private static void release(Location previous) {
+        if (previous != null) {
+            previous.segment().liveBytes.addAndGet(-previous.recordBytes());
+        }
+    }
+
+    /**
+     * Nối một bản ghi vào segment đang ghi (gọi khi giữ khóa ghi); segment đầy thì đóng và mở segment mới
+     */
+    private Location append(byte type, byte variant, long storyId, long chapterId, long modified, ByteBuffer payload)
+            throws IOException {
+        int length = payload.remaining();
+        if (active.size > 0 && active.size + HEADER_BYTES + length > maxSegmentBytes) {
+            Segment full = active;
+            full.channel.force(true);
+            active = createSegment(full.id + 1);
+            seal(full);
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(payload.duplicate());
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES)
+                .putInt(MAGIC)
+                .put(type)
+                .put(variant)
+                .putShort((short) 0)
+                .putLong(storyId)
+                .putLong(chapterId)
+                .putLong(modified)
+                .putInt(length)
+                .putInt((int) crc.getValue())
+                .flip();
+
+        long offset = active.size;
+        long position = offset;
+        ByteBuffer data = payload.duplicate();
+        while (header.hasRemaining()) {
+            position += active.channel.write(header, position);
+        }
+        while (data.hasRemaining()) {
+            position += active.channel.write(data, position);
+        }
+        active.size = position;
+        return new Location(active, storyId, offset, length, modified);
+    }
+
+    /**
+     * Dữ liệu của bản ghi; nếu segment vừa bị gom sau khi tra index thì tra lại một lần
+     */
+    private ByteBuffer slice(Key key, Location location) throws IOException {
+        try {
+            return read(location);
+        } catch (ClosedChannelException e) {
+            Location moved = index.get(key);
+            if (moved == null || moved == location) {
+                throw new IOException("Không tìm thấy nội dung cho chương: " + key.chapterId(), e);
+            }
+            return read(moved);
+        }
+    }
+
+    private static ByteBuffer read(Location location) throws IOException {
+        Segment segment = location.segment();
+        MappedByteBuffer mapped = segment.mapped;
+        if (mapped != null) {
+            return mapped.slice((int) location.payloadOffset(), location.length());
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(location.length());
+        long position = location.payloadOffset();
+        while (buffer.hasRemaining()) {
+            int read = segment.channel.read(buffer, position + buffer.position());
+            if (read < 0) {
+                throw new IOException("Segment " + segment.path.getFileName() + " bị cắt ngắn");
+            }
+        }
+        return buffer.flip();
+    }
+
+    private StoredContent stored(Key key, Location location, String contentEncoding) throws IOException {
+        ByteBuffer data = slice(key, location);
+        return new StoredContent(
+                new ByteBufferResource(data, location.modified(),
+                        "chapter " + key.chapterId() + " in " + location.segment().path.getFileName()),
+                contentEncoding, location.length(), location.modified());
+    }
+
+    /**
+     * Dựng lại index từ các header của segment; với segment cuối, bản ghi dở dang
+     * hoặc sai CRC ở đuôi file bị cắt bỏ
+     */
+    private void recover(Segment segment, boolean last) throws IOException {
+        if (segment.size == 0) {
+            return;
+        }
+        MappedByteBuffer buffer = segment.channel.map(FileChannel.MapMode.READ_ONLY, 0, segment.size);
+        long position = 0;
+        while (position + HEADER_BYTES <= segment.size) {
+            Header header = readHeader(buffer, position);
+            if (header == null || position + HEADER_BYTES + header.length() > segment.size
+                    || (last && !checksumMatches(buffer, position, header))) {
+                break;
+            }
+            Key key = new Key(header.chapterId(), header.variant());
+            if (header.type() == TYPE_RECORD) {
+                Location location = new Location(segment, header.storyId(), position, header.length(),
+                        header.modified());
+                segment.liveBytes.addAndGet(location.recordBytes());
+                release(index.put(key, location));
+                lastModified = Math.max(lastModified, header.modified());
+            } else {
+                release(index.remove(key));
+            }
+            position += HEADER_BYTES + (long) header.length();
+        }
+
+        if (position < segment.size) {
+            if (last) {
+                log.warn("Cắt bỏ {} byte hỏng ở cuối segment {}", segment.size - position, segment.path.getFileName());
+                segment.channel.truncate(position);
+                segment.size = position;
+            } else {
+                log.error("Segment {} hỏng từ vị trí {}, bỏ qua phần còn lại", segment.path.getFileName(), position);
+            }
+        }
+    }
+
+    /**
+     * Bỏ khỏi index các bản nén không cùng thời điểm ghi với bản gốc hiện tại, hoặc không
+     * còn bản gốc (lần ghi/xóa bị ngắt sau bản gốc); bản ghi trên đĩa thành dữ liệu chết
+     */
+    private int dropStaleVariants() {
+        int dropped = 0;
+        for (Map.Entry<Key, Location> entry : index.entrySet()) {
+            Key key = entry.getKey();
+            if (key.variant() == ORIGINAL) {
+                continue;
+            }
+            Location original = index.get(new Key(key.chapterId(), ORIGINAL));
+            if (original == null || original.modified() != entry.getValue().modified()) {
+                release(index.remove(key));
+                dropped++;
+            }
+        }
+        return dropped;
+    }
+
+    private static Header readHeader(ByteBuffer buffer, long position) {
+        int at = (int) position;
+        if (buffer.getInt(at) != MAGIC) {
+            return null;
+        }
+        byte type = buffer.get(at + 4);
+        int length = buffer.getInt(at + 32);
+        if ((type != TYPE_RECORD && type != TYPE_TOMBSTONE) || length < 0) {
+            return null;
+        }
+        return new Header(type, buffer.get(at + 5), buffer.getLong(at + 8), buffer.getLong(at + 16),
+                buffer.getLong(at + 24), length, buffer.getInt(at + 36));
+    }
+
+    private static boolean checksumMatches(ByteBuffer buffer, long position, Header header) {
+        CRC32 crc = new CRC32();
+        crc.update(buffer.slice((int) position + HEADER_BYTES, header.length()));
+        return (int) crc.getValue() == header.crc();
+    }
+
+    private void seal(Segment segment) throws IOException {
+        segment.mapped = segment.channel.map(FileChannel.MapMode.READ_ONLY, 0, segment.size);
+    }
+
+    private Segment createSegment(int id) throws IOException {
+        Path path = directory.resolve(String.format("seg-%06d.dat", id));
+        Segment segment = openSegment(id, path);
+        segments.put(id, segment);
+        return segment;
+    }
+
+    private static Segment openSegment(int id, Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        return new Segment(id, path, channel, channel.size());
+    }
+
+    private static Integer parseSegmentId(Path file) {
+        String name = file.getFileName().toString();
+        try {
+            return Integer.valueOf(name.substring("seg-".length(), name.length() - ".dat".length()));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static byte variantOf(Encoding encoding) {
+        return (byte) (1 + encoding.ordinal());
+    }
+}
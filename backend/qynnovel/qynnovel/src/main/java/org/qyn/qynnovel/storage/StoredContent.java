@@ -0,0 +1,14 @@
+package org.qyn.qynnovel.storage;
+
+import org.springframework.core.io.Resource;
+
+/**
+ * Nội dung chương sẽ gửi cho client: dữ liệu (file hoặc một đoạn của segment), kiểu nén
+ * (null nếu là bản gốc), độ dài và thời điểm ghi (dùng cho ETag / Last-Modified)
+ */
+public record StoredContent(
+        Resource body,
+        String contentEncoding,
+        long length,
+        long lastModified) {
+}
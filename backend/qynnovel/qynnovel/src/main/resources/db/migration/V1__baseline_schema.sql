@@ -0,0 +1,194 @@
+-- Schema ban đầu (trùng với db-init/init.sql).
+-- DB đã tạo bằng init.sql sẽ được Flyway baseline ở version 1 và chỉ chạy các migration sau.
+
+-- Bảng người dùng
+CREATE TABLE users (
+    id BIGINT PRIMARY KEY AUTO_INCREMENT,
+    username VARCHAR(50) UNIQUE NOT NULL,
+    email VARCHAR(100) UNIQUE NOT NULL,
+    password VARCHAR(255) NOT NULL,
+    display_name VARCHAR(100),
+    avatar VARCHAR(255),
+    role ENUM('ADMIN', 'MODERATOR', 'USER') DEFAULT 'USER',
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
+    is_active BOOLEAN DEFAULT TRUE,
+    INDEX idx_username (username),
+    INDEX idx_email (email)
+);
+
+-- Bảng thể loại
+CREATE TABLE categories (
+    id BIGINT PRIMARY KEY AUTO_INCREMENT,
+    name VARCHAR(100) NOT NULL,
+    slug VARCHAR(100) UNIQUE NOT NULL,
+    description TEXT,
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    INDEX idx_slug (slug)
+);
+
+-- Bảng truyện
+CREATE TABLE stories (
+    id BIGINT PRIMARY KEY AUTO_INCREMENT,
+    title VARCHAR(255) NOT NULL,
+    slug VARCHAR(255) UNIQUE NOT NULL,
+    author VARCHAR(100),
+    description TEXT,
+    cover_image VARCHAR(255),
+    status ENUM('ONGOING', 'COMPLETED', 'HIATUS') DEFAULT 'ONGOING',
+    total_views BIGINT DEFAULT 0,
+    total_likes BIGINT DEFAULT 0,
+    user_id BIGINT NOT NULL,
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
+    INDEX idx_slug (slug),
+    INDEX idx_status (status),
+    INDEX idx_author (author),
+    INDEX idx_user (user_id),
+    FULLTEXT idx_title_fulltext (title),
+    FOREIGN KEY (user_id) REFERENCES users(id) ON DELETE CASCADE
+);
+
+-- Bảng thể loại của truyện (many-to-many)
+CREATE TABLE story_categories (
+    story_id BIGINT NOT NULL,
+    category_id BIGINT NOT NULL,
+    PRIMARY KEY (story_id, category_id),
+    FOREIGN KEY (story_id) REFERENCES stories(id) ON DELETE CASCADE,
+    FOREIGN KEY (category_id) REFERENCES categories(id) ON DELETE CASCADE
+);
+
+-- Bảng chương - CHỈ LƯU METADATA, NỘI DUNG LƯU TRONG FILE
+CREATE TABLE chapters (
+    id BIGINT PRIMARY KEY AUTO_INCREMENT,
+    story_id BIGINT NOT NULL,
+    title VARCHAR(255) NOT NULL,
+    slug VARCHAR(255) NOT NULL,
+    chapter_number INT NOT NULL,
+    word_count INT DEFAULT 0,
+    views BIGINT DEFAULT 0,
+    is_locked BOOLEAN DEFAULT FALSE,
+    storage_path VARCHAR(500) NULL, -- Đường dẫn đến file chứa nội dung
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
+    UNIQUE KEY unique_story_slug (story_id, slug),
+    INDEX idx_story (story_id),
+    INDEX idx_chapter_number (chapter_number),
+    FOREIGN KEY (story_id) REFERENCES stories(id) ON DELETE CASCADE
+);
+
+-- Bảng bookmark
+CREATE TABLE bookmarks (
+    id BIGINT PRIMARY KEY AUTO_INCREMENT,
+    user_id BIGINT NOT NULL,
+    story_id BIGINT NOT NULL,
+    chapter_id BIGINT,
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    INDEX idx_user (user_id),
+    UNIQUE KEY unique_user_story (user_id, story_id),
+    FOREIGN KEY (user_id) REFERENCES users(id) ON DELETE CASCADE,
+    FOREIGN KEY (story_id) REFERENCES stories(id) ON DELETE CASCADE,
+    FOREIGN KEY (chapter_id) REFERENCES chapters(id) ON DELETE SET NULL
+);
+
+-- Bảng lịch sử đọc
+CREATE TABLE reading_history (
+    id BIGINT PRIMARY KEY AUTO_INCREMENT,
+    user_id BIGINT NOT NULL,
+    chapter_id BIGINT NOT NULL,
+    story_id BIGINT NOT NULL,
+    read_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    INDEX idx_user (user_id),
+    INDEX idx_chapter (chapter_id),
+    INDEX idx_story (story_id),
+    INDEX idx_read_at (read_at),
+    FOREIGN KEY (user_id) REFERENCES users(id) ON DELETE CASCADE,
+    FOREIGN KEY (chapter_id) REFERENCES chapters(id) ON DELETE CASCADE,
+    FOREIGN KEY (story_id) REFERENCES stories(id) ON DELETE CASCADE
+);
+
+-- Bảng bình luận
+CREATE TABLE comments (
+    id BIGINT PRIMARY KEY AUTO_INCREMENT,
+    user_id BIGINT NOT NULL,
+    story_id BIGINT,
+    chapter_id BIGINT,
+    parent_id BIGINT,
+    content TEXT NOT NULL,
+    likes INT DEFAULT 0,
+    is_edited BOOLEAN DEFAULT FALSE,
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
+    INDEX idx_user (user_id),
+    INDEX idx_story (story_id),
+    INDEX idx_chapter (chapter_id),
+    INDEX idx_parent (parent_id),
+    FOREIGN KEY (user_id) REFERENCES users(id) ON DELETE CASCADE,
+    FOREIGN KEY (story_id) REFERENCES stories(id) ON DELETE CASCADE,
+    FOREIGN KEY (chapter_id) REFERENCES chapters(id) ON DELETE CASCADE,
+    FOREIGN KEY (parent_id) REFERENCES comments(id) ON DELETE CASCADE
+);
+
+-- Bảng đánh giá
+CREATE TABLE ratings (
+    id BIGINT PRIMARY KEY AUTO_INCREMENT,
+    user_id BIGINT NOT NULL,
+    story_id BIGINT NOT NULL,
+    rating TINYINT NOT NULL CHECK (rating >= 1 AND rating <= 5),
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
+    UNIQUE KEY unique_user_story (user_id, story_id),
+    INDEX idx_story (story_id),
+    FOREIGN KEY (user_id) REFERENCES users(id) ON DELETE CASCADE,
+    FOREIGN KEY (story_id) REFERENCES stories(id) ON DELETE CASCADE
+);
+
+-- Bảng theo dõi
+CREATE TABLE follows (
+    id BIGINT PRIMARY KEY AUTO_INCREMENT,
+    user_id BIGINT NOT NULL,
+    story_id BIGINT NOT NULL,
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    UNIQUE KEY unique_user_story (user_id, story_id),
+    INDEX idx_user (user_id),
+    INDEX idx_story (story_id),
+    FOREIGN KEY (user_id) REFERENCES users(id) ON DELETE CASCADE,
+    FOREIGN KEY (story_id) REFERENCES stories(id) ON DELETE CASCADE
+);
+
+-- Bảng like
+CREATE TABLE likes (
+    id BIGINT PRIMARY KEY AUTO_INCREMENT,
+    user_id BIGINT NOT NULL,
+    story_id BIGINT,
+    chapter_id BIGINT,
+    comment_id BIGINT,
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    INDEX idx_user (user_id),
+    INDEX idx_story (story_id),
+    INDEX idx_chapter (chapter_id),
+    INDEX idx_comment (comment_id),
+    UNIQUE KEY unique_user_story (user_id, story_id),
+    UNIQUE KEY unique_user_chapter (user_id, chapter_id),
+    UNIQUE KEY unique_user_comment (user_id, comment_id),
+    FOREIGN KEY (user_id) REFERENCES users(id) ON DELETE CASCADE,
+    FOREIGN KEY (story_id) REFERENCES stories(id) ON DELETE CASCADE,
+    FOREIGN KEY (chapter_id) REFERENCES chapters(id) ON DELETE CASCADE,
+    FOREIGN KEY (comment_id) REFERENCES comments(id) ON DELETE CASCADE
+);
+
+-- Bảng thông báo
+CREATE TABLE notifications (
+    id BIGINT PRIMARY KEY AUTO_INCREMENT,
+    user_id BIGINT NOT NULL,
+    title VARCHAR(255) NOT NULL,
+    content TEXT,
+    type ENUM('SYSTEM', 'CHAPTER_UPDATE', 'COMMENT_REPLY', 'LIKE') NOT NULL,
+    is_read BOOLEAN DEFAULT FALSE,
+    reference_id BIGINT,
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    INDEX idx_user (user_id),
+    INDEX idx_type (type),
+    INDEX idx_is_read (is_read),
+    FOREIGN KEY (user_id) REFERENCES users(id) ON DELETE CASCADE
+);
@@ -0,0 +1,49 @@
+-- Index ghép cho các truy vấn nóng trong ChapterRepository, StoryRepository, ReadingHistoryRepository.
+-- Index mới được tạo trước khi xóa index cũ để foreign key luôn có index hỗ trợ.
+-- Index cũ chỉ có tên cố định khi schema tạo từ init.sql (DB tạo bằng ddl-auto=update
+-- không có), nên chỉ xóa khi information_schema.statistics cho thấy index tồn tại.
+
+-- chapters: mọi truy vấn đều lọc story_id và sắp xếp/so sánh chapter_number.
+-- Các cột còn lại giúp mục lục, phân trang keyset và phiên bản danh sách chương
+-- đọc thẳng từ index (covering), không phải quay lại bảng.
+CREATE INDEX idx_chapters_story_toc
+    ON chapters (story_id, chapter_number, title, slug, word_count, is_locked, updated_at);
+SET @drop_index = IF((SELECT COUNT(*) FROM information_schema.statistics
+        WHERE table_schema = DATABASE() AND table_name = 'chapters' AND index_name = 'idx_story') > 0,
+    'DROP INDEX idx_story ON chapters', 'DO 0');
+PREPARE drop_index FROM @drop_index;
+EXECUTE drop_index;
+DEALLOCATE PREPARE drop_index;
+SET @drop_index = IF((SELECT COUNT(*) FROM information_schema.statistics
+        WHERE table_schema = DATABASE() AND table_name = 'chapters' AND index_name = 'idx_chapter_number') > 0,
+    'DROP INDEX idx_chapter_number ON chapters', 'DO 0');
+PREPARE drop_index FROM @drop_index;
+EXECUTE drop_index;
+DEALLOCATE PREPARE drop_index;
+
+-- stories: sắp xếp theo lượt xem / lượt thích / thời gian
+CREATE INDEX idx_stories_recommended ON stories (total_views, total_likes, updated_at);
+CREATE INDEX idx_stories_total_likes ON stories (total_likes);
+CREATE INDEX idx_stories_created_at ON stories (created_at);
+CREATE INDEX idx_stories_updated_at ON stories (updated_at);
+-- truyện hoàn thành / đang ra: lọc status rồi sắp xếp updated_at
+CREATE INDEX idx_stories_status_updated ON stories (status, updated_at);
+SET @drop_index = IF((SELECT COUNT(*) FROM information_schema.statistics
+        WHERE table_schema = DATABASE() AND table_name = 'stories' AND index_name = 'idx_status') > 0,
+    'DROP INDEX idx_status ON stories', 'DO 0');
+PREPARE drop_index FROM @drop_index;
+EXECUTE drop_index;
+DEALLOCATE PREPARE drop_index;
+
+-- story_categories: khóa chính (story_id, category_id) không dùng được khi lọc theo thể loại
+CREATE INDEX idx_story_categories_category ON story_categories (category_id, story_id);
+
+-- reading_history: lịch sử của user sắp xếp theo read_at, và lần đọc cuối của user với một truyện
+CREATE INDEX idx_reading_history_user_read_at ON reading_history (user_id, read_at);
+CREATE INDEX idx_reading_history_user_story_read_at ON reading_history (user_id, story_id, read_at);
+SET @drop_index = IF((SELECT COUNT(*) FROM information_schema.statistics
+        WHERE table_schema = DATABASE() AND table_name = 'reading_history' AND index_name = 'idx_user') > 0,
+    'DROP INDEX idx_user ON reading_history', 'DO 0');
+PREPARE drop_index FROM @drop_index;
+EXECUTE drop_index;
+DEALLOCATE PREPARE drop_index;
@@ -0,0 +1,33 @@
+-- Thống kê của truyện lưu ngay trên bảng stories, để trang danh sách/lọc không phải
+-- COUNT/SUM/AVG trên chapters và ratings cho từng truyện.
+-- Các cột được StoryStatsService cập nhật cùng transaction với thao tác ghi chương/đánh giá,
+-- và được đối soát lại định kỳ.
+ALTER TABLE stories
+    ADD COLUMN chapter_count INT NOT NULL DEFAULT 0,
+    ADD COLUMN total_word_count BIGINT NOT NULL DEFAULT 0,
+    ADD COLUMN latest_chapter_number INT NULL,
+    ADD COLUMN average_rating DECIMAL(3, 2) NOT NULL DEFAULT 0;
+
+-- Điền dữ liệu hiện có. Gán lại updated_at để ON UPDATE CURRENT_TIMESTAMP không coi đây là một lần sửa truyện
+UPDATE stories s
+    JOIN (SELECT story_id,
+                 COUNT(*) AS chapter_count,
+                 COALESCE(SUM(word_count), 0) AS total_word_count,
+                 MAX(chapter_number) AS latest_chapter_number
+          FROM chapters
+          GROUP BY story_id) c ON c.story_id = s.id
+SET s.chapter_count = c.chapter_count,
+    s.total_word_count = c.total_word_count,
+    s.latest_chapter_number = c.latest_chapter_number,
+    s.updated_at = s.updated_at;
+
+UPDATE stories s
+    JOIN (SELECT story_id, AVG(rating) AS average_rating
+          FROM ratings
+          GROUP BY story_id) r ON r.story_id = s.id
+SET s.average_rating = r.average_rating,
+    s.updated_at = s.updated_at;
+
+-- Lọc truyện theo số chương / điểm đánh giá
+CREATE INDEX idx_stories_chapter_count ON stories (chapter_count);
+CREATE INDEX idx_stories_average_rating ON stories (average_rating);
@@ -0,0 +1,40 @@
+-- Tổng/số lượng và phân bố điểm đánh giá của từng truyện, cập nhật cộng dồn mỗi lần
+-- đánh giá được thêm/sửa/xóa (StoryStatsService), thay cho AVG trên bảng ratings.
+CREATE TABLE story_rating_stats (
+    story_id BIGINT PRIMARY KEY,
+    rating_count INT NOT NULL DEFAULT 0,
+    rating_sum BIGINT NOT NULL DEFAULT 0,
+    rating_1 INT NOT NULL DEFAULT 0,
+    rating_2 INT NOT NULL DEFAULT 0,
+    rating_3 INT NOT NULL DEFAULT 0,
+    rating_4 INT NOT NULL DEFAULT 0,
+    rating_5 INT NOT NULL DEFAULT 0,
+    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
+    FOREIGN KEY (story_id) REFERENCES stories(id) ON DELETE CASCADE
+);
+
+INSERT INTO story_rating_stats (story_id, rating_count, rating_sum, rating_1, rating_2, rating_3, rating_4, rating_5)
+SELECT story_id, COUNT(*), SUM(rating),
+       SUM(rating = 1), SUM(rating = 2), SUM(rating = 3), SUM(rating = 4), SUM(rating = 5)
+FROM ratings
+GROUP BY story_id;
+
+-- Số lượt đánh giá và điểm Bayes (trung bình có xét số lượt) đặt trên stories để lọc/sắp xếp "đánh giá cao"
+ALTER TABLE stories
+    ADD COLUMN rating_count INT NOT NULL DEFAULT 0,
+    ADD COLUMN bayesian_rating DECIMAL(5, 4) NOT NULL DEFAULT 0;
+
+-- Điểm Bayes = (tổng điểm + m × C) / (số lượt + m), C là điểm trung bình toàn hệ thống,
+-- m là app.ratings.bayesian.min-votes (mặc định 10). StoryStatsService tính lại khi C thay đổi.
+SET @min_votes = 10;
+SELECT COALESCE(SUM(rating_sum) / NULLIF(SUM(rating_count), 0), 3) INTO @prior_mean FROM story_rating_stats;
+
+UPDATE stories s
+    JOIN story_rating_stats t ON t.story_id = s.id
+SET s.rating_count = t.rating_count,
+    s.average_rating = t.rating_sum / t.rating_count,
+    s.bayesian_rating = (t.rating_sum + @min_votes * @prior_mean) / (t.rating_count + @min_votes),
+    s.updated_at = s.updated_at;
+
+-- findTopRated: ORDER BY bayesian_rating DESC, rating_count DESC đọc ngược index, không filesort
+CREATE INDEX idx_stories_bayesian_rating ON stories (bayesian_rating, rating_count);
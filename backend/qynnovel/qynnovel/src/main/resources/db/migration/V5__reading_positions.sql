@@ -0,0 +1,27 @@
+-- Vị trí đọc cuối cùng của mỗi user trong mỗi truyện ("đọc tiếp", tủ truyện): một dòng
+-- cho mỗi (user_id, story_id), ghi bằng upsert (ReadingPositionService), nên tra cứu
+-- chỉ là một lần đọc theo khóa chính, không phụ thuộc độ dài lịch sử đọc.
+CREATE TABLE reading_positions (
+    user_id BIGINT NOT NULL,
+    story_id BIGINT NOT NULL,
+    chapter_id BIGINT NOT NULL,
+    read_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    PRIMARY KEY (user_id, story_id),
+    INDEX idx_reading_positions_story (story_id),
+    INDEX idx_reading_positions_chapter (chapter_id),
+    FOREIGN KEY (user_id) REFERENCES users(id) ON DELETE CASCADE,
+    FOREIGN KEY (story_id) REFERENCES stories(id) ON DELETE CASCADE,
+    FOREIGN KEY (chapter_id) REFERENCES chapters(id) ON DELETE CASCADE
+);
+
+INSERT INTO reading_positions (user_id, story_id, chapter_id, read_at)
+SELECT user_id, story_id, chapter_id, COALESCE(read_at, CURRENT_TIMESTAMP)
+FROM (
+    SELECT user_id, story_id, chapter_id, read_at,
+           ROW_NUMBER() OVER (PARTITION BY user_id, story_id ORDER BY read_at DESC, id DESC) AS rn
+    FROM reading_history
+) latest
+WHERE rn = 1;
+
+-- reading_history không còn được tra theo (user_id, story_id)
+DROP INDEX idx_reading_history_user_story_read_at ON reading_history;
@@ -0,0 +1,77 @@
+-- reading_history chia partition theo tháng (RANGE trên UNIX_TIMESTAMP(read_at)) để xóa
+-- dữ liệu hết hạn bằng DROP PARTITION thay vì DELETE, và truy vấn theo khoảng thời gian
+-- chỉ đọc các partition liên quan. Migration tạo sẵn partition pYYYYMM (giờ UTC) cho mọi
+-- tháng từ lượt đọc cũ nhất đến tháng hiện tại trước khi chép dữ liệu, nên pmax rỗng và
+-- lần tách pmax đầu tiên của ReadingHistoryPartitionManager (tạo các tháng tới) không
+-- phải chép lại bảng.
+--
+-- Ràng buộc của MySQL với bảng partition: mọi khóa unique (kể cả khóa chính) phải chứa
+-- cột partition nên khóa chính là (id, read_at), read_at NOT NULL, và không có khóa ngoại.
+-- Lịch sử của chương/truyện bị xóa được ReadingHistoryCleaner xóa bằng JDBC sau khi xóa.
+CREATE TABLE reading_history_partitioned (
+    id BIGINT NOT NULL AUTO_INCREMENT,
+    user_id BIGINT NOT NULL,
+    chapter_id BIGINT NOT NULL,
+    story_id BIGINT NOT NULL,
+    read_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    PRIMARY KEY (id, read_at),
+    INDEX idx_reading_history_user_read_at (user_id, read_at),
+    INDEX idx_reading_history_story (story_id)
+)
+PARTITION BY RANGE (UNIX_TIMESTAMP(read_at)) (
+    PARTITION pmax VALUES LESS THAN MAXVALUE
+);
+
+-- Tháng đầu tiên và tháng cuối cùng (ngày đầu tháng, UTC) cần partition. Ngày UTC tính từ
+-- epoch giây nên không phụ thuộc time zone của phiên; dòng read_at NULL được chép với giờ
+-- hiện tại nên tháng hiện tại luôn có partition.
+SET @today = DATE('1970-01-01') + INTERVAL FLOOR(UNIX_TIMESTAMP() / 86400) DAY;
+SET @first_day = LEAST(@today, COALESCE(
+    (SELECT DATE('1970-01-01') + INTERVAL FLOOR(MIN(UNIX_TIMESTAMP(read_at)) / 86400) DAY FROM reading_history),
+    @today));
+SET @last_day = GREATEST(@today, COALESCE(
+    (SELECT DATE('1970-01-01') + INTERVAL FLOOR(MAX(UNIX_TIMESTAMP(read_at)) / 86400) DAY FROM reading_history),
+    @today));
+SET @first_month = @first_day - INTERVAL (DAY(@first_day) - 1) DAY;
+SET @last_month = @last_day - INTERVAL (DAY(@last_day) - 1) DAY;
+
+-- Mốc trên của mỗi partition là epoch giây của ngày đầu tháng sau (UTC), như ReadingHistoryPartitionManager
+SET SESSION group_concat_max_len = 1048576;
+SET @partitions = (
+    WITH RECURSIVE months (month_start) AS (
+        SELECT @first_month
+        UNION ALL
+        SELECT month_start + INTERVAL 1 MONTH FROM months WHERE month_start < @last_month
+    )
+    SELECT GROUP_CONCAT(
+               CONCAT('PARTITION p', DATE_FORMAT(month_start, '%Y%m'), ' VALUES LESS THAN (',
+                      TIMESTAMPDIFF(SECOND, DATE('1970-01-01'), month_start + INTERVAL 1 MONTH), ')')
+               ORDER BY month_start SEPARATOR ', ')
+    FROM months
+);
+
+-- Bảng còn rỗng nên tách pmax không phải chép dòng nào
+SET @reorganize = CONCAT('ALTER TABLE reading_history_partitioned REORGANIZE PARTITION pmax INTO (',
+                         @partitions, ', PARTITION pmax VALUES LESS THAN MAXVALUE)');
+PREPARE reorganize_history FROM @reorganize;
+EXECUTE reorganize_history;
+DEALLOCATE PREPARE reorganize_history;
+
+INSERT INTO reading_history_partitioned (id, user_id, chapter_id, story_id, read_at)
+SELECT id, user_id, chapter_id, story_id, COALESCE(read_at, CURRENT_TIMESTAMP)
+FROM reading_history;
+
+RENAME TABLE reading_history TO reading_history_unpartitioned,
+             reading_history_partitioned TO reading_history;
+DROP TABLE reading_history_unpartitioned;
+
+-- Tổng hợp lượt đọc theo truyện theo ngày (UTC), giữ lại sau khi partition lịch sử bị xóa
+CREATE TABLE story_daily_reads (
+    story_id BIGINT NOT NULL,
+    read_date DATE NOT NULL,
+    read_count INT NOT NULL DEFAULT 0,
+    reader_count INT NOT NULL DEFAULT 0,
+    PRIMARY KEY (story_id, read_date),
+    INDEX idx_story_daily_reads_date (read_date),
+    FOREIGN KEY (story_id) REFERENCES stories(id) ON DELETE CASCADE
+);
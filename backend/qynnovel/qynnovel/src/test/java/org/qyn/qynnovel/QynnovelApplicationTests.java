@@ -3,7 +3,8 @@ package org.qyn.qynnovel;
 import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.context.SpringBootTest;
 
-@SpringBootTest
+// Nạp lười collection của Story trên request GET làm test thất bại (LazyCollectionGuard)
+@SpringBootTest(properties = "app.jpa.lazy-load-guard.strict=true")
 class QynnovelApplicationTests {
 
 	@Test
@@ -0,0 +1,157 @@
+package org.qyn.qynnovel.controllers;
+
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.hamcrest.Matchers.hasItem;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.qyn.qynnovel.models.Story;
+import org.qyn.qynnovel.repositories.StoryRepository;
+import org.qyn.qynnovel.search.StoryFilterIndex;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * Các đường đọc của StoryController chạy với LazyCollectionGuard ở chế độ strict: một
+ * collection của Story bị nạp lười khi xử lý request làm perform() ném lỗi và test thất bại.
+ * Dữ liệu được ghi thẳng bằng JDBC (đã commit) để request không dùng lại entity đã nạp sẵn.
+ */
+@SpringBootTest(properties = "app.jpa.lazy-load-guard.strict=true")
+@AutoConfigureMockMvc
+@Import(StoryControllerReadPathTest.LazyChaptersController.class)
+class StoryControllerReadPathTest {
+
+	@Autowired
+	private MockMvc mockMvc;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@Autowired
+	private StoryFilterIndex filterIndex;
+
+	private long userId;
+	private long categoryId;
+	private long storyId;
+	private String storySlug;
+
+	@BeforeEach
+	void seed() {
+		String suffix = Long.toString(System.nanoTime(), 36);
+		storySlug = "truyen-test-" + suffix;
+
+		userId = insert("INSERT INTO users (username, email, password) VALUES (?, ?, ?)",
+				"user-" + suffix, suffix + "@test.local", "x");
+		categoryId = insert("INSERT INTO categories (name, slug) VALUES (?, ?)",
+				"Thể loại " + suffix, "the-loai-" + suffix);
+		storyId = insert("INSERT INTO stories (title, slug, author, user_id) VALUES (?, ?, ?, ?)",
+				"Truyện " + suffix, storySlug, "Tác giả", userId);
+		jdbcTemplate.update("INSERT INTO story_categories (story_id, category_id) VALUES (?, ?)", storyId, categoryId);
+		for (int number = 1; number <= 3; number++) {
+			insert("INSERT INTO chapters (story_id, title, slug, chapter_number) VALUES (?, ?, ?, ?)",
+					storyId, "Chương " + number, "chuong-" + number, number);
+		}
+		filterIndex.reloadFromDatabase();
+	}
+
+	@AfterEach
+	void cleanUp() {
+		// Xóa user kéo theo truyện, chương và liên kết thể loại (ON DELETE CASCADE)
+		jdbcTemplate.update("DELETE FROM users WHERE id = ?", userId);
+		jdbcTemplate.update("DELETE FROM categories WHERE id = ?", categoryId);
+		filterIndex.reloadFromDatabase();
+	}
+
+	@Test
+	void storyDetailByIdDoesNotLoadCollectionsLazily() throws Exception {
+		mockMvc.perform(get("/api/stories/{id}", storyId))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.id").value(storyId))
+				.andExpect(jsonPath("$.categories[0].id").value(categoryId))
+				.andExpect(jsonPath("$.latestChapters.length()").value(3));
+	}
+
+	@Test
+	void storyDetailBySlugDoesNotLoadCollectionsLazily() throws Exception {
+		mockMvc.perform(get("/api/stories/slug/{slug}", storySlug))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.id").value(storyId))
+				.andExpect(jsonPath("$.slug").value(storySlug));
+	}
+
+	@Test
+	void filterListingDoesNotLoadCollectionsLazily() throws Exception {
+		mockMvc.perform(get("/api/stories/filter").param("any", Long.toString(categoryId)))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.items[*].id", hasItem((int) storyId)));
+	}
+
+	@Test
+	void byCategoryListingDoesNotLoadCollectionsLazily() throws Exception {
+		for (String sort : new String[] { "newest", "updated", "views" }) {
+			mockMvc.perform(get("/api/stories/by-category")
+					.param("categoryIds", Long.toString(categoryId))
+					.param("sort", sort))
+					.andExpect(status().isOk())
+					.andExpect(jsonPath("$.items[0].story.id").value(storyId))
+					.andExpect(jsonPath("$.items[0].categories[0].id").value(categoryId));
+		}
+	}
+
+	@Test
+	void lazyLoadingOnReadPathFailsRequest() {
+		assertThatThrownBy(() -> mockMvc.perform(get("/api/stories/{id}/lazy-chapters", storyId)))
+				.rootCause()
+				.isInstanceOf(IllegalStateException.class)
+				.hasMessageContaining("Story.chapters");
+	}
+
+	private long insert(String sql, Object... args) {
+		GeneratedKeyHolder keyHolder = new GeneratedKeyHolder();
+		jdbcTemplate.update(connection -> {
+			PreparedStatement statement = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS);
+			for (int i = 0; i < args.length; i++) {
+				statement.setObject(i + 1, args[i]);
+			}
+			return statement;
+		}, keyHolder);
+		return keyHolder.getKey().longValue();
+	}
+
+	/**
+	 * Mô phỏng một lỗi hồi quy: đọc story.getChapters() trên request GET thay vì dùng projection
+	 */
+	@RestController
+	static class LazyChaptersController {
+
+		@Autowired
+		private StoryRepository storyRepository;
+
+		@Autowired
+		private TransactionTemplate transactionTemplate;
+
+		@GetMapping("/api/stories/{id}/lazy-chapters")
+		int countChapters(@PathVariable Long id) {
+			return transactionTemplate.execute(status -> {
+				Story story = storyRepository.findById(id).orElseThrow();
+				return story.getChapters().size();
+			});
+		}
+	}
+}
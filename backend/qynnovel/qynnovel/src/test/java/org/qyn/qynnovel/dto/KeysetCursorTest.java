@@ -0,0 +1,88 @@
+package org.qyn.qynnovel.dto;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+import org.junit.jupiter.api.Test;
+
+class KeysetCursorTest {
+
+	@Test
+	void roundTripsKeyValues() {
+		String cursor = KeysetCursor.encode(42, Long.MAX_VALUE);
+
+		assertThat(KeysetCursor.decode(cursor, 2)).containsExactly(42, Long.MAX_VALUE);
+	}
+
+	@Test
+	void roundTripsNegativeValues() {
+		String cursor = KeysetCursor.encode(Integer.MIN_VALUE, -1);
+
+		assertThat(KeysetCursor.decode(cursor, 2)).containsExactly(Integer.MIN_VALUE, -1);
+	}
+
+	@Test
+	void encodesAsUrlSafeBase64WithoutPadding() {
+		String cursor = KeysetCursor.encode(1, 2, 3);
+
+		assertThat(cursor).matches("[A-Za-z0-9_-]+");
+	}
+
+	@Test
+	void rejectsWrongNumberOfParts() {
+		String cursor = KeysetCursor.encode(1, 2);
+
+		assertThatThrownBy(() -> KeysetCursor.decode(cursor, 1)).isInstanceOf(IllegalArgumentException.class);
+		assertThatThrownBy(() -> KeysetCursor.decode(cursor, 3)).isInstanceOf(IllegalArgumentException.class);
+	}
+
+	@Test
+	void rejectsInvalidBase64() {
+		assertThatThrownBy(() -> KeysetCursor.decode("không phải base64!", 2))
+				.isInstanceOf(IllegalArgumentException.class);
+	}
+
+	@Test
+	void rejectsUnknownVersion() {
+		assertThatThrownBy(() -> KeysetCursor.decode(raw("v2:1:2"), 2)).isInstanceOf(IllegalArgumentException.class);
+	}
+
+	@Test
+	void rejectsNonNumericValues() {
+		assertThatThrownBy(() -> KeysetCursor.decode(raw("v1:abc:2"), 2)).isInstanceOf(IllegalArgumentException.class);
+		assertThatThrownBy(() -> KeysetCursor.decode(raw("v1:1:"), 2)).isInstanceOf(IllegalArgumentException.class);
+	}
+
+	@Test
+	void rejectsValuesOutsideLongRange() {
+		assertThatThrownBy(() -> KeysetCursor.decode(raw("v1:99999999999999999999:1"), 2))
+				.isInstanceOf(IllegalArgumentException.class);
+	}
+
+	@Test
+	void rejectsEmptyCursor() {
+		assertThatThrownBy(() -> KeysetCursor.decode("", 2)).isInstanceOf(IllegalArgumentException.class);
+	}
+
+	@Test
+	void convertsIntKeysInRange() {
+		assertThat(KeysetCursor.toInt(Integer.MAX_VALUE)).isEqualTo(Integer.MAX_VALUE);
+		assertThat(KeysetCursor.toInt(Integer.MIN_VALUE)).isEqualTo(Integer.MIN_VALUE);
+	}
+
+	@Test
+	void rejectsIntKeysOutOfRange() {
+		long[] key = KeysetCursor.decode(KeysetCursor.encode(Integer.MAX_VALUE + 1L, 7), 2);
+
+		assertThatThrownBy(() -> KeysetCursor.toInt(key[0])).isInstanceOf(IllegalArgumentException.class);
+		assertThatThrownBy(() -> KeysetCursor.toInt(Integer.MIN_VALUE - 1L))
+				.isInstanceOf(IllegalArgumentException.class);
+	}
+
+	private static String raw(String value) {
+		return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.US_ASCII));
+	}
+}
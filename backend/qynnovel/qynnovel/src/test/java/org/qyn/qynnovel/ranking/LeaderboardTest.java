@@ -0,0 +1,153 @@
+package org.qyn.qynnovel.ranking;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class LeaderboardTest {
+
+	@Test
+	void addIncrementsScoreStartingFromZero() {
+		Leaderboard board = new Leaderboard(10);
+
+		board.add(1, 3);
+		board.add(1, 2);
+		board.add(2, -1);
+
+		assertThat(board.scoreOf(1)).isEqualTo(5);
+		assertThat(board.scoreOf(2)).isEqualTo(-1);
+		assertThat(board.scoreOf(3)).isZero();
+		assertThat(board.contains(1)).isTrue();
+		assertThat(board.contains(3)).isFalse();
+	}
+
+	@Test
+	void addKeepsTiebreak() {
+		Leaderboard board = new Leaderboard(10);
+		board.set(1, 10, 7);
+
+		board.add(1, 5);
+		board.publish();
+
+		assertThat(board.snapshot()).containsExactly(new Leaderboard.Entry(1, 15, 7));
+	}
+
+	@Test
+	void snapshotChangesOnlyOnPublish() {
+		Leaderboard board = new Leaderboard(10);
+		board.set(1, 10);
+
+		assertThat(board.snapshot()).isEmpty();
+		assertThat(board.publish()).isTrue();
+		assertThat(ids(board)).containsExactly(1L);
+		assertThat(board.publish()).isFalse();
+
+		board.set(1, 10);
+		assertThat(board.publish()).isFalse();
+	}
+
+	@Test
+	void keepsTopNInDescendingOrder() {
+		Leaderboard board = new Leaderboard(3);
+		board.set(1, 10);
+		board.set(2, 50);
+		board.set(3, 30);
+		board.set(4, 40);
+		board.set(5, 20);
+
+		board.publish();
+
+		assertThat(ids(board)).containsExactly(2L, 4L, 3L);
+		assertThat(board.size()).isEqualTo(3);
+		assertThat(board.trackedIds()).containsExactlyInAnyOrder(1L, 2L, 3L, 4L, 5L);
+	}
+
+	@Test
+	void breaksTiesByTiebreakThenLowerId() {
+		Leaderboard board = new Leaderboard(10);
+		board.set(3, 100, 1);
+		board.set(1, 100, 1);
+		board.set(2, 100, 5);
+		board.set(4, 200, 0);
+
+		board.publish();
+
+		assertThat(ids(board)).containsExactly(4L, 2L, 1L, 3L);
+	}
+
+	@Test
+	void storyOutsideTopMovesInWhenItOvertakes() {
+		Leaderboard board = new Leaderboard(2);
+		board.set(1, 30);
+		board.set(2, 20);
+		board.set(3, 10);
+
+		board.add(3, 25);
+		board.publish();
+
+		assertThat(ids(board)).containsExactly(3L, 1L);
+	}
+
+	@Test
+	void rebuildsWhenTopStoryDropsBelowAnOutsider() {
+		Leaderboard board = new Leaderboard(2);
+		board.set(1, 30);
+		board.set(2, 20);
+		board.set(3, 10);
+		board.publish();
+
+		board.set(1, 5);
+		board.publish();
+
+		assertThat(ids(board)).containsExactly(2L, 3L);
+	}
+
+	@Test
+	void rebuildsWhenTopStoryIsRemoved() {
+		Leaderboard board = new Leaderboard(2);
+		board.set(1, 30);
+		board.set(2, 20);
+		board.set(3, 10);
+		board.publish();
+
+		board.remove(1);
+		board.publish();
+
+		assertThat(ids(board)).containsExactly(2L, 3L);
+		assertThat(board.contains(1)).isFalse();
+	}
+
+	@Test
+	void clearEmptiesBoard() {
+		Leaderboard board = new Leaderboard(2);
+		board.set(1, 30);
+		board.publish();
+
+		board.clear();
+		board.publish();
+
+		assertThat(board.snapshot()).isEmpty();
+		assertThat(board.trackedIds()).isEmpty();
+	}
+
+	@Test
+	void pagesThroughSnapshot() {
+		Leaderboard board = new Leaderboard(10);
+		for (long id = 1; id <= 5; id++) {
+			board.set(id, id * 10);
+		}
+		board.publish();
+
+		assertThat(board.page(0, 2)).extracting(Leaderboard.Entry::storyId).containsExactly(5L, 4L);
+		assertThat(board.page(2, 2)).extracting(Leaderboard.Entry::storyId).containsExactly(1L);
+		assertThat(board.page(3, 2)).isEmpty();
+		assertThat(board.page(-1, 2)).isEmpty();
+		assertThat(board.page(0, 0)).isEmpty();
+	}
+
+	private static List<Long> ids(Leaderboard board) {
+		return board.snapshot().stream().map(Leaderboard.Entry::storyId).toList();
+	}
+}
@@ -0,0 +1,136 @@
+package org.qyn.qynnovel.services;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.qyn.qynnovel.components.StorySummaryCache;
+import org.qyn.qynnovel.dto.StoryRankingRow;
+import org.qyn.qynnovel.events.StoryActivityEvent;
+import org.qyn.qynnovel.ranking.Leaderboard;
+import org.qyn.qynnovel.ranking.RankingBoard;
+import org.qyn.qynnovel.repositories.StoryRepository;
+import org.springframework.test.util.ReflectionTestUtils;
+
+class RankingServiceTest {
+
+	private final MutableClock clock = new MutableClock(Instant.parse("2026-03-10T10:00:00Z"));
+	private final StoryRepository storyRepository = mock(StoryRepository.class);
+	private final ViewCountService viewCountService = mock(ViewCountService.class);
+	private RankingService service;
+
+	@BeforeEach
+	void setUp() {
+		service = new RankingService(100, 10, clock);
+		ReflectionTestUtils.setField(service, "summaryCache", mock(StorySummaryCache.class));
+		ReflectionTestUtils.setField(service, "storyRepository", storyRepository);
+		ReflectionTestUtils.setField(service, "viewCountService", viewCountService);
+	}
+
+	@Test
+	void activityReachesBoardsOnlyOnPublish() {
+		view(1, 3);
+		service.onActivity(StoryActivityEvent.like(1L, 2));
+
+		assertThat(service.board(RankingBoard.VIEWS).scoreOf(1)).isZero();
+
+		service.publish();
+
+		assertThat(service.board(RankingBoard.VIEWS).scoreOf(1)).isEqualTo(3);
+		assertThat(service.board(RankingBoard.LIKES).scoreOf(1)).isEqualTo(2);
+		assertThat(service.board(RankingBoard.DAILY).scoreOf(1)).isEqualTo(3);
+		assertThat(service.board(RankingBoard.WEEKLY).scoreOf(1)).isEqualTo(3);
+		assertThat(service.board(RankingBoard.RECOMMENDED).snapshot())
+				.containsExactly(new Leaderboard.Entry(1, 3, 2));
+	}
+
+	@Test
+	void viewsAreOrderedAcrossStories() {
+		view(1, 2);
+		view(2, 5);
+		view(3, 5);
+
+		service.publish();
+
+		assertThat(ids(RankingBoard.DAILY)).containsExactly(2L, 3L, 1L);
+	}
+
+	@Test
+	void dailyBoardResetsAtMidnight() {
+		view(1, 4);
+		service.publish();
+
+		clock.advance(Duration.ofDays(1));
+		view(2, 1);
+		service.publish();
+
+		assertThat(ids(RankingBoard.DAILY)).containsExactly(2L);
+		assertThat(ids(RankingBoard.WEEKLY)).containsExactly(1L, 2L);
+		assertThat(service.board(RankingBoard.VIEWS).scoreOf(1)).isEqualTo(4);
+	}
+
+	@Test
+	void weeklyBoardDropsDaysOlderThanSevenDays() {
+		view(1, 5);
+		service.publish();
+		clock.advance(Duration.ofDays(1));
+		view(2, 3);
+		view(1, 1);
+		service.publish();
+
+		// Ngày 7 kể từ ngày đầu: ngày đầu vẫn còn trong cửa sổ 7 ngày
+		clock.advance(Duration.ofDays(5));
+		service.publish();
+		assertThat(service.board(RankingBoard.WEEKLY).scoreOf(1)).isEqualTo(6);
+
+		// Ngày 8: lượt xem của ngày đầu bị trừ khỏi bảng tuần
+		clock.advance(Duration.ofDays(1));
+		service.publish();
+		assertThat(service.board(RankingBoard.WEEKLY).scoreOf(1)).isEqualTo(1);
+		assertThat(ids(RankingBoard.WEEKLY)).containsExactly(2L, 1L);
+
+		// Ngày 9: hết lượt xem thì truyện rời bảng tuần
+		clock.advance(Duration.ofDays(1));
+		service.publish();
+		assertThat(ids(RankingBoard.WEEKLY)).isEmpty();
+		assertThat(service.board(RankingBoard.VIEWS).scoreOf(1)).isEqualTo(6);
+	}
+
+	@Test
+	void resyncKeepsViewsNotYetWrittenToDatabase() {
+		view(1, 3);
+		service.publish();
+		// DB có 10 lượt (chưa gồm 3 lượt trên); thêm 2 lượt chưa publish, cả 5 đều chưa ghi xuống DB
+		view(1, 2);
+		when(viewCountService.getPendingStoryViews(1L)).thenReturn(5L);
+		when(storyRepository.findRankingRowsAfter(eq(0L), any()))
+				.thenReturn(List.of(new StoryRankingRow(1L, 10L, 0L, LocalDateTime.of(2026, 3, 1, 0, 0))));
+		when(storyRepository.findRankingRowsAfter(eq(1L), any())).thenReturn(List.of());
+
+		service.reloadFromDatabase();
+		service.publish();
+
+		verify(viewCountService).flush();
+		assertThat(service.board(RankingBoard.VIEWS).scoreOf(1)).isEqualTo(15);
+	}
+
+	private void view(long storyId, int times) {
+		for (int i = 0; i < times; i++) {
+			service.onActivity(StoryActivityEvent.view(storyId));
+		}
+	}
+
+	private List<Long> ids(RankingBoard board) {
+		return service.board(board).snapshot().stream().map(Leaderboard.Entry::storyId).toList();
+	}
+}
@@ -0,0 +1,148 @@
+package org.qyn.qynnovel.services;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.qyn.qynnovel.dto.ChapterStoryLink;
+import org.qyn.qynnovel.events.ChapterDeletedEvent;
+import org.qyn.qynnovel.repositories.ChapterRepository;
+import org.qyn.qynnovel.services.ReadingHistoryIngestService.RecordResult;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+class ReadingHistoryIngestServiceTest {
+
+	// Chương → truyện: mỗi chương một truyện để các lượt đọc không bị gộp
+	private static final Map<Long, Long> CHAPTERS = Map.of(10L, 1L, 11L, 2L, 12L, 3L);
+
+	private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+	private final ChapterRepository chapterRepository = mock(ChapterRepository.class);
+	private final List<Object> insertedChapters = new ArrayList<>();
+	private ReadingHistoryIngestService service;
+
+	@BeforeEach
+	@SuppressWarnings("unchecked")
+	void setUp() {
+		service = new ReadingHistoryIngestService(2, 0, 100);
+
+		TransactionTemplate transactionTemplate = mock(TransactionTemplate.class);
+		doAnswer(invocation -> {
+			invocation.<Consumer<TransactionStatus>>getArgument(0).accept(null);
+			return null;
+		}).when(transactionTemplate).executeWithoutResult(any());
+
+		when(chapterRepository.findStoryLinks(any())).thenAnswer(invocation -> {
+			Collection<Long> ids = invocation.getArgument(0);
+			return ids.stream()
+					.filter(CHAPTERS::containsKey)
+					.map(id -> new ChapterStoryLink(id, CHAPTERS.get(id)))
+					.toList();
+		});
+
+		ReflectionTestUtils.setField(service, "jdbcTemplate", jdbcTemplate);
+		ReflectionTestUtils.setField(service, "chapterRepository", chapterRepository);
+		ReflectionTestUtils.setField(service, "positionService", mock(ReadingPositionService.class));
+		ReflectionTestUtils.setField(service, "transactionTemplate", transactionTemplate);
+	}
+
+	@Test
+	void rejectsUnknownChapterWithoutQueueing() {
+		assertThat(service.record(7L, 99L)).isEqualTo(RecordResult.UNKNOWN_CHAPTER);
+		assertThat(service.getQueueSize()).isZero();
+		assertThat(service.getAcceptedCount()).isZero();
+	}
+
+	@Test
+	void rejectsChapterDeletedAfterItWasCached() {
+		assertThat(service.record(7L, 10L)).isEqualTo(RecordResult.ACCEPTED);
+		doReturn(List.of()).when(chapterRepository).findStoryLinks(any());
+
+		service.onChapterDeleted(new ChapterDeletedEvent(1L, 10L));
+
+		assertThat(service.record(7L, 10L)).isEqualTo(RecordResult.UNKNOWN_CHAPTER);
+	}
+
+	@Test
+	void reportsFullQueue() {
+		assertThat(service.record(7L, 10L)).isEqualTo(RecordResult.ACCEPTED);
+		assertThat(service.record(7L, 11L)).isEqualTo(RecordResult.ACCEPTED);
+
+		assertThat(service.record(7L, 12L)).isEqualTo(RecordResult.QUEUE_FULL);
+		assertThat(service.getRejectedCount()).isEqualTo(1);
+	}
+
+	@Test
+	void retriesOnlyRowsNotWrittenByRowFallback() {
+		when(jdbcTemplate.batchUpdate(anyString(), anyList()))
+				.thenThrow(new DataIntegrityViolationException("lô lỗi"));
+		// Lần đầu: dòng chương 11 ghi được, dòng chương 12 gặp lỗi DB (không phải vi phạm ràng buộc)
+		AtomicBoolean failed = new AtomicBoolean();
+		// Tham số INSERT: user_id, chapter_id, story_id, read_at
+		when(jdbcTemplate.update(anyString(), any(), any(), any(), any())).thenAnswer(invocation -> {
+			Object chapterId = invocation.getArgument(2);
+			if (chapterId.equals(12L) && failed.compareAndSet(false, true)) {
+				throw new QueryTimeoutException("mất kết nối");
+			}
+			insertedChapters.add(chapterId);
+			return 1;
+		});
+		service.record(7L, 11L);
+		service.record(7L, 12L);
+
+		service.flush();
+		service.flush();
+
+		assertThat(insertedChapters).containsExactly(11L, 12L);
+		assertThat(service.getWrittenCount()).isEqualTo(2);
+	}
+
+	@Test
+	void countsRowsDroppedWhenRetryBufferIsFull() {
+		when(jdbcTemplate.batchUpdate(anyString(), anyList())).thenThrow(new QueryTimeoutException("mất kết nối"));
+		service.record(7L, 10L);
+		service.record(7L, 11L);
+		service.flush();
+
+		assertThat(service.getDroppedCount()).isZero();
+
+		// Dòng chờ thử lại giới hạn bằng chỗ trống của hàng đợi (2): lần này có 3 dòng nên bỏ 1
+		service.record(7L, 12L);
+		service.flush();
+
+		assertThat(service.getDroppedCount()).isEqualTo(1);
+	}
+
+	@Test
+	void writesWholeBatchOnce() {
+		service.record(7L, 10L);
+		service.record(8L, 10L);
+
+		service.flush();
+		service.flush();
+
+		assertThat(service.getWrittenCount()).isEqualTo(2);
+		verify(jdbcTemplate).batchUpdate(eq(
+				"INSERT INTO reading_history (user_id, chapter_id, story_id, read_at) VALUES (?, ?, ?, ?)"), anyList());
+	}
+}
@@ -0,0 +1,73 @@
+package org.qyn.qynnovel.services;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.qyn.qynnovel.components.StorySummaryCache;
+import org.qyn.qynnovel.dto.ReadingPosition;
+import org.qyn.qynnovel.events.ChapterDeletedEvent;
+import org.qyn.qynnovel.events.StoryChangedEvent;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+class ReadingPositionServiceTest {
+
+	private static final LocalDateTime READ_AT = LocalDateTime.of(2026, 3, 10, 10, 0);
+
+	private ReadingPositionService service;
+
+	@BeforeEach
+	void setUp() {
+		service = new ReadingPositionService(1000, 30);
+		// JdbcTemplate giả: tủ truyện nạp từ DB luôn rỗng, ghi thì không làm gì
+		ReflectionTestUtils.setField(service, "jdbcTemplate", mock(JdbcTemplate.class));
+		ReflectionTestUtils.setField(service, "summaryCache", mock(StorySummaryCache.class));
+
+		// Nạp tủ truyện (rỗng) của user 1 và 2 để các vị trí ghi sau được cache
+		service.getPosition(1L, 100L);
+		service.getPosition(2L, 100L);
+		service.saveAll(List.of(
+				new ReadingPosition(1L, 100L, 1000L, READ_AT),
+				new ReadingPosition(1L, 200L, 2000L, READ_AT),
+				new ReadingPosition(2L, 100L, 1001L, READ_AT)));
+	}
+
+	@Test
+	void deletedStoryIsRemovedFromCachedShelves() {
+		service.onStoryChanged(new StoryChangedEvent(100L, true));
+
+		assertThat(service.getPosition(1L, 100L)).isEmpty();
+		assertThat(service.getPosition(2L, 100L)).isEmpty();
+		assertThat(service.getPosition(1L, 200L)).isPresent();
+		assertThat(readersByStory()).containsOnlyKeys(200L);
+	}
+
+	@Test
+	void deletedChapterIsRemovedOnlyWhereItIsThePosition() {
+		service.onChapterDeleted(new ChapterDeletedEvent(100L, 1000L));
+
+		assertThat(service.getPosition(1L, 100L)).isEmpty();
+		assertThat(service.getPosition(2L, 100L)).map(ReadingPosition::chapterId).contains(1001L);
+		assertThat(readersByStory().get(100L)).containsExactly(2L);
+	}
+
+	@Test
+	void storyWithoutCachedReadersIsIgnored() {
+		service.onStoryChanged(new StoryChangedEvent(300L, true));
+		service.onChapterDeleted(new ChapterDeletedEvent(300L, 3000L));
+
+		assertThat(readersByStory()).containsOnlyKeys(100L, 200L);
+	}
+
+	@SuppressWarnings("unchecked")
+	private Map<Long, Set<Long>> readersByStory() {
+		return (Map<Long, Set<Long>>) ReflectionTestUtils.getField(service, "readersByStory");
+	}
+}
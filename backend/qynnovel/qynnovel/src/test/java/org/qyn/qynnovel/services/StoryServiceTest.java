@@ -0,0 +1,79 @@
+package org.qyn.qynnovel.services;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Collection;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.qyn.qynnovel.dto.KeysetCursor;
+import org.qyn.qynnovel.dto.KeysetPage;
+import org.qyn.qynnovel.dto.StoryListItem;
+import org.qyn.qynnovel.dto.StoryListSort;
+import org.qyn.qynnovel.models.Story;
+import org.qyn.qynnovel.repositories.StoryRepository;
+import org.springframework.test.util.ReflectionTestUtils;
+
+class StoryServiceTest {
+
+	private static final List<Long> CATEGORIES = List.of(7L);
+
+	private final StoryRepository storyRepository = mock(StoryRepository.class);
+	private StoryService service;
+
+	@BeforeEach
+	void setUp() {
+		service = new StoryService();
+		ReflectionTestUtils.setField(service, "storyRepository", storyRepository);
+		when(storyRepository.findAllWithCategoriesByIdIn(anyList())).thenAnswer(invocation -> {
+			Collection<Long> ids = invocation.getArgument(0);
+			return ids.stream().map(StoryServiceTest::story).toList();
+		});
+	}
+
+	@Test
+	void mostViewedPagesFollowSnapshotEvenWhenViewsChange() {
+		when(storyRepository.findMostViewedIdsInCategories(any(), any()))
+				.thenReturn(List.of(5L, 4L, 3L, 2L, 1L))
+				// Lượt xem đổi sau trang đầu: thứ tự mới không được dùng cho các trang sau
+				.thenReturn(List.of(1L, 2L, 3L, 4L, 5L));
+
+		KeysetPage<StoryListItem> first = service.getStoriesByCategories(CATEGORIES, StoryListSort.VIEWS, null, 2);
+		KeysetPage<StoryListItem> second = service.getStoriesByCategories(CATEGORIES, StoryListSort.VIEWS,
+				first.nextCursor(), 2);
+		KeysetPage<StoryListItem> third = service.getStoriesByCategories(CATEGORIES, StoryListSort.VIEWS,
+				second.nextCursor(), 2);
+
+		assertThat(ids(first)).containsExactly(5L, 4L);
+		assertThat(ids(second)).containsExactly(3L, 2L);
+		assertThat(ids(third)).containsExactly(1L);
+		assertThat(third.nextCursor()).isNull();
+		verify(storyRepository, times(1)).findMostViewedIdsInCategories(any(), any());
+	}
+
+	@Test
+	void unknownMostViewedSnapshotIsRejected() {
+		String cursor = KeysetCursor.encode(42, 2);
+
+		assertThatThrownBy(() -> service.getStoriesByCategories(CATEGORIES, StoryListSort.VIEWS, cursor, 2))
+				.isInstanceOf(IllegalArgumentException.class);
+	}
+
+	private static List<Long> ids(KeysetPage<StoryListItem> page) {
+		return page.items().stream().map(item -> item.story().id()).toList();
+	}
+
+	private static Story story(Long id) {
+		Story story = new Story();
+		story.setId(id);
+		return story;
+	}
+}
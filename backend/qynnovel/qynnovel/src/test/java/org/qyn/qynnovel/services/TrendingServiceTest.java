@@ -0,0 +1,139 @@
+package org.qyn.qynnovel.services;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+import static org.mockito.Mockito.mock;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.qyn.qynnovel.components.StorySummaryCache;
+import org.qyn.qynnovel.events.StoryActivityEvent;
+import org.springframework.test.util.ReflectionTestUtils;
+
+class TrendingServiceTest {
+
+	// 4 khung × 15 phút, bán rã sau đúng một khung: hệ số của khung cách k khung là 0.5^k
+	private static final Duration BUCKET = Duration.ofMinutes(15);
+
+	private final MutableClock clock = new MutableClock(Instant.parse("2026-03-10T10:00:00Z"));
+
+	@Test
+	void activityCountsOnlyAfterPublishAndLikesAreWeighted() {
+		TrendingService service = service(10);
+		view(service, 1, 2);
+		service.onActivity(StoryActivityEvent.like(2L, 1));
+		service.onActivity(StoryActivityEvent.like(3L, -1));
+
+		assertThat(service.getTrackedCount()).isZero();
+
+		service.publish();
+
+		assertThat(ids(service)).containsExactly(2L, 1L);
+		assertThat(score(service, 2)).isEqualTo(5.0);
+		assertThat(score(service, 1)).isEqualTo(2.0);
+		assertThat(service.getTrackedCount()).isEqualTo(2);
+	}
+
+	@Test
+	void scoreDecaysExponentiallyWithBucketAge() {
+		TrendingService service = service(10);
+		view(service, 1, 8);
+		service.publish();
+		assertThat(score(service, 1)).isCloseTo(8.0, within(1e-9));
+
+		clock.advance(BUCKET);
+		service.publish();
+		assertThat(score(service, 1)).isCloseTo(4.0, within(1e-9));
+
+		clock.advance(BUCKET.multipliedBy(2));
+		service.publish();
+		assertThat(score(service, 1)).isCloseTo(1.0, within(1e-9));
+	}
+
+	@Test
+	void recentActivityOutranksOlderActivity() {
+		TrendingService service = service(10);
+		view(service, 1, 6);
+		service.publish();
+
+		clock.advance(BUCKET);
+		view(service, 2, 4);
+		service.publish();
+
+		assertThat(ids(service)).containsExactly(2L, 1L);
+		assertThat(score(service, 1)).isCloseTo(3.0, within(1e-9));
+	}
+
+	@Test
+	void ringBufferReusesSlotsWithoutLeakingOldCounts() {
+		TrendingService service = service(10);
+		view(service, 1, 8);
+		service.publish();
+
+		clock.advance(BUCKET);
+		view(service, 1, 4);
+		service.publish();
+		assertThat(score(service, 1)).isCloseTo(4 + 8 * 0.5, within(1e-9));
+
+		// Khung thứ 5 dùng lại ô của khung đầu: 8 lượt cũ không được tính nữa
+		clock.advance(BUCKET.multipliedBy(3));
+		view(service, 1, 1);
+		service.publish();
+		assertThat(score(service, 1)).isCloseTo(1 + 4 * 0.125, within(1e-9));
+	}
+
+	@Test
+	void storyWithoutActivityInWholeWindowIsDropped() {
+		TrendingService service = service(10);
+		view(service, 1, 3);
+		service.publish();
+
+		clock.advance(BUCKET.multipliedBy(3));
+		service.publish();
+		assertThat(ids(service)).containsExactly(1L);
+
+		clock.advance(BUCKET);
+		service.publish();
+		assertThat(ids(service)).isEmpty();
+		assertThat(service.getTrackedCount()).isZero();
+	}
+
+	@Test
+	void keepsOnlyTopCapacityStoriesAndBreaksTiesByLowerId() {
+		TrendingService service = service(2);
+		view(service, 3, 5);
+		view(service, 1, 5);
+		view(service, 2, 1);
+
+		service.publish();
+
+		assertThat(ids(service)).containsExactly(1L, 3L);
+	}
+
+	private TrendingService service(int capacity) {
+		TrendingService service = new TrendingService(15, 4, 15, 5, 100, capacity, clock);
+		ReflectionTestUtils.setField(service, "summaryCache", mock(StorySummaryCache.class));
+		return service;
+	}
+
+	private static void view(TrendingService service, long storyId, int times) {
+		for (int i = 0; i < times; i++) {
+			service.onActivity(StoryActivityEvent.view(storyId));
+		}
+	}
+
+	private static List<Long> ids(TrendingService service) {
+		return service.snapshot().stream().map(TrendingService.Scored::storyId).toList();
+	}
+
+	private static double score(TrendingService service, long storyId) {
+		return service.snapshot().stream()
+				.filter(scored -> scored.storyId() == storyId)
+				.mapToDouble(TrendingService.Scored::score)
+				.findFirst()
+				.orElse(0);
+	}
+}
@@ -0,0 +1,129 @@
+package org.qyn.qynnovel.storage;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.qyn.qynnovel.components.ContentEncoder.Encoding;
+import org.springframework.test.util.ReflectionTestUtils;
+
+class FileChapterContentStoreTest {
+
+	@TempDir
+	Path root;
+
+	@Test
+	void migratesLegacyFilesAndStopsConsultingLegacyLayout() throws Exception {
+		legacyStore().write(1, 10, bytes("chương mười"), Map.of());
+
+		FileChapterContentStore store = migratingStore();
+		assertThat(store.read(1, 10)).isEqualTo("chương mười");
+
+		store.migrateLayout();
+
+		assertThat(previousLayout(store)).isNull();
+		assertThat(store.read(1, 10)).isEqualTo("chương mười");
+		assertThat(Files.exists(ChapterStorageLayout.named("legacy").chapterFile(root, 1, 10))).isFalse();
+	}
+
+	@Test
+	void completedMigrationIsRememberedAcrossRestarts() throws Exception {
+		legacyStore().write(1, 10, bytes("chương mười"), Map.of());
+		migratingStore().migrateLayout();
+
+		assertThat(previousLayout(migratingStore())).isNull();
+	}
+
+	@Test
+	void unfinishedMigrationKeepsLegacyLayout() throws Exception {
+		legacyStore().write(1, 10, bytes("chương mười"), Map.of());
+
+		assertThat(previousLayout(migratingStore())).isNotNull();
+	}
+
+	@Test
+	void openedContentSurvivesMigrationBeforeStreaming() throws Exception {
+		legacyStore().write(1, 10, bytes("nội dung gốc"), Map.of(Encoding.GZIP, bytes("bản nén")));
+		FileChapterContentStore store = migratingStore();
+
+		StoredContent original = store.open(1, 10, List.of());
+		StoredContent gzip = store.open(1, 10, List.of(Encoding.GZIP));
+		store.migrateLayout();
+
+		assertThat(readAll(original)).isEqualTo("nội dung gốc");
+		assertThat(readAll(gzip)).isEqualTo("bản nén");
+		assertThat(gzip.contentEncoding()).isEqualTo("gzip");
+	}
+
+	@Test
+	void statFallsBackToRelocatedFile() throws Exception {
+		legacyStore().write(1, 10, bytes("nội dung gốc"), Map.of(Encoding.GZIP, bytes("bản nén")));
+		FileChapterContentStore store = migratingStore();
+		ContentStat before = store.stat(1, 10, List.of(Encoding.GZIP));
+
+		store.migrateLayout();
+
+		assertThat(store.stat(1, 10, List.of(Encoding.GZIP))).isEqualTo(before);
+		StoredContent opened = store.open(1, 10, List.of());
+		assertThat(store.stat(1, 10, List.of()))
+				.isEqualTo(new ContentStat(null, opened.length(), opened.lastModified()));
+	}
+
+	@Test
+	void overwriteReplacesFilesWithoutLeavingTempFiles() throws Exception {
+		FileChapterContentStore store = legacyStore();
+		store.write(1, 10, bytes("bản 1"), Map.of(Encoding.GZIP, bytes("gzip 1")));
+
+		store.write(1, 10, bytes("bản 2"), Map.of(Encoding.GZIP, bytes("gzip 2")));
+
+		assertThat(store.read(1, 10)).isEqualTo("bản 2");
+		assertThat(readAll(store.open(1, 10, List.of(Encoding.GZIP)))).isEqualTo("gzip 2");
+		try (Stream<Path> files = Files.list(ChapterStorageLayout.named("legacy").chapterFile(root, 1, 10).getParent())) {
+			assertThat(files.map(file -> file.getFileName().toString())).containsExactlyInAnyOrder("10.txt", "10.txt.gz");
+		}
+	}
+
+	@Test
+	void openedContentRewrittenWithOtherLengthFailsInsteadOfSendingWrongBytes() throws Exception {
+		FileChapterContentStore store = legacyStore();
+		store.write(1, 10, bytes("bản 1"), Map.of());
+		StoredContent opened = store.open(1, 10, List.of());
+
+		store.write(1, 10, bytes("bản 2 dài hơn"), Map.of());
+
+		assertThat(opened.body().contentLength()).isEqualTo(opened.length());
+		assertThatThrownBy(() -> readAll(opened)).isInstanceOf(IOException.class);
+	}
+
+	private FileChapterContentStore legacyStore() {
+		return new FileChapterContentStore(root.toString(), "legacy", "", 1000);
+	}
+
+	private FileChapterContentStore migratingStore() {
+		return new FileChapterContentStore(root.toString(), "hashed", "legacy", 1000);
+	}
+
+	private static Object previousLayout(FileChapterContentStore store) {
+		return ReflectionTestUtils.getField(store, "previousLayout");
+	}
+
+	private static String readAll(StoredContent content) throws Exception {
+		try (InputStream in = content.body().getInputStream()) {
+			return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+		}
+	}
+
+	private static byte[] bytes(String value) {
+		return value.getBytes(StandardCharsets.UTF_8);
+	}
+}
@@ -0,0 +1,253 @@
+package org.qyn.qynnovel.storage;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.qyn.qynnovel.components.ContentEncoder.Encoding;
+
+class SegmentChapterContentStoreTest {
+
+	private static final int HEADER_BYTES = 40;
+
+	@TempDir
+	Path root;
+
+	private SegmentChapterContentStore store;
+
+	@AfterEach
+	void tearDown() throws IOException {
+		if (store != null) {
+			store.close();
+		}
+	}
+
+	@Test
+	void roundTripsOriginalAndVariants() throws Exception {
+		store = open(1 << 20, 0.5);
+
+		store.write(1, 10, bytes("chương mười"), Map.of(Encoding.GZIP, bytes("nén gzip")));
+
+		assertThat(store.read(1, 10)).isEqualTo("chương mười");
+		StoredContent gzip = store.open(1, 10, List.of(Encoding.BROTLI, Encoding.GZIP));
+		assertThat(gzip.contentEncoding()).isEqualTo("gzip");
+		assertThat(readAll(gzip)).isEqualTo("nén gzip");
+		StoredContent original = store.open(1, 10, List.of());
+		assertThat(original.contentEncoding()).isNull();
+		assertThat(readAll(original)).isEqualTo("chương mười");
+		assertThat(chapters(store)).containsExactly(10L);
+	}
+
+	@Test
+	void statDescribesWhatOpenReturns() throws Exception {
+		store = open(1 << 20, 0.5);
+		store.write(1, 10, bytes("chương mười"), Map.of(Encoding.GZIP, bytes("nén gzip")));
+
+		ContentStat gzip = store.stat(1, 10, List.of(Encoding.BROTLI, Encoding.GZIP));
+		StoredContent opened = store.open(1, 10, List.of(Encoding.BROTLI, Encoding.GZIP));
+
+		assertThat(gzip).isEqualTo(new ContentStat(opened.contentEncoding(), opened.length(), opened.lastModified()));
+		assertThat(store.stat(1, 10, List.of()).contentEncoding()).isNull();
+		assertThatThrownBy(() -> store.stat(1, 11, List.of())).isInstanceOf(IOException.class);
+	}
+
+	@Test
+	void overwriteDropsVariantsThatAreNoLongerProduced() throws Exception {
+		store = open(1 << 20, 0.5);
+		store.write(1, 10, bytes("bản 1"), Map.of(Encoding.GZIP, bytes("gzip 1")));
+
+		store.write(1, 10, bytes("bản 2"), Map.of());
+
+		assertThat(store.open(1, 10, List.of(Encoding.GZIP)).contentEncoding()).isNull();
+		store = reopen(1 << 20, 0.5);
+		assertThat(store.read(1, 10)).isEqualTo("bản 2");
+		assertThat(store.open(1, 10, List.of(Encoding.GZIP)).contentEncoding()).isNull();
+	}
+
+	@Test
+	void reopenCutsTruncatedTail() throws Exception {
+		store = open(1 << 20, 0.5);
+		store.write(1, 10, bytes("bản 1"), Map.of());
+		store.write(1, 10, bytes("bản 2 dài hơn"), Map.of());
+		store.close();
+
+		Path segment = onlySegment();
+		truncate(segment, Files.size(segment) - 3);
+		store = open(1 << 20, 0.5);
+
+		assertThat(store.read(1, 10)).isEqualTo("bản 1");
+
+		// Phần đuôi đã bị cắt khỏi file: ghi tiếp rồi mở lại vẫn đọc được
+		store.write(1, 11, bytes("chương mười một"), Map.of());
+		store = reopen(1 << 20, 0.5);
+		assertThat(store.read(1, 10)).isEqualTo("bản 1");
+		assertThat(store.read(1, 11)).isEqualTo("chương mười một");
+	}
+
+	@Test
+	void reopenCutsTailWithBadChecksum() throws Exception {
+		store = open(1 << 20, 0.5);
+		store.write(1, 10, bytes("bản 1"), Map.of());
+		store.write(1, 10, bytes("bản 2"), Map.of());
+		store.close();
+
+		Path segment = onlySegment();
+		corruptByte(segment, Files.size(segment) - 1);
+		store = open(1 << 20, 0.5);
+
+		assertThat(store.read(1, 10)).isEqualTo("bản 1");
+	}
+
+	@Test
+	void writeInterruptedAfterOriginalDropsOldVariants() throws Exception {
+		store = open(1 << 20, 0.5);
+		store.write(1, 10, bytes("bản 1"), Map.of(Encoding.GZIP, bytes("gzip 1")));
+		byte[] gzip2 = bytes("gzip 2");
+		store.write(1, 10, bytes("bản 2"), Map.of(Encoding.GZIP, gzip2));
+		store.close();
+
+		// Tắt máy ngay sau khi ghi bản gốc của lần ghi thứ hai
+		Path segment = onlySegment();
+		truncate(segment, Files.size(segment) - HEADER_BYTES - gzip2.length);
+		store = open(1 << 20, 0.5);
+
+		assertThat(store.read(1, 10)).isEqualTo("bản 2");
+		StoredContent content = store.open(1, 10, List.of(Encoding.GZIP));
+		assertThat(content.contentEncoding()).isNull();
+		assertThat(readAll(content)).isEqualTo("bản 2");
+	}
+
+	@Test
+	void deleteSurvivesReopen() throws Exception {
+		store = open(1 << 20, 0.5);
+		store.write(1, 10, bytes("chương mười"), Map.of(Encoding.GZIP, bytes("nén gzip")));
+		store.write(1, 11, bytes("chương mười một"), Map.of());
+
+		store.delete(1, 10);
+		store = reopen(1 << 20, 0.5);
+
+		assertThatThrownBy(() -> store.read(1, 10)).isInstanceOf(IOException.class);
+		assertThatThrownBy(() -> store.open(1, 10, List.of(Encoding.GZIP))).isInstanceOf(IOException.class);
+		assertThat(chapters(store)).containsExactly(11L);
+	}
+
+	@Test
+	void compactionCopiesLiveRecordsAndDropsDeadOnes() throws Exception {
+		store = open(250, 0.6);
+		fillSegmentsForCompaction();
+
+		store.compact();
+
+		assertThat(segmentNames()).containsExactly("seg-000003.dat");
+		store = reopen(250, 0.6);
+		assertThat(store.read(1, 1)).isEqualTo(payload('a'));
+		assertThat(store.read(1, 4)).isEqualTo(payload('d'));
+		assertThatThrownBy(() -> store.read(1, 2)).isInstanceOf(IOException.class);
+		assertThatThrownBy(() -> store.read(1, 3)).isInstanceOf(IOException.class);
+		assertThat(chapters(store)).containsExactlyInAnyOrder(1L, 4L);
+	}
+
+	@Test
+	void compactionKeepsTombstonesWhileOlderSegmentsExist() throws Exception {
+		store = open(250, 0.4);
+		fillSegmentsForCompaction();
+
+		// seg-1 còn một nửa dữ liệu dùng được nên chỉ seg-2 (toàn tombstone, bản ghi chết) bị gom
+		store.compact();
+
+		assertThat(segmentNames()).containsExactly("seg-000001.dat", "seg-000003.dat");
+		store = reopen(250, 0.4);
+		// Tombstone của chương 2 được chuyển sang seg-3 nên bản ghi cũ ở seg-1 không sống lại
+		assertThatThrownBy(() -> store.read(1, 2)).isInstanceOf(IOException.class);
+		assertThatThrownBy(() -> store.read(1, 3)).isInstanceOf(IOException.class);
+		assertThat(store.read(1, 1)).isEqualTo(payload('a'));
+		assertThat(store.read(1, 4)).isEqualTo(payload('d'));
+	}
+
+	/**
+	 * Mỗi bản ghi 100 byte (header 40 + 60), segment tối đa 250 byte:
+	 * seg-1 = chương 1, chương 2; seg-2 = chương 3, tombstone chương 2, 3; seg-3 = chương 4
+	 */
+	private void fillSegmentsForCompaction() throws IOException {
+		store.write(1, 1, bytes(payload('a')), Map.of());
+		store.write(1, 2, bytes(payload('b')), Map.of());
+		store.write(1, 3, bytes(payload('c')), Map.of());
+		store.delete(1, 2);
+		store.delete(1, 3);
+		store.write(1, 4, bytes(payload('d')), Map.of());
+		assertThat(segmentNames()).containsExactly("seg-000001.dat", "seg-000002.dat", "seg-000003.dat");
+	}
+
+	private SegmentChapterContentStore open(long maxSegmentBytes, double compactThreshold) throws IOException {
+		SegmentChapterContentStore opened = new SegmentChapterContentStore(root.toString(), maxSegmentBytes, false,
+				compactThreshold);
+		opened.open();
+		return opened;
+	}
+
+	private SegmentChapterContentStore reopen(long maxSegmentBytes, double compactThreshold) throws IOException {
+		store.close();
+		return open(maxSegmentBytes, compactThreshold);
+	}
+
+	private Path onlySegment() throws IOException {
+		assertThat(segmentNames()).hasSize(1);
+		return root.resolve("segments").resolve(segmentNames().get(0));
+	}
+
+	private List<String> segmentNames() throws IOException {
+		try (Stream<Path> files = Files.list(root.resolve("segments"))) {
+			return files.map(file -> file.getFileName().toString()).sorted().toList();
+		}
+	}
+
+	private static List<Long> chapters(SegmentChapterContentStore store) throws IOException {
+		List<Long> chapters = new ArrayList<>();
+		store.forEachChapter((storyId, chapterId) -> chapters.add(chapterId));
+		return chapters;
+	}
+
+	private static void truncate(Path file, long size) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+			channel.truncate(size);
+		}
+	}
+
+	private static void corruptByte(Path file, long position) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+			ByteBuffer buffer = ByteBuffer.allocate(1);
+			channel.read(buffer, position);
+			buffer.put(0, (byte) ~buffer.get(0));
+			channel.write(buffer.rewind(), position);
+		}
+	}
+
+	private static String readAll(StoredContent content) throws IOException {
+		try (InputStream in = content.body().getInputStream()) {
+			return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+		}
+	}
+
+	private static String payload(char fill) {
+		return String.valueOf(fill).repeat(60);
+	}
+
+	private static byte[] bytes(String value) {
+		return value.getBytes(StandardCharsets.UTF_8);
+	}
+}
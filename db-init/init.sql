@@ -1,3 +1,7 @@
+-- Schema khởi tạo cho container MySQL. Backend quản lý schema bằng Flyway:
+-- file này tương ứng migration V1, các thay đổi sau nằm trong
+-- backend/qynnovel/qynnovel/src/main/resources/db/migration.
+
 -- Tạo database
 CREATE DATABASE IF NOT EXISTS qynnovel_db 
 CHARACTER SET utf8mb4 
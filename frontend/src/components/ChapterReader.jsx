@@ -23,10 +23,9 @@ const ChapterReader = () => {
       const response = await chapterService.getChapterWithContent(id);
       setChapter(response.data);
       
-      // Lưu lịch sử đọc
-      const userId = localStorage.getItem('userId');
-      if (userId) {
-        await chapterService.markAsRead(id, userId);
+      // Lưu lịch sử đọc (server lấy user từ phiên đăng nhập, không gửi userId)
+      if (localStorage.getItem('userId')) {
+        await chapterService.markAsRead(id);
       }
       
       setLoading(false);